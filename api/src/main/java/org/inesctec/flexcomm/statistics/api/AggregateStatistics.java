@@ -0,0 +1,34 @@
+package org.inesctec.flexcomm.statistics.api;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+public interface AggregateStatistics {
+
+  // null for network-wide aggregates
+  DeviceId deviceId();
+
+  // null unless the aggregate covers a single port
+  PortNumber portNumber();
+
+  int ports();
+
+  double currentConsumption();
+
+  double powerDrawn();
+
+  interface Builder {
+
+    Builder setDeviceId(DeviceId deviceId);
+
+    Builder setPortNumber(PortNumber portNumber);
+
+    Builder setPorts(int ports);
+
+    Builder setCurrentConsumption(double currentConsumption);
+
+    Builder setPowerDrawn(double powerDrawn);
+
+    AggregateStatistics build();
+  }
+}
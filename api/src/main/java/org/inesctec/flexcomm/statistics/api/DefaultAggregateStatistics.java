@@ -0,0 +1,114 @@
+package org.inesctec.flexcomm.statistics.api;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+public final class DefaultAggregateStatistics implements AggregateStatistics {
+
+  private final DeviceId deviceId;
+  private final PortNumber portNumber;
+  private final int ports;
+  private final double currentConsumption;
+  private final double powerDrawn;
+
+  private DefaultAggregateStatistics(Builder builder) {
+    this.deviceId = builder.deviceId;
+    this.portNumber = builder.portNumber;
+    this.ports = builder.ports;
+    this.currentConsumption = builder.currentConsumption;
+    this.powerDrawn = builder.powerDrawn;
+  }
+
+  public static AggregateStatistics.Builder builder() {
+    return new Builder();
+  }
+
+  @Override
+  public DeviceId deviceId() {
+    return this.deviceId;
+  }
+
+  @Override
+  public PortNumber portNumber() {
+    return this.portNumber;
+  }
+
+  @Override
+  public int ports() {
+    return this.ports;
+  }
+
+  @Override
+  public double currentConsumption() {
+    return this.currentConsumption;
+  }
+
+  @Override
+  public double powerDrawn() {
+    return this.powerDrawn;
+  }
+
+  @Override
+  public String toString() {
+    return "device: " + this.deviceId + ", " +
+        "port: " + this.portNumber + ", " +
+        "ports: " + this.ports + ", " +
+        "currentConsumption: " + this.currentConsumption + ", " +
+        "powerDrawn: " + this.powerDrawn;
+  }
+
+  public static final class Builder implements AggregateStatistics.Builder {
+
+    DeviceId deviceId = null;
+    PortNumber portNumber = null;
+    int ports = 0;
+    double currentConsumption = 0;
+    double powerDrawn = 0;
+
+    private Builder() {
+
+    }
+
+    @Override
+    public AggregateStatistics.Builder setDeviceId(DeviceId deviceId) {
+      this.deviceId = deviceId;
+
+      return this;
+    }
+
+    @Override
+    public AggregateStatistics.Builder setPortNumber(PortNumber portNumber) {
+      this.portNumber = portNumber;
+
+      return this;
+    }
+
+    @Override
+    public AggregateStatistics.Builder setPorts(int ports) {
+      this.ports = ports;
+
+      return this;
+    }
+
+    @Override
+    public AggregateStatistics.Builder setCurrentConsumption(double currentConsumption) {
+      this.currentConsumption = currentConsumption;
+
+      return this;
+    }
+
+    @Override
+    public AggregateStatistics.Builder setPowerDrawn(double powerDrawn) {
+      this.powerDrawn = powerDrawn;
+
+      return this;
+    }
+
+    @Override
+    public DefaultAggregateStatistics build() {
+      return new DefaultAggregateStatistics(this);
+    }
+
+  }
+
+}
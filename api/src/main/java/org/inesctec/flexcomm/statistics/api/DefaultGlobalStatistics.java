@@ -28,6 +28,10 @@ public final class DefaultGlobalStatistics extends AbstractAnnotated implements
     return new Builder();
   }
 
+  public DeviceId deviceId() {
+    return this.deviceId;
+  }
+
   @Override
   public double currentConsumption() {
     return this.currentConsumption;
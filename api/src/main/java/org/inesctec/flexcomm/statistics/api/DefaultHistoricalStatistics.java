@@ -0,0 +1,79 @@
+package org.inesctec.flexcomm.statistics.api;
+
+public final class DefaultHistoricalStatistics implements HistoricalStatistics {
+
+  private final long timestamp;
+  private final double currentConsumption;
+  private final double powerDrawn;
+
+  private DefaultHistoricalStatistics(long timestamp, double currentConsumption, double powerDrawn) {
+    this.timestamp = timestamp;
+    this.currentConsumption = currentConsumption;
+    this.powerDrawn = powerDrawn;
+  }
+
+  public static HistoricalStatistics.Builder builder() {
+    return new Builder();
+  }
+
+  @Override
+  public long timestamp() {
+    return this.timestamp;
+  }
+
+  @Override
+  public double currentConsumption() {
+    return this.currentConsumption;
+  }
+
+  @Override
+  public double powerDrawn() {
+    return this.powerDrawn;
+  }
+
+  @Override
+  public String toString() {
+    return "timestamp: " + this.timestamp + ", " +
+        "currentConsumption: " + this.currentConsumption + ", " +
+        "powerDrawn: " + this.powerDrawn;
+  }
+
+  public static final class Builder implements HistoricalStatistics.Builder {
+
+    long timestamp = 0;
+    double currentConsumption = 0;
+    double powerDrawn = 0;
+
+    private Builder() {
+
+    }
+
+    @Override
+    public HistoricalStatistics.Builder setTimestamp(long timestamp) {
+      this.timestamp = timestamp;
+
+      return this;
+    }
+
+    @Override
+    public HistoricalStatistics.Builder setCurrentConsumption(double currentConsumption) {
+      this.currentConsumption = currentConsumption;
+
+      return this;
+    }
+
+    @Override
+    public HistoricalStatistics.Builder setPowerDrawn(double powerDrawn) {
+      this.powerDrawn = powerDrawn;
+
+      return this;
+    }
+
+    @Override
+    public DefaultHistoricalStatistics build() {
+      return new DefaultHistoricalStatistics(timestamp, currentConsumption, powerDrawn);
+    }
+
+  }
+
+}
@@ -0,0 +1,230 @@
+package org.inesctec.flexcomm.statistics.api;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import org.onosproject.net.DeviceId;
+
+public final class DefaultPollingStatistics implements PollingStatistics {
+
+  private final DeviceId deviceId;
+  private final long requests;
+  private final long replies;
+  private final long timeouts;
+  private final long missedPolls;
+  private final long outstanding;
+  private final long meanLatencyMicros;
+  private final long p50LatencyMicros;
+  private final long p90LatencyMicros;
+  private final long p99LatencyMicros;
+  private final long maxLatencyMicros;
+  private final long pushedReports;
+  private final boolean pushing;
+
+  private DefaultPollingStatistics(Builder builder) {
+    this.deviceId = builder.deviceId;
+    this.requests = builder.requests;
+    this.replies = builder.replies;
+    this.timeouts = builder.timeouts;
+    this.missedPolls = builder.missedPolls;
+    this.outstanding = builder.outstanding;
+    this.meanLatencyMicros = builder.meanLatencyMicros;
+    this.p50LatencyMicros = builder.p50LatencyMicros;
+    this.p90LatencyMicros = builder.p90LatencyMicros;
+    this.p99LatencyMicros = builder.p99LatencyMicros;
+    this.maxLatencyMicros = builder.maxLatencyMicros;
+    this.pushedReports = builder.pushedReports;
+    this.pushing = builder.pushing;
+  }
+
+  public static PollingStatistics.Builder builder() {
+    return new Builder();
+  }
+
+  @Override
+  public DeviceId deviceId() {
+    return this.deviceId;
+  }
+
+  @Override
+  public long requests() {
+    return this.requests;
+  }
+
+  @Override
+  public long replies() {
+    return this.replies;
+  }
+
+  @Override
+  public long timeouts() {
+    return this.timeouts;
+  }
+
+  @Override
+  public long missedPolls() {
+    return this.missedPolls;
+  }
+
+  @Override
+  public long outstanding() {
+    return this.outstanding;
+  }
+
+  @Override
+  public long meanLatencyMicros() {
+    return this.meanLatencyMicros;
+  }
+
+  // only the 50th, 90th and 99th percentiles are kept
+  @Override
+  public long latencyPercentileMicros(double percentile) {
+    if (percentile == 50) {
+      return p50LatencyMicros;
+    } else if (percentile == 90) {
+      return p90LatencyMicros;
+    } else if (percentile == 99) {
+      return p99LatencyMicros;
+    }
+    checkArgument(false, "Unsupported percentile %s", percentile);
+    return 0;
+  }
+
+  @Override
+  public long maxLatencyMicros() {
+    return this.maxLatencyMicros;
+  }
+
+  @Override
+  public long pushedReports() {
+    return this.pushedReports;
+  }
+
+  @Override
+  public boolean pushing() {
+    return this.pushing;
+  }
+
+  @Override
+  public String toString() {
+    return "device: " + deviceId + ", " +
+        "requests: " + this.requests + ", " +
+        "replies: " + this.replies + ", " +
+        "timeouts: " + this.timeouts + ", " +
+        "missedPolls: " + this.missedPolls + ", " +
+        "outstanding: " + this.outstanding + ", " +
+        "meanLatencyMicros: " + this.meanLatencyMicros + ", " +
+        "p50LatencyMicros: " + this.p50LatencyMicros + ", " +
+        "p90LatencyMicros: " + this.p90LatencyMicros + ", " +
+        "p99LatencyMicros: " + this.p99LatencyMicros + ", " +
+        "maxLatencyMicros: " + this.maxLatencyMicros + ", " +
+        "pushedReports: " + this.pushedReports + ", " +
+        "pushing: " + this.pushing;
+  }
+
+  public static final class Builder implements PollingStatistics.Builder {
+
+    DeviceId deviceId = null;
+    long requests = 0;
+    long replies = 0;
+    long timeouts = 0;
+    long missedPolls = 0;
+    long outstanding = 0;
+    long meanLatencyMicros = 0;
+    long p50LatencyMicros = 0;
+    long p90LatencyMicros = 0;
+    long p99LatencyMicros = 0;
+    long maxLatencyMicros = 0;
+    long pushedReports = 0;
+    boolean pushing = false;
+
+    private Builder() {
+
+    }
+
+    @Override
+    public PollingStatistics.Builder setDeviceId(DeviceId deviceId) {
+      this.deviceId = deviceId;
+
+      return this;
+    }
+
+    @Override
+    public PollingStatistics.Builder setRequests(long requests) {
+      this.requests = requests;
+
+      return this;
+    }
+
+    @Override
+    public PollingStatistics.Builder setReplies(long replies) {
+      this.replies = replies;
+
+      return this;
+    }
+
+    @Override
+    public PollingStatistics.Builder setTimeouts(long timeouts) {
+      this.timeouts = timeouts;
+
+      return this;
+    }
+
+    @Override
+    public PollingStatistics.Builder setMissedPolls(long missedPolls) {
+      this.missedPolls = missedPolls;
+
+      return this;
+    }
+
+    @Override
+    public PollingStatistics.Builder setOutstanding(long outstanding) {
+      this.outstanding = outstanding;
+
+      return this;
+    }
+
+    @Override
+    public PollingStatistics.Builder setMeanLatencyMicros(long meanLatencyMicros) {
+      this.meanLatencyMicros = meanLatencyMicros;
+
+      return this;
+    }
+
+    @Override
+    public PollingStatistics.Builder setLatencyPercentilesMicros(long p50, long p90, long p99) {
+      this.p50LatencyMicros = p50;
+      this.p90LatencyMicros = p90;
+      this.p99LatencyMicros = p99;
+
+      return this;
+    }
+
+    @Override
+    public PollingStatistics.Builder setMaxLatencyMicros(long maxLatencyMicros) {
+      this.maxLatencyMicros = maxLatencyMicros;
+
+      return this;
+    }
+
+    @Override
+    public PollingStatistics.Builder setPushedReports(long pushedReports) {
+      this.pushedReports = pushedReports;
+
+      return this;
+    }
+
+    @Override
+    public PollingStatistics.Builder setPushing(boolean pushing) {
+      this.pushing = pushing;
+
+      return this;
+    }
+
+    @Override
+    public DefaultPollingStatistics build() {
+      return new DefaultPollingStatistics(this);
+    }
+
+  }
+
+}
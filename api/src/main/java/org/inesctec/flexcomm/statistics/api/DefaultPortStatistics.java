@@ -32,6 +32,10 @@ public final class DefaultPortStatistics extends AbstractAnnotated implements Po
     return new Builder();
   }
 
+  public DeviceId deviceId() {
+    return this.deviceId;
+  }
+
   @Override
   public PortNumber portNumber() {
     return this.portNumber;
@@ -0,0 +1,161 @@
+package org.inesctec.flexcomm.statistics.api;
+
+public final class DefaultStatisticsRollup implements StatisticsRollup {
+
+  private final long startTime;
+  private final long count;
+  private final double currentConsumptionSum;
+  private final double currentConsumptionMin;
+  private final double currentConsumptionMax;
+  private final double currentConsumptionLast;
+  private final double powerDrawnSum;
+  private final double powerDrawnMin;
+  private final double powerDrawnMax;
+  private final double powerDrawnLast;
+
+  private DefaultStatisticsRollup(Builder builder) {
+    this.startTime = builder.startTime;
+    this.count = builder.count;
+    this.currentConsumptionSum = builder.currentConsumptionSum;
+    this.currentConsumptionMin = builder.currentConsumptionMin;
+    this.currentConsumptionMax = builder.currentConsumptionMax;
+    this.currentConsumptionLast = builder.currentConsumptionLast;
+    this.powerDrawnSum = builder.powerDrawnSum;
+    this.powerDrawnMin = builder.powerDrawnMin;
+    this.powerDrawnMax = builder.powerDrawnMax;
+    this.powerDrawnLast = builder.powerDrawnLast;
+  }
+
+  public static StatisticsRollup.Builder builder() {
+    return new Builder();
+  }
+
+  @Override
+  public long startTime() {
+    return this.startTime;
+  }
+
+  @Override
+  public long count() {
+    return this.count;
+  }
+
+  @Override
+  public double currentConsumptionSum() {
+    return this.currentConsumptionSum;
+  }
+
+  @Override
+  public double currentConsumptionMin() {
+    return this.currentConsumptionMin;
+  }
+
+  @Override
+  public double currentConsumptionMax() {
+    return this.currentConsumptionMax;
+  }
+
+  @Override
+  public double currentConsumptionLast() {
+    return this.currentConsumptionLast;
+  }
+
+  @Override
+  public double currentConsumptionAverage() {
+    return count == 0 ? 0 : currentConsumptionSum / count;
+  }
+
+  @Override
+  public double powerDrawnSum() {
+    return this.powerDrawnSum;
+  }
+
+  @Override
+  public double powerDrawnMin() {
+    return this.powerDrawnMin;
+  }
+
+  @Override
+  public double powerDrawnMax() {
+    return this.powerDrawnMax;
+  }
+
+  @Override
+  public double powerDrawnLast() {
+    return this.powerDrawnLast;
+  }
+
+  @Override
+  public double powerDrawnAverage() {
+    return count == 0 ? 0 : powerDrawnSum / count;
+  }
+
+  @Override
+  public String toString() {
+    return "startTime: " + this.startTime + ", " +
+        "count: " + this.count + ", " +
+        "currentConsumption: [sum: " + this.currentConsumptionSum + ", min: " + this.currentConsumptionMin +
+        ", max: " + this.currentConsumptionMax + ", last: " + this.currentConsumptionLast + "], " +
+        "powerDrawn: [sum: " + this.powerDrawnSum + ", min: " + this.powerDrawnMin +
+        ", max: " + this.powerDrawnMax + ", last: " + this.powerDrawnLast + "]";
+  }
+
+  public static final class Builder implements StatisticsRollup.Builder {
+
+    long startTime = 0;
+    long count = 0;
+    double currentConsumptionSum = 0;
+    double currentConsumptionMin = 0;
+    double currentConsumptionMax = 0;
+    double currentConsumptionLast = 0;
+    double powerDrawnSum = 0;
+    double powerDrawnMin = 0;
+    double powerDrawnMax = 0;
+    double powerDrawnLast = 0;
+
+    private Builder() {
+
+    }
+
+    @Override
+    public StatisticsRollup.Builder setStartTime(long startTime) {
+      this.startTime = startTime;
+
+      return this;
+    }
+
+    @Override
+    public StatisticsRollup.Builder setCount(long count) {
+      this.count = count;
+
+      return this;
+    }
+
+    @Override
+    public StatisticsRollup.Builder setCurrentConsumption(double sum, double min, double max, double last) {
+      this.currentConsumptionSum = sum;
+      this.currentConsumptionMin = min;
+      this.currentConsumptionMax = max;
+      this.currentConsumptionLast = last;
+
+      return this;
+    }
+
+    @Override
+    public StatisticsRollup.Builder setPowerDrawn(double sum, double min, double max, double last) {
+      this.powerDrawnSum = sum;
+      this.powerDrawnMin = min;
+      this.powerDrawnMax = max;
+      this.powerDrawnLast = last;
+
+      return this;
+    }
+
+    @Override
+    public DefaultStatisticsRollup build() {
+      return new DefaultStatisticsRollup(this);
+    }
+
+  }
+
+}
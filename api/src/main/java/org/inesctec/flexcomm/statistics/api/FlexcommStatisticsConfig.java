@@ -0,0 +1,58 @@
+package org.inesctec.flexcomm.statistics.api;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.config.Config;
+
+public final class FlexcommStatisticsConfig extends Config<DeviceId> {
+
+  public static final String CONFIG_KEY = "flexcommStatistics";
+
+  public static final String ENABLED = "enabled";
+  public static final String POLL_INTERVAL = "pollInterval";
+  public static final String PORT_POLL_INTERVAL = "portPollInterval";
+  public static final String HISTORY_SIZE = "historySize";
+
+  // unset values fall back to the global component properties
+  public static final int UNSET = -1;
+
+  @Override
+  public boolean isValid() {
+    return hasOnlyFields(ENABLED, POLL_INTERVAL, PORT_POLL_INTERVAL, HISTORY_SIZE)
+        && isBoolean(ENABLED, FieldPresence.OPTIONAL)
+        && isIntegralNumber(POLL_INTERVAL, FieldPresence.OPTIONAL, 1, Integer.MAX_VALUE)
+        && isIntegralNumber(PORT_POLL_INTERVAL, FieldPresence.OPTIONAL, 1, Integer.MAX_VALUE)
+        && isIntegralNumber(HISTORY_SIZE, FieldPresence.OPTIONAL, 0, Integer.MAX_VALUE);
+  }
+
+  public boolean enabled() {
+    return get(ENABLED, true);
+  }
+
+  public FlexcommStatisticsConfig enabled(Boolean enabled) {
+    return (FlexcommStatisticsConfig) setOrClear(ENABLED, enabled);
+  }
+
+  public int pollInterval() {
+    return get(POLL_INTERVAL, UNSET);
+  }
+
+  public FlexcommStatisticsConfig pollInterval(Integer pollInterval) {
+    return (FlexcommStatisticsConfig) setOrClear(POLL_INTERVAL, pollInterval);
+  }
+
+  public int portPollInterval() {
+    return get(PORT_POLL_INTERVAL, UNSET);
+  }
+
+  public FlexcommStatisticsConfig portPollInterval(Integer portPollInterval) {
+    return (FlexcommStatisticsConfig) setOrClear(PORT_POLL_INTERVAL, portPollInterval);
+  }
+
+  public int historySize() {
+    return get(HISTORY_SIZE, UNSET);
+  }
+
+  public FlexcommStatisticsConfig historySize(Integer historySize) {
+    return (FlexcommStatisticsConfig) setOrClear(HISTORY_SIZE, historySize);
+  }
+}
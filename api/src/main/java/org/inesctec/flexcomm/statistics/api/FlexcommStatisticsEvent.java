@@ -1,20 +1,59 @@
 package org.inesctec.flexcomm.statistics.api;
 
+import java.util.Set;
+
 import org.onosproject.event.AbstractEvent;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+import com.google.common.collect.ImmutableSet;
 
 public class FlexcommStatisticsEvent extends AbstractEvent<FlexcommStatisticsEvent.Type, DeviceId> {
 
   public enum Type {
     GLOBAL_STATS_UPDATED,
     PORT_STATS_UPDATED,
+    STATS_BATCH_UPDATED,
+    GLOBAL_STATS_REMOVED,
+    PORT_STATS_REMOVED,
   }
 
+  private final Set<DeviceId> devices;
+  private final Set<PortNumber> ports;
+
   public FlexcommStatisticsEvent(Type type, DeviceId deviceId) {
     super(type, deviceId);
+    this.devices = null;
+    this.ports = ImmutableSet.of();
   }
 
   public FlexcommStatisticsEvent(Type type, DeviceId deviceId, long time) {
     super(type, deviceId, time);
+    this.devices = null;
+    this.ports = ImmutableSet.of();
+  }
+
+  public FlexcommStatisticsEvent(Type type, DeviceId deviceId, Set<PortNumber> ports) {
+    super(type, deviceId);
+    this.devices = null;
+    this.ports = ImmutableSet.copyOf(ports);
+  }
+
+  public FlexcommStatisticsEvent(Type type, Set<DeviceId> devices) {
+    super(type, null);
+    this.devices = ImmutableSet.copyOf(devices);
+    this.ports = ImmutableSet.of();
+  }
+
+  public Set<DeviceId> devices() {
+    if (devices != null) {
+      return devices;
+    }
+    return subject() != null ? ImmutableSet.of(subject()) : ImmutableSet.of();
+  }
+
+  // the ports a partial port update changed, empty when any of the device's ports may have changed
+  public Set<PortNumber> ports() {
+    return ports;
   }
 }
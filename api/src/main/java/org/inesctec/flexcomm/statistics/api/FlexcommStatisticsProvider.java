@@ -1,6 +1,11 @@
 package org.inesctec.flexcomm.statistics.api;
 
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.provider.Provider;
 
 public interface FlexcommStatisticsProvider extends Provider {
+
+  default PollingStatistics getPollingStatistics(DeviceId deviceId) {
+    return null;
+  }
 }
@@ -1,6 +1,7 @@
 package org.inesctec.flexcomm.statistics.api;
 
 import java.util.Collection;
+import java.util.Map;
 
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.provider.ProviderService;
@@ -11,4 +12,15 @@ public interface FlexcommStatisticsProviderService extends ProviderService<Flexc
 
   void updatePortStatistics(DeviceId deviceId, Collection<PortStatistics> portStatistics);
 
+  // the first size entries of each array describe one port, the arrays must not be reused by the caller
+  void updatePortStatistics(DeviceId deviceId, long[] portNumbers, double[] currentConsumption, double[] powerDrawn,
+      int size);
+
+  // same as above, but for a subset of the device's ports
+  void mergePortStatistics(DeviceId deviceId, long[] portNumbers, double[] currentConsumption, double[] powerDrawn,
+      int size);
+
+  void updateStatistics(Map<DeviceId, GlobalStatistics> globalStatistics,
+      Map<DeviceId, Collection<PortStatistics>> portStatistics);
+
 }
@@ -1,6 +1,8 @@
 package org.inesctec.flexcomm.statistics.api;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.onosproject.event.ListenerService;
 import org.onosproject.net.DeviceId;
@@ -9,6 +11,9 @@ import org.onosproject.net.PortNumber;
 public interface FlexcommStatisticsService
     extends ListenerService<FlexcommStatisticsEvent, FlexcommStatisticsListener> {
 
+  // versions are local to each controller node, a device whose changes this node does not see has no version
+  long UNKNOWN_VERSION = -1;
+
   public GlobalStatistics getGlobalStatistics(DeviceId deviceId);
 
   public GlobalStatistics getGlobalDeltaStatistics(DeviceId deviceId);
@@ -20,4 +25,33 @@ public interface FlexcommStatisticsService
   public PortStatistics getStatisticsForPort(DeviceId deviceId, PortNumber portNumber);
 
   public PortStatistics getDeltaStatisticsForPort(DeviceId deviceId, PortNumber portNumber);
+
+  public Map<DeviceId, GlobalStatistics> getGlobalStatistics(Collection<DeviceId> deviceIds, boolean delta);
+
+  public Map<DeviceId, List<PortStatistics>> getPortStatistics(Map<DeviceId, ? extends Collection<PortNumber>> ports,
+      boolean delta);
+
+  public List<HistoricalStatistics> getGlobalStatisticsHistory(DeviceId deviceId, long startTime, long endTime);
+
+  public List<HistoricalStatistics> getPortStatisticsHistory(DeviceId deviceId, PortNumber portNumber,
+      long startTime, long endTime);
+
+  public List<StatisticsRollup> getGlobalStatisticsRollup(DeviceId deviceId, RollupResolution resolution);
+
+  public List<StatisticsRollup> getPortStatisticsRollup(DeviceId deviceId, PortNumber portNumber,
+      RollupResolution resolution);
+
+  public PollingStatistics getPollingStatistics(DeviceId deviceId);
+
+  public long getStatisticsVersion();
+
+  public long getStatisticsVersion(DeviceId deviceId);
+
+  public AggregateStatistics getAggregatePortStatistics();
+
+  public AggregateStatistics getAggregatePortStatistics(DeviceId deviceId);
+
+  public List<AggregateStatistics> getTopPortsByPowerDrawn(int count);
+
+  public List<AggregateStatistics> getTopDevicesByPowerDrawn(int count);
 }
@@ -2,6 +2,7 @@ package org.inesctec.flexcomm.statistics.api;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.PortNumber;
@@ -13,6 +14,17 @@ public interface FlexcommStatisticsStore extends Store<FlexcommStatisticsEvent,
 
   FlexcommStatisticsEvent updatePortStatistics(DeviceId deviceId, Collection<PortStatistics> portStatistics);
 
+  // the store takes ownership of the arrays
+  FlexcommStatisticsEvent updatePortStatistics(DeviceId deviceId, long[] portNumbers, double[] currentConsumption,
+      double[] powerDrawn, int size);
+
+  // updates only the given ports, the device's other ports keep their stored readings
+  FlexcommStatisticsEvent mergePortStatistics(DeviceId deviceId, long[] portNumbers, double[] currentConsumption,
+      double[] powerDrawn, int size);
+
+  FlexcommStatisticsEvent updateStatistics(Map<DeviceId, GlobalStatistics> globalStatistics,
+      Map<DeviceId, Collection<PortStatistics>> portStatistics);
+
   GlobalStatistics getGlobalStatistics(DeviceId deviceId);
 
   GlobalStatistics getGlobalDeltaStatistics(DeviceId deviceId);
@@ -25,6 +37,30 @@ public interface FlexcommStatisticsStore extends Store<FlexcommStatisticsEvent,
 
   PortStatistics getDeltaStatisticsForPort(DeviceId deviceId, PortNumber portNumber);
 
+  Map<DeviceId, GlobalStatistics> getGlobalStatistics(Collection<DeviceId> deviceIds, boolean delta);
+
+  // an empty port collection selects every port of the device
+  Map<DeviceId, List<PortStatistics>> getPortStatistics(Map<DeviceId, ? extends Collection<PortNumber>> ports,
+      boolean delta);
+
+  List<HistoricalStatistics> getGlobalStatisticsHistory(DeviceId deviceId, long startTime, long endTime);
+
+  List<HistoricalStatistics> getPortStatisticsHistory(DeviceId deviceId, PortNumber portNumber, long startTime,
+      long endTime);
+
+  List<StatisticsRollup> getGlobalStatisticsRollup(DeviceId deviceId, RollupResolution resolution);
+
+  List<StatisticsRollup> getPortStatisticsRollup(DeviceId deviceId, PortNumber portNumber,
+      RollupResolution resolution);
+
+  long getStatisticsVersion();
+
+  long getStatisticsVersion(DeviceId deviceId);
+
   default void purgeStatistics(DeviceId deviceId) {
   }
+
+  // a negative size restores the global history size
+  default void setHistorySize(DeviceId deviceId, int historySize) {
+  }
 }
@@ -0,0 +1,21 @@
+package org.inesctec.flexcomm.statistics.api;
+
+public interface HistoricalStatistics {
+
+  long timestamp();
+
+  double currentConsumption();
+
+  double powerDrawn();
+
+  interface Builder {
+
+    Builder setTimestamp(long timestamp);
+
+    Builder setCurrentConsumption(double currentConsumption);
+
+    Builder setPowerDrawn(double powerDrawn);
+
+    HistoricalStatistics build();
+  }
+}
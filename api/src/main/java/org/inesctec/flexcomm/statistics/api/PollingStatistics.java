@@ -0,0 +1,55 @@
+package org.inesctec.flexcomm.statistics.api;
+
+import org.onosproject.net.DeviceId;
+
+public interface PollingStatistics {
+
+  DeviceId deviceId();
+
+  long requests();
+
+  long replies();
+
+  long timeouts();
+
+  long missedPolls();
+
+  long outstanding();
+
+  long meanLatencyMicros();
+
+  long latencyPercentileMicros(double percentile);
+
+  long maxLatencyMicros();
+
+  long pushedReports();
+
+  boolean pushing();
+
+  interface Builder {
+
+    Builder setDeviceId(DeviceId deviceId);
+
+    Builder setRequests(long requests);
+
+    Builder setReplies(long replies);
+
+    Builder setTimeouts(long timeouts);
+
+    Builder setMissedPolls(long missedPolls);
+
+    Builder setOutstanding(long outstanding);
+
+    Builder setMeanLatencyMicros(long meanLatencyMicros);
+
+    Builder setLatencyPercentilesMicros(long p50, long p90, long p99);
+
+    Builder setMaxLatencyMicros(long maxLatencyMicros);
+
+    Builder setPushedReports(long pushedReports);
+
+    Builder setPushing(boolean pushing);
+
+    PollingStatistics build();
+  }
+}
@@ -0,0 +1,41 @@
+package org.inesctec.flexcomm.statistics.api;
+
+import java.util.concurrent.TimeUnit;
+
+public enum RollupResolution {
+
+  ONE_MINUTE("1m", TimeUnit.MINUTES.toMillis(1), 60),
+  FIFTEEN_MINUTES("15m", TimeUnit.MINUTES.toMillis(15), 96),
+  ONE_HOUR("1h", TimeUnit.HOURS.toMillis(1), 168);
+
+  private final String label;
+  private final long durationMillis;
+  private final int buckets;
+
+  RollupResolution(String label, long durationMillis, int buckets) {
+    this.label = label;
+    this.durationMillis = durationMillis;
+    this.buckets = buckets;
+  }
+
+  public String label() {
+    return label;
+  }
+
+  public long durationMillis() {
+    return durationMillis;
+  }
+
+  public int buckets() {
+    return buckets;
+  }
+
+  public static RollupResolution fromLabel(String label) {
+    for (RollupResolution resolution : values()) {
+      if (resolution.label.equals(label)) {
+        return resolution;
+      }
+    }
+    return null;
+  }
+}
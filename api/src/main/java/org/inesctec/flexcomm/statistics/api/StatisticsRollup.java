@@ -0,0 +1,41 @@
+package org.inesctec.flexcomm.statistics.api;
+
+public interface StatisticsRollup {
+
+  long startTime();
+
+  long count();
+
+  double currentConsumptionSum();
+
+  double currentConsumptionMin();
+
+  double currentConsumptionMax();
+
+  double currentConsumptionLast();
+
+  double currentConsumptionAverage();
+
+  double powerDrawnSum();
+
+  double powerDrawnMin();
+
+  double powerDrawnMax();
+
+  double powerDrawnLast();
+
+  double powerDrawnAverage();
+
+  interface Builder {
+
+    Builder setStartTime(long startTime);
+
+    Builder setCount(long count);
+
+    Builder setCurrentConsumption(double sum, double min, double max, double last);
+
+    Builder setPowerDrawn(double sum, double min, double max, double last);
+
+    StatisticsRollup build();
+  }
+}
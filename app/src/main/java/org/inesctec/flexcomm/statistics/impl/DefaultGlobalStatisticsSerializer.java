@@ -0,0 +1,48 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.inesctec.flexcomm.statistics.impl.StatisticsSerializers.HAS_ANNOTATIONS;
+import static org.inesctec.flexcomm.statistics.impl.StatisticsSerializers.HAS_DEVICE_ID;
+
+import org.inesctec.flexcomm.statistics.api.DefaultGlobalStatistics;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DeviceId;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+public final class DefaultGlobalStatisticsSerializer extends Serializer<DefaultGlobalStatistics> {
+
+  public DefaultGlobalStatisticsSerializer() {
+    super(false, true);
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output, DefaultGlobalStatistics statistics) {
+    int flags = StatisticsSerializers.flags(statistics.deviceId(), null, statistics.annotations());
+    output.writeByte(flags);
+    if ((flags & HAS_DEVICE_ID) != 0) {
+      output.writeString(statistics.deviceId().toString());
+    }
+    output.writeDouble(statistics.currentConsumption());
+    output.writeDouble(statistics.powerDrawn());
+    if ((flags & HAS_ANNOTATIONS) != 0) {
+      StatisticsSerializers.writeAnnotations(output, statistics.annotations());
+    }
+  }
+
+  @Override
+  public DefaultGlobalStatistics read(Kryo kryo, Input input, Class<DefaultGlobalStatistics> type) {
+    int flags = input.readByte();
+    DefaultGlobalStatistics.Builder builder = (DefaultGlobalStatistics.Builder) DefaultGlobalStatistics.builder();
+    if ((flags & HAS_DEVICE_ID) != 0) {
+      builder.setDeviceId(DeviceId.deviceId(input.readString()));
+    }
+    builder.setCurrentConsumption(input.readDouble())
+        .setPowerDrawn(input.readDouble())
+        .setAnnotations((flags & HAS_ANNOTATIONS) != 0 ? StatisticsSerializers.readAnnotations(input)
+            : DefaultAnnotations.EMPTY);
+    return builder.build();
+  }
+}
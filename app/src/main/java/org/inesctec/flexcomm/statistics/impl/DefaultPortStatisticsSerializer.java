@@ -0,0 +1,63 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.inesctec.flexcomm.statistics.impl.StatisticsSerializers.HAS_ANNOTATIONS;
+import static org.inesctec.flexcomm.statistics.impl.StatisticsSerializers.HAS_DEVICE_ID;
+import static org.inesctec.flexcomm.statistics.impl.StatisticsSerializers.HAS_PORT_NAME;
+import static org.inesctec.flexcomm.statistics.impl.StatisticsSerializers.HAS_PORT_NUMBER;
+
+import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+public final class DefaultPortStatisticsSerializer extends Serializer<DefaultPortStatistics> {
+
+  public DefaultPortStatisticsSerializer() {
+    super(false, true);
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output, DefaultPortStatistics statistics) {
+    PortNumber portNumber = statistics.portNumber();
+    int flags = StatisticsSerializers.flags(statistics.deviceId(), portNumber, statistics.annotations());
+    output.writeByte(flags);
+    if ((flags & HAS_DEVICE_ID) != 0) {
+      output.writeString(statistics.deviceId().toString());
+    }
+    if ((flags & HAS_PORT_NUMBER) != 0) {
+      output.writeVarLong(portNumber.toLong(), true);
+    }
+    if ((flags & HAS_PORT_NAME) != 0) {
+      output.writeString(portNumber.name());
+    }
+    output.writeDouble(statistics.currentConsumption());
+    output.writeDouble(statistics.powerDrawn());
+    if ((flags & HAS_ANNOTATIONS) != 0) {
+      StatisticsSerializers.writeAnnotations(output, statistics.annotations());
+    }
+  }
+
+  @Override
+  public DefaultPortStatistics read(Kryo kryo, Input input, Class<DefaultPortStatistics> type) {
+    int flags = input.readByte();
+    DefaultPortStatistics.Builder builder = (DefaultPortStatistics.Builder) DefaultPortStatistics.builder();
+    if ((flags & HAS_DEVICE_ID) != 0) {
+      builder.setDeviceId(DeviceId.deviceId(input.readString()));
+    }
+    if ((flags & HAS_PORT_NUMBER) != 0) {
+      long port = input.readVarLong(true);
+      builder.setPortNumber((flags & HAS_PORT_NAME) != 0 ? PortNumber.portNumber(port, input.readString())
+          : PortNumber.portNumber(port));
+    }
+    builder.setCurrentConsumption(input.readDouble())
+        .setPowerDrawn(input.readDouble())
+        .setAnnotations((flags & HAS_ANNOTATIONS) != 0 ? StatisticsSerializers.readAnnotations(input)
+            : DefaultAnnotations.EMPTY);
+    return builder.build();
+  }
+}
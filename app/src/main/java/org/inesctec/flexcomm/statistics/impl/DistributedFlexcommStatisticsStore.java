@@ -1,250 +1,960 @@
 package org.inesctec.flexcomm.statistics.impl;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent.Type.GLOBAL_STATS_REMOVED;
 import static org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent.Type.GLOBAL_STATS_UPDATED;
+import static org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent.Type.PORT_STATS_REMOVED;
 import static org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent.Type.PORT_STATS_UPDATED;
+import static org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent.Type.STATS_BATCH_UPDATED;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.ADAPTIVE_POLLING;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.ADAPTIVE_POLLING_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.CURRENT_DEADBAND;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.CURRENT_DEADBAND_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.CURRENT_RELATIVE_DEADBAND;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.CURRENT_RELATIVE_DEADBAND_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MASTER_LOCAL_STATS;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MASTER_LOCAL_STATS_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MAX_IN_FLIGHT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MAX_IN_FLIGHT_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MAX_POLL_FREQ;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MAX_POLL_FREQ_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POLL_FREQ;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POLL_FREQ_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PORT_STATS_ROLLUPS;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PORT_STATS_ROLLUPS_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POWER_DEADBAND;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POWER_DEADBAND_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POWER_RELATIVE_DEADBAND;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POWER_RELATIVE_DEADBAND_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PUSH_MODE;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PUSH_MODE_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PUSH_TIMEOUT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PUSH_TIMEOUT_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.STATS_EXPIRY_FACTOR;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.STATS_EXPIRY_FACTOR_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.STATS_HISTORY_SIZE;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.STATS_HISTORY_SIZE_DEFAULT;
+import static org.onlab.util.Tools.futureGetOrElse;
+import static org.onlab.util.Tools.get;
+import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.store.service.EventuallyConsistentMapEvent.Type.PUT;
+import static org.onosproject.store.service.EventuallyConsistentMapEvent.Type.REMOVE;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.inesctec.flexcomm.statistics.api.DefaultGlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.DefaultHistoricalStatistics;
 import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.inesctec.flexcomm.statistics.api.DefaultStatisticsRollup;
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsConfig;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent;
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsService;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsStore;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsStoreDelegate;
 import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.HistoricalStatistics;
 import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.inesctec.flexcomm.statistics.api.RollupResolution;
+import org.inesctec.flexcomm.statistics.api.StatisticsRollup;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.KryoNamespace;
+import org.onlab.util.Tools;
+import org.onosproject.cfg.ComponentConfigService;
+import org.onosproject.cfg.ConfigProperty;
+import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.mastership.MastershipService;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.PortNumber;
+import org.onosproject.net.config.NetworkConfigService;
 import org.onosproject.store.AbstractStore;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.MessageSubject;
 import org.onosproject.store.serializers.KryoNamespaces;
 import org.onosproject.store.service.EventuallyConsistentMap;
 import org.onosproject.store.service.EventuallyConsistentMapEvent;
 import org.onosproject.store.service.EventuallyConsistentMapListener;
+import org.onosproject.store.service.Serializer;
 import org.onosproject.store.service.StorageService;
 import org.onosproject.store.service.WallClockTimestamp;
+import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Counter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-
-@Component(immediate = true, service = FlexcommStatisticsStore.class)
+import com.google.common.collect.Sets;
+
+@Component(immediate = true, service = FlexcommStatisticsStore.class, property = {
+    STATS_HISTORY_SIZE + ":Integer=" + STATS_HISTORY_SIZE_DEFAULT,
+    MASTER_LOCAL_STATS + ":Boolean=" + MASTER_LOCAL_STATS_DEFAULT,
+    STATS_EXPIRY_FACTOR + ":Integer=" + STATS_EXPIRY_FACTOR_DEFAULT,
+    PORT_STATS_ROLLUPS + ":Boolean=" + PORT_STATS_ROLLUPS_DEFAULT,
+    CURRENT_DEADBAND + ":Double=" + CURRENT_DEADBAND_DEFAULT,
+    CURRENT_RELATIVE_DEADBAND + ":Double=" + CURRENT_RELATIVE_DEADBAND_DEFAULT,
+    POWER_DEADBAND + ":Double=" + POWER_DEADBAND_DEFAULT,
+    POWER_RELATIVE_DEADBAND + ":Double=" + POWER_RELATIVE_DEADBAND_DEFAULT,
+})
 public class DistributedFlexcommStatisticsStore
     extends AbstractStore<FlexcommStatisticsEvent, FlexcommStatisticsStoreDelegate>
     implements FlexcommStatisticsStore {
 
   private final Logger log = getLogger(getClass());
 
+  private static final MessageSubject GLOBAL_STATS_REQUEST = new MessageSubject("flexcomm-global-stats-request");
+  private static final MessageSubject PORT_STATS_REQUEST = new MessageSubject("flexcomm-port-stats-request");
+  private static final MessageSubject HISTORY_REQUEST = new MessageSubject("flexcomm-stats-history-request");
+  private static final MessageSubject ROLLUP_REQUEST = new MessageSubject("flexcomm-stats-rollup-request");
+  private static final MessageSubject BULK_STATS_REQUEST = new MessageSubject("flexcomm-bulk-stats-request");
+
+  private static final long REMOTE_FETCH_TIMEOUT_MILLIS = 500;
+  private static final long REMOTE_CACHE_TTL_MILLIS = 1000;
+
+  private static final long SWEEP_PERIOD_SECONDS = 5;
+  private static final int SWEEP_BATCH_SIZE = 256;
+
+  private static final String METRICS_COMPONENT = "FlexcommStatistics";
+  private static final String METRICS_FEATURE = "Store";
+  private static final String SUPPRESSED_UPDATES = "suppressedUpdates";
+
   @Reference(cardinality = ReferenceCardinality.MANDATORY)
   protected StorageService storageService;
 
-  private EventuallyConsistentMap<DeviceId, GlobalStatistics> deviceGlobalStats;
-  private EventuallyConsistentMap<DeviceId, GlobalStatistics> deviceGlobalDeltaStats;
-  private final EventuallyConsistentMapListener<DeviceId, GlobalStatistics> globalStatsListener = new InternalGlobalStatsListener();
+  @Reference(cardinality = ReferenceCardinality.MANDATORY)
+  protected ComponentConfigService cfgService;
 
-  private EventuallyConsistentMap<DeviceId, Map<PortNumber, PortStatistics>> devicePortStats;
-  private EventuallyConsistentMap<DeviceId, Map<PortNumber, PortStatistics>> devicePortDeltaStats;
-  private final EventuallyConsistentMapListener<DeviceId, Map<PortNumber, PortStatistics>> portStatsListener = new InternalPortStatsListener();
+  @Reference(cardinality = ReferenceCardinality.MANDATORY)
+  protected MastershipService mastershipService;
+
+  @Reference(cardinality = ReferenceCardinality.MANDATORY)
+  protected ClusterService clusterService;
+
+  @Reference(cardinality = ReferenceCardinality.MANDATORY)
+  protected ClusterCommunicationService clusterCommunicator;
+
+  @Reference(cardinality = ReferenceCardinality.MANDATORY)
+  protected MetricsService metricsService;
 
+  @Reference(cardinality = ReferenceCardinality.MANDATORY)
+  protected NetworkConfigService netCfgService;
+
+  private int statsHistorySize = STATS_HISTORY_SIZE_DEFAULT;
+  private volatile boolean masterLocalStatistics = MASTER_LOCAL_STATS_DEFAULT;
+  private volatile int statsExpiryFactor = STATS_EXPIRY_FACTOR_DEFAULT;
+  private volatile boolean portStatsRollups = PORT_STATS_ROLLUPS_DEFAULT;
+  private double currentDeadband = CURRENT_DEADBAND_DEFAULT;
+  private double currentRelativeDeadband = CURRENT_RELATIVE_DEADBAND_DEFAULT;
+  private double powerDeadband = POWER_DEADBAND_DEFAULT;
+  private double powerRelativeDeadband = POWER_RELATIVE_DEADBAND_DEFAULT;
+  private volatile StatisticsDeadband deadband = StatisticsDeadband.NONE;
+
+  private MetricsComponent metricsComponent;
+  private MetricsFeature metricsFeature;
+  private Counter suppressedUpdates;
+
+  private ExecutorService messageHandlingExecutor;
+  private ScheduledExecutorService sweepExecutor;
+
+  // bumped after every update this node applies, devices keep theirs once purged so readers see the removal
+  private final AtomicLong version = new AtomicLong();
+  private final Map<DeviceId, Long> deviceVersions = Maps.newConcurrentMap();
+
+  private final StatisticsHistory history = new StatisticsHistory(STATS_HISTORY_SIZE_DEFAULT);
+  private final StatisticsRollups rollups = new StatisticsRollups(PORT_STATS_ROLLUPS_DEFAULT);
+
+  // refreshed by readings suppressed by the deadband, never replicated
+  private final Map<DeviceId, Long> lastSeen = Maps.newConcurrentMap();
+
+  private EventuallyConsistentMap<DeviceId, GlobalStatisticsSample> deviceGlobalStats;
+  private final EventuallyConsistentMapListener<DeviceId, GlobalStatisticsSample> globalStatsListener = new InternalGlobalStatsListener();
+
+  private EventuallyConsistentMap<DeviceId, PortStatisticsSample> devicePortStats;
+  private final EventuallyConsistentMapListener<DeviceId, PortStatisticsSample> portStatsListener = new InternalPortStatsListener();
+
+  // used instead of the replicated maps when statistics are kept on the device master only
+  private final Map<DeviceId, GlobalStatisticsSample> localGlobalStats = Maps.newConcurrentMap();
+  private final Map<DeviceId, PortStatisticsSample> localPortStats = Maps.newConcurrentMap();
+  private final Cache<DeviceId, GlobalStatisticsSample> remoteGlobalStats = CacheBuilder.newBuilder()
+      .expireAfterWrite(REMOTE_CACHE_TTL_MILLIS, TimeUnit.MILLISECONDS)
+      .build();
+  private final Cache<DeviceId, PortStatisticsSample> remotePortStats = CacheBuilder.newBuilder()
+      .expireAfterWrite(REMOTE_CACHE_TTL_MILLIS, TimeUnit.MILLISECONDS)
+      .build();
+
+  // every type keeps its id whatever is registered around it, so nodes on different builds still agree
   protected static final KryoNamespace.Builder SERIALIZER_BUILDER = KryoNamespace.newBuilder()
       .register(KryoNamespaces.API)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID)
       .register(GlobalStatistics.class)
-      .register(PortStatistics.class);
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 1)
+      .register(PortStatistics.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 2)
+      .register(new DefaultGlobalStatisticsSerializer(), DefaultGlobalStatistics.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 3)
+      .register(new DefaultPortStatisticsSerializer(), DefaultPortStatistics.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 4)
+      .register(new PortStatisticsSnapshotSerializer(), PortStatisticsSnapshot.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 5)
+      .register(new GlobalStatisticsSampleSerializer(), GlobalStatisticsSample.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 6)
+      .register(new PortStatisticsSampleSerializer(), PortStatisticsSample.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 7)
+      .register(HistoryQuery.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 8)
+      .register(DefaultHistoricalStatistics.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 9)
+      .register(RollupQuery.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 10)
+      .register(RollupResolution.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 11)
+      .register(DefaultStatisticsRollup.class)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 12)
+      .register(StatisticsSamples.class);
+
+  private static final Serializer SERIALIZER = Serializer.using(SERIALIZER_BUILDER.build());
 
   @Activate
-  public void activate() {
-    deviceGlobalStats = storageService.<DeviceId, GlobalStatistics>eventuallyConsistentMapBuilder()
+  public void activate(ComponentContext context) {
+    cfgService.registerProperties(getClass());
+    // versions start from the clock so they keep growing across restarts
+    version.set(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()));
+    metricsComponent = metricsService.registerComponent(METRICS_COMPONENT);
+    metricsFeature = metricsComponent.registerFeature(METRICS_FEATURE);
+    suppressedUpdates = metricsService.createCounter(metricsComponent, metricsFeature, SUPPRESSED_UPDATES);
+    modified(context);
+
+    messageHandlingExecutor = Executors.newSingleThreadExecutor(
+        groupedThreads("onos/flexcomm/stats", "message-handlers", log));
+    clusterCommunicator.<DeviceId, GlobalStatisticsSample>addSubscriber(GLOBAL_STATS_REQUEST,
+        SERIALIZER::decode, localGlobalStats::get, SERIALIZER::encode, messageHandlingExecutor);
+    clusterCommunicator.<DeviceId, PortStatisticsSample>addSubscriber(PORT_STATS_REQUEST,
+        SERIALIZER::decode, localPortStats::get, SERIALIZER::encode, messageHandlingExecutor);
+    clusterCommunicator.<HistoryQuery, List<HistoricalStatistics>>addSubscriber(HISTORY_REQUEST,
+        SERIALIZER::decode, this::localHistory, SERIALIZER::encode, messageHandlingExecutor);
+    clusterCommunicator.<RollupQuery, List<StatisticsRollup>>addSubscriber(ROLLUP_REQUEST,
+        SERIALIZER::decode, this::localRollup, SERIALIZER::encode, messageHandlingExecutor);
+    clusterCommunicator.<List<DeviceId>, StatisticsSamples>addSubscriber(BULK_STATS_REQUEST,
+        SERIALIZER::decode, this::localSamples, SERIALIZER::encode, messageHandlingExecutor);
+
+    deviceGlobalStats = storageService.<DeviceId, GlobalStatisticsSample>eventuallyConsistentMapBuilder()
         .withName("onos-flexcomm-global-stats")
         .withSerializer(SERIALIZER_BUILDER)
         .withAntiEntropyPeriod(5, TimeUnit.SECONDS)
         .withTimestampProvider((k, v) -> new WallClockTimestamp())
-        .withTombstonesDisabled()
-        .build();
-
-    deviceGlobalDeltaStats = storageService.<DeviceId, GlobalStatistics>eventuallyConsistentMapBuilder()
-        .withName("onos-flexcomm-global-stats-delta")
-        .withSerializer(SERIALIZER_BUILDER)
-        .withAntiEntropyPeriod(5, TimeUnit.SECONDS)
-        .withTimestampProvider((k, v) -> new WallClockTimestamp())
-        .withTombstonesDisabled()
         .build();
 
-    devicePortStats = storageService.<DeviceId, Map<PortNumber, PortStatistics>>eventuallyConsistentMapBuilder()
+    devicePortStats = storageService.<DeviceId, PortStatisticsSample>eventuallyConsistentMapBuilder()
         .withName("onos-flexcomm-port-stats")
         .withSerializer(SERIALIZER_BUILDER)
         .withAntiEntropyPeriod(5, TimeUnit.SECONDS)
         .withTimestampProvider((k, v) -> new WallClockTimestamp())
-        .withTombstonesDisabled()
-        .build();
-
-    devicePortDeltaStats = storageService.<DeviceId, Map<PortNumber, PortStatistics>>eventuallyConsistentMapBuilder()
-        .withName("onos-flexcomm-port-stats-delta")
-        .withSerializer(SERIALIZER_BUILDER)
-        .withAntiEntropyPeriod(5, TimeUnit.SECONDS)
-        .withTimestampProvider((k, v) -> new WallClockTimestamp())
-        .withTombstonesDisabled()
         .build();
 
     deviceGlobalStats.addListener(globalStatsListener);
     devicePortStats.addListener(portStatsListener);
+
+    sweepExecutor = Executors.newSingleThreadScheduledExecutor(groupedThreads("onos/flexcomm/stats", "sweeper", log));
+    sweepExecutor.scheduleWithFixedDelay(this::sweepExpiredStatistics, SWEEP_PERIOD_SECONDS, SWEEP_PERIOD_SECONDS,
+        TimeUnit.SECONDS);
     log.info("Started");
   }
 
   @Deactivate
   public void deactivate() {
+    cfgService.unregisterProperties(getClass(), false);
+    clusterCommunicator.removeSubscriber(GLOBAL_STATS_REQUEST);
+    clusterCommunicator.removeSubscriber(PORT_STATS_REQUEST);
+    clusterCommunicator.removeSubscriber(HISTORY_REQUEST);
+    clusterCommunicator.removeSubscriber(ROLLUP_REQUEST);
+    clusterCommunicator.removeSubscriber(BULK_STATS_REQUEST);
+    messageHandlingExecutor.shutdown();
+    sweepExecutor.shutdownNow();
     deviceGlobalStats.removeListener(globalStatsListener);
     devicePortStats.removeListener(portStatsListener);
     deviceGlobalStats.destroy();
-    deviceGlobalDeltaStats.destroy();
     devicePortStats.destroy();
-    devicePortDeltaStats.destroy();
+    clearLocalStatistics();
+    history.clear();
+    rollups.clear();
+    lastSeen.clear();
+    metricsService.removeMetric(metricsComponent, metricsFeature, SUPPRESSED_UPDATES);
     log.info("Stopped");
   }
 
+  @Modified
+  public void modified(ComponentContext context) {
+    Dictionary<?, ?> properties = context != null ? context.getProperties() : new Properties();
+    int newStatsHistorySize;
+    try {
+      String s = get(properties, STATS_HISTORY_SIZE);
+      newStatsHistorySize = isNullOrEmpty(s) ? statsHistorySize : Integer.parseInt(s.trim());
+    } catch (NumberFormatException | ClassCastException e) {
+      newStatsHistorySize = statsHistorySize;
+    }
+
+    if (newStatsHistorySize < 0) {
+      log.warn("Ignoring negative statsHistorySize {}", newStatsHistorySize);
+      newStatsHistorySize = statsHistorySize;
+    }
+
+    statsHistorySize = newStatsHistorySize;
+    history.setCapacity(statsHistorySize);
+
+    int newStatsExpiryFactor;
+    try {
+      String s = get(properties, STATS_EXPIRY_FACTOR);
+      newStatsExpiryFactor = isNullOrEmpty(s) ? statsExpiryFactor : Integer.parseInt(s.trim());
+    } catch (NumberFormatException | ClassCastException e) {
+      newStatsExpiryFactor = statsExpiryFactor;
+    }
+    statsExpiryFactor = newStatsExpiryFactor;
+
+    currentDeadband = getDeadband(properties, CURRENT_DEADBAND, currentDeadband);
+    currentRelativeDeadband = getDeadband(properties, CURRENT_RELATIVE_DEADBAND, currentRelativeDeadband);
+    powerDeadband = getDeadband(properties, POWER_DEADBAND, powerDeadband);
+    powerRelativeDeadband = getDeadband(properties, POWER_RELATIVE_DEADBAND, powerRelativeDeadband);
+    deadband = new StatisticsDeadband(currentDeadband, currentRelativeDeadband, powerDeadband,
+        powerRelativeDeadband);
+
+    Boolean flag = Tools.isPropertyEnabled(properties, MASTER_LOCAL_STATS);
+    if (flag != null && flag != masterLocalStatistics) {
+      masterLocalStatistics = flag;
+      clearLocalStatistics();
+    }
+
+    flag = Tools.isPropertyEnabled(properties, PORT_STATS_ROLLUPS);
+    if (flag != null) {
+      portStatsRollups = flag;
+      rollups.setPortRollups(portStatsRollups);
+    }
+
+    log.info("Settings: statsHistorySize={}, masterLocalStatistics={}, statsExpiryFactor={}, portStatsRollups={}",
+        statsHistorySize, masterLocalStatistics, statsExpiryFactor, portStatsRollups);
+    log.info("Settings: deadband=[{}]", deadband);
+  }
+
+  private double getDeadband(Dictionary<?, ?> properties, String name, double current) {
+    double value;
+    try {
+      String s = get(properties, name);
+      value = isNullOrEmpty(s) ? current : Double.parseDouble(s.trim());
+    } catch (NumberFormatException | ClassCastException e) {
+      value = current;
+    }
+
+    if (value < 0 || Double.isNaN(value)) {
+      log.warn("Ignoring invalid {} {}", name, value);
+      return current;
+    }
+    return value;
+  }
+
+  private void clearLocalStatistics() {
+    localGlobalStats.clear();
+    localPortStats.clear();
+    remoteGlobalStats.invalidateAll();
+    remotePortStats.invalidateAll();
+  }
+
   @Override
   public FlexcommStatisticsEvent updateGlobalStatistics(DeviceId deviceId,
       GlobalStatistics globalStatistics) {
+    GlobalStatisticsSample prvSample = storedGlobalSample(deviceId);
+    if (deadband.suppresses(prvSample, globalStatistics)) {
+      suppressed(deviceId);
+      return null;
+    }
 
-    GlobalStatistics prvStats = deviceGlobalStats.get(deviceId);
-    GlobalStatistics.Builder builder = DefaultGlobalStatistics.builder();
-    GlobalStatistics deltaStats = builder.build();
-    if (prvStats != null) {
-      deltaStats = calcGlobalDeltaStats(deviceId, prvStats, globalStatistics);
+    if (masterLocalStatistics) {
+      GlobalStatisticsSample sample = GlobalStatisticsSample.of(globalStatistics, prvSample);
+      sample.warm();
+      localGlobalStats.put(deviceId, sample);
+      recordGlobal(deviceId, sample);
+      bumpVersion(deviceId);
+      return new FlexcommStatisticsEvent(GLOBAL_STATS_UPDATED, deviceId);
     }
 
-    deviceGlobalDeltaStats.put(deviceId, deltaStats);
-    deviceGlobalStats.put(deviceId, globalStatistics);
+    deviceGlobalStats.put(deviceId, GlobalStatisticsSample.of(globalStatistics, prvSample));
 
     return null;
   }
 
-  private GlobalStatistics calcGlobalDeltaStats(DeviceId deviceId, GlobalStatistics prvStats,
-      GlobalStatistics newStats) {
-    GlobalStatistics.Builder builder = DefaultGlobalStatistics.builder();
-    GlobalStatistics deltaStats = builder
-        .setCurrentConsumption(newStats.currentConsumption() - prvStats.currentConsumption())
-        .setPowerDrawn(newStats.powerDrawn() - prvStats.powerDrawn()).build();
-    return deltaStats;
+  @Override
+  public FlexcommStatisticsEvent updatePortStatistics(DeviceId deviceId, Collection<PortStatistics> portStatistics) {
+    PortStatisticsSample prvSample = storedPortSample(deviceId);
+    return updatePortSample(deviceId, prvSample,
+        PortStatisticsSample.of(PortStatisticsSnapshot.of(portStatistics), prvSample));
   }
 
   @Override
-  public FlexcommStatisticsEvent updatePortStatistics(DeviceId deviceId, Collection<PortStatistics> portStatistics) {
-    Map<PortNumber, PortStatistics> prvStatsMap = devicePortStats.get(deviceId);
-    Map<PortNumber, PortStatistics> newStatsMap = Maps.newHashMap();
-    Map<PortNumber, PortStatistics> deltaStatsMap = Maps.newHashMap();
-
-    if (prvStatsMap != null) {
-      for (PortStatistics newStats : portStatistics) {
-        PortNumber port = newStats.portNumber();
-        PortStatistics prvStats = prvStatsMap.get(port);
-        PortStatistics.Builder builder = DefaultPortStatistics.builder();
-        PortStatistics deltaStats = builder.build();
-        if (prvStats != null) {
-          deltaStats = calcPortDeltaStats(deviceId, prvStats, newStats);
+  public FlexcommStatisticsEvent updatePortStatistics(DeviceId deviceId, long[] portNumbers,
+      double[] currentConsumption, double[] powerDrawn, int size) {
+    PortStatisticsSample prvSample = storedPortSample(deviceId);
+    return updatePortSample(deviceId, prvSample, PortStatisticsSample.of(
+        PortStatisticsSnapshot.of(portNumbers, currentConsumption, powerDrawn, size), prvSample));
+  }
+
+  @Override
+  public FlexcommStatisticsEvent mergePortStatistics(DeviceId deviceId, long[] portNumbers,
+      double[] currentConsumption, double[] powerDrawn, int size) {
+    PortStatisticsSample prvSample = storedPortSample(deviceId);
+    return updatePortSample(deviceId, prvSample, PortStatisticsSample.merge(prvSample,
+        PortStatisticsSnapshot.of(portNumbers, currentConsumption, powerDrawn, size)));
+  }
+
+  private FlexcommStatisticsEvent updatePortSample(DeviceId deviceId, PortStatisticsSample prvSample,
+      PortStatisticsSample sample) {
+    if (deadband.suppresses(prvSample, sample.current())) {
+      suppressed(deviceId);
+      return null;
+    }
+
+    if (masterLocalStatistics) {
+      sample.warm();
+      localPortStats.put(deviceId, sample);
+      recordPorts(deviceId, sample.timestamp(), sample.updated());
+      bumpVersion(deviceId);
+      return portsUpdated(deviceId, sample);
+    }
+
+    devicePortStats.put(deviceId, sample);
+
+    return null;
+  }
+
+  @Override
+  public FlexcommStatisticsEvent updateStatistics(Map<DeviceId, GlobalStatistics> globalStatistics,
+      Map<DeviceId, Collection<PortStatistics>> portStatistics) {
+    Map<DeviceId, GlobalStatisticsSample> globalSamples = Maps.newHashMapWithExpectedSize(globalStatistics.size());
+    globalStatistics.forEach((deviceId, stats) -> {
+      GlobalStatisticsSample prvSample = storedGlobalSample(deviceId);
+      if (deadband.suppresses(prvSample, stats)) {
+        suppressed(deviceId);
+        return;
+      }
+      globalSamples.put(deviceId, GlobalStatisticsSample.of(stats, prvSample, true));
+    });
+
+    Map<DeviceId, PortStatisticsSample> portSamples = Maps.newHashMapWithExpectedSize(portStatistics.size());
+    portStatistics.forEach((deviceId, stats) -> {
+      PortStatisticsSample prvSample = storedPortSample(deviceId);
+      PortStatisticsSnapshot snapshot = PortStatisticsSnapshot.of(stats);
+      if (deadband.suppresses(prvSample, snapshot)) {
+        suppressed(deviceId);
+        return;
+      }
+      portSamples.put(deviceId, PortStatisticsSample.of(snapshot, prvSample, true));
+    });
+
+    if (masterLocalStatistics) {
+      globalSamples.values().forEach(GlobalStatisticsSample::warm);
+      portSamples.values().forEach(PortStatisticsSample::warm);
+      localGlobalStats.putAll(globalSamples);
+      localPortStats.putAll(portSamples);
+      globalSamples.forEach(this::recordGlobal);
+      portSamples.forEach((deviceId, sample) -> recordPorts(deviceId, sample.timestamp(), sample.current()));
+      Sets.union(globalSamples.keySet(), portSamples.keySet()).forEach(this::bumpVersion);
+    } else {
+      // listeners skip batched samples, the whole batch is announced by the returned event
+      deviceGlobalStats.putAll(globalSamples);
+      devicePortStats.putAll(portSamples);
+    }
+
+    Set<DeviceId> devices = Sets.union(globalSamples.keySet(), portSamples.keySet());
+    if (devices.isEmpty()) {
+      return null;
+    }
+    return new FlexcommStatisticsEvent(STATS_BATCH_UPDATED, devices);
+  }
+
+  private void suppressed(DeviceId deviceId) {
+    lastSeen.put(deviceId, System.currentTimeMillis());
+    suppressedUpdates.inc();
+  }
+
+  @Override
+  public void purgeStatistics(DeviceId deviceId) {
+    lastSeen.remove(deviceId);
+    if (!masterLocalStatistics) {
+      // the map listeners drop the history and post the removal events on every node
+      deviceGlobalStats.remove(deviceId);
+      devicePortStats.remove(deviceId);
+      return;
+    }
+
+    remoteGlobalStats.invalidate(deviceId);
+    remotePortStats.invalidate(deviceId);
+    removeRecords(deviceId);
+    boolean removed = false;
+    if (localGlobalStats.remove(deviceId) != null) {
+      removed = true;
+      notifyDelegate(new FlexcommStatisticsEvent(GLOBAL_STATS_REMOVED, deviceId));
+    }
+    if (localPortStats.remove(deviceId) != null) {
+      removed = true;
+      notifyDelegate(new FlexcommStatisticsEvent(PORT_STATS_REMOVED, deviceId));
+    }
+    if (removed) {
+      bumpVersion(deviceId);
+    }
+  }
+
+  @Override
+  public long getStatisticsVersion() {
+    return version.get();
+  }
+
+  // with master-local statistics only the master sees a device's updates
+  @Override
+  public long getStatisticsVersion(DeviceId deviceId) {
+    if (masterLocalStatistics) {
+      NodeId master = mastershipService.getMasterFor(deviceId);
+      if (master != null && !master.equals(clusterService.getLocalNode().id())) {
+        return FlexcommStatisticsService.UNKNOWN_VERSION;
+      }
+    }
+    return deviceVersions.getOrDefault(deviceId, 0L);
+  }
+
+  // called once the update is readable, so a version never refers to older data
+  private void bumpVersion(DeviceId deviceId) {
+    deviceVersions.put(deviceId, version.incrementAndGet());
+  }
+
+  // a partial sample names the ports it changed, so listeners need not rescan the whole device
+  private static FlexcommStatisticsEvent portsUpdated(DeviceId deviceId, PortStatisticsSample sample) {
+    if (!sample.isPartial()) {
+      return new FlexcommStatisticsEvent(PORT_STATS_UPDATED, deviceId);
+    }
+    PortStatisticsSnapshot updated = sample.updated();
+    ImmutableSet.Builder<PortNumber> ports = ImmutableSet.builder();
+    for (int i = 0; i < updated.size(); i++) {
+      ports.add(PortNumber.portNumber(updated.portNumber(i)));
+    }
+    return new FlexcommStatisticsEvent(PORT_STATS_UPDATED, deviceId, ports.build());
+  }
+
+  @Override
+  public void setHistorySize(DeviceId deviceId, int historySize) {
+    history.setCapacity(deviceId, historySize);
+  }
+
+  private void sweepExpiredStatistics() {
+    sweepExpiredStatistics(System.currentTimeMillis());
+  }
+
+  void sweepExpiredStatistics(long now) {
+    int factor = statsExpiryFactor;
+    if (factor <= 0) {
+      return;
+    }
+
+    try {
+      int pollFrequency = providerInteger(POLL_FREQ, POLL_FREQ_DEFAULT);
+      int maxPollFrequency = providerBoolean(ADAPTIVE_POLLING, ADAPTIVE_POLLING_DEFAULT)
+          ? providerInteger(MAX_POLL_FREQ, MAX_POLL_FREQ_DEFAULT) : 0;
+      int slowTierFactor = providerInteger(MAX_IN_FLIGHT, MAX_IN_FLIGHT_DEFAULT) > 0
+          ? FlexcommStatisticsCollector.SLOW_TIER_FACTOR : 1;
+      int pushTimeout = providerBoolean(PUSH_MODE, PUSH_MODE_DEFAULT)
+          ? providerInteger(PUSH_TIMEOUT, PUSH_TIMEOUT_DEFAULT) : 0;
+      NodeId localNode = clusterService.getLocalNode().id();
+      int purged = 0;
+      for (DeviceId deviceId : storedDevices()) {
+        if (purged >= SWEEP_BATCH_SIZE) {
+          break;
+        }
+        // the longest a live device goes without an update: adaptive polling backs off up to the maximum
+        // interval, the slow tier stretches it and a switch that stops pushing is only polled after the timeout
+        int interval = Math.max(pollFrequency(deviceId, pollFrequency), maxPollFrequency) * slowTierFactor;
+        long expiry = TimeUnit.SECONDS.toMillis((long) (interval + pushTimeout) * factor);
+        if (now - lastUpdated(deviceId) <= expiry) {
+          continue;
+        }
+        // a live master keeps refreshing its devices, leave them to it
+        NodeId master = mastershipService.getMasterFor(deviceId);
+        if (master != null && !master.equals(localNode)) {
+          continue;
         }
-        deltaStatsMap.put(port, deltaStats);
-        newStatsMap.put(port, newStats);
+        log.debug("Statistics for {} expired, purging", deviceId);
+        purgeStatistics(deviceId);
+        purged++;
       }
+    } catch (Exception e) {
+      log.warn("Unable to sweep expired statistics", e);
+    }
+  }
 
-    } else {
-      for (PortStatistics newStats : portStatistics) {
-        PortNumber port = newStats.portNumber();
-        newStatsMap.put(port, newStats);
+  private int providerInteger(String name, int defaultValue) {
+    ConfigProperty property = cfgService.getProperty(OpenFlowFlexcomStatisticsProvider.class.getName(), name);
+    return property != null ? property.asInteger() : defaultValue;
+  }
+
+  private boolean providerBoolean(String name, boolean defaultValue) {
+    ConfigProperty property = cfgService.getProperty(OpenFlowFlexcomStatisticsProvider.class.getName(), name);
+    return property != null ? property.asBoolean() : defaultValue;
+  }
+
+  private int pollFrequency(DeviceId deviceId, int pollFrequency) {
+    FlexcommStatisticsConfig cfg = netCfgService.getConfig(deviceId, FlexcommStatisticsConfig.class);
+    return cfg != null && cfg.pollInterval() != FlexcommStatisticsConfig.UNSET ? cfg.pollInterval() : pollFrequency;
+  }
+
+  private Set<DeviceId> storedDevices() {
+    if (masterLocalStatistics) {
+      return Sets.union(localGlobalStats.keySet(), localPortStats.keySet());
+    }
+    return Sets.union(deviceGlobalStats.keySet(), devicePortStats.keySet());
+  }
+
+  private long lastUpdated(DeviceId deviceId) {
+    GlobalStatisticsSample global = storedGlobalSample(deviceId);
+    PortStatisticsSample ports = storedPortSample(deviceId);
+    long updated = Math.max(global != null ? global.timestamp() : 0, ports != null ? ports.timestamp() : 0);
+    return Math.max(updated, lastSeen.getOrDefault(deviceId, 0L));
+  }
+
+  private GlobalStatisticsSample storedGlobalSample(DeviceId deviceId) {
+    return masterLocalStatistics ? localGlobalStats.get(deviceId) : deviceGlobalStats.get(deviceId);
+  }
+
+  private PortStatisticsSample storedPortSample(DeviceId deviceId) {
+    return masterLocalStatistics ? localPortStats.get(deviceId) : devicePortStats.get(deviceId);
+  }
+
+  private GlobalStatisticsSample globalSample(DeviceId deviceId) {
+    if (!masterLocalStatistics) {
+      return deviceGlobalStats.get(deviceId);
+    }
+
+    NodeId master = mastershipService.getMasterFor(deviceId);
+    if (master == null || master.equals(clusterService.getLocalNode().id())) {
+      return localGlobalStats.get(deviceId);
+    }
+
+    GlobalStatisticsSample sample = remoteGlobalStats.getIfPresent(deviceId);
+    if (sample == null) {
+      sample = fetchFromMaster(GLOBAL_STATS_REQUEST, deviceId, master);
+      if (sample != null) {
+        remoteGlobalStats.put(deviceId, sample);
       }
     }
+    return sample;
+  }
 
-    devicePortDeltaStats.put(deviceId, deltaStatsMap);
-    devicePortStats.put(deviceId, newStatsMap);
+  private PortStatisticsSample portSample(DeviceId deviceId) {
+    if (!masterLocalStatistics) {
+      return devicePortStats.get(deviceId);
+    }
 
-    return null;
+    NodeId master = mastershipService.getMasterFor(deviceId);
+    if (master == null || master.equals(clusterService.getLocalNode().id())) {
+      return localPortStats.get(deviceId);
+    }
+
+    PortStatisticsSample sample = remotePortStats.getIfPresent(deviceId);
+    if (sample == null) {
+      sample = fetchFromMaster(PORT_STATS_REQUEST, deviceId, master);
+      if (sample != null) {
+        remotePortStats.put(deviceId, sample);
+      }
+    }
+    return sample;
   }
 
-  private PortStatistics calcPortDeltaStats(DeviceId deviceId, PortStatistics prvStats,
-      PortStatistics newStats) {
-    PortStatistics.Builder builder = DefaultPortStatistics.builder();
-    PortStatistics deltaStats = builder.setPortNumber(newStats.portNumber())
-        .setCurrentConsumption(newStats.currentConsumption() - prvStats.currentConsumption())
-        .setPowerDrawn(newStats.powerDrawn() - prvStats.powerDrawn())
-        .build();
-    return deltaStats;
+  // devices mastered elsewhere and missing from the caches are fetched with one request per master, whose reply
+  // carries both kinds of samples so the port lookup that follows a global one is served from the caches
+  private StatisticsSamples samples(Collection<DeviceId> deviceIds) {
+    StatisticsSamples samples = new StatisticsSamples(deviceIds.size());
+    if (!masterLocalStatistics) {
+      for (DeviceId deviceId : deviceIds) {
+        samples.add(deviceId, deviceGlobalStats.get(deviceId), devicePortStats.get(deviceId));
+      }
+      return samples;
+    }
+
+    NodeId localNode = clusterService.getLocalNode().id();
+    Map<NodeId, List<DeviceId>> missing = Maps.newHashMap();
+    for (DeviceId deviceId : deviceIds) {
+      NodeId master = mastershipService.getMasterFor(deviceId);
+      if (master == null || master.equals(localNode)) {
+        samples.add(deviceId, localGlobalStats.get(deviceId), localPortStats.get(deviceId));
+        continue;
+      }
+      GlobalStatisticsSample globalSample = remoteGlobalStats.getIfPresent(deviceId);
+      PortStatisticsSample portSample = remotePortStats.getIfPresent(deviceId);
+      if (globalSample == null || portSample == null) {
+        missing.computeIfAbsent(master, k -> Lists.newArrayList()).add(deviceId);
+      } else {
+        samples.add(deviceId, globalSample, portSample);
+      }
+    }
+
+    Map<NodeId, CompletableFuture<StatisticsSamples>> replies = Maps.newHashMap();
+    missing.forEach((master, ids) -> replies.put(master, clusterCommunicator.sendAndReceive(ids,
+        BULK_STATS_REQUEST, SERIALIZER::encode, SERIALIZER::decode, master)));
+    replies.values().forEach(reply -> {
+      StatisticsSamples remote = futureGetOrElse(reply, REMOTE_FETCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, null);
+      if (remote != null) {
+        remoteGlobalStats.putAll(remote.globalSamples());
+        remotePortStats.putAll(remote.portSamples());
+        remote.globalSamples().forEach((deviceId, sample) -> samples.add(deviceId, sample, null));
+        remote.portSamples().forEach((deviceId, sample) -> samples.add(deviceId, null, sample));
+      }
+    });
+    return samples;
+  }
+
+  private StatisticsSamples localSamples(List<DeviceId> deviceIds) {
+    StatisticsSamples samples = new StatisticsSamples(deviceIds.size());
+    for (DeviceId deviceId : deviceIds) {
+      samples.add(deviceId, localGlobalStats.get(deviceId), localPortStats.get(deviceId));
+    }
+    return samples;
+  }
+
+  private <M, T> T fetchFromMaster(MessageSubject subject, M request, NodeId master) {
+    return futureGetOrElse(
+        clusterCommunicator.<M, T>sendAndReceive(request, subject, SERIALIZER::encode, SERIALIZER::decode, master),
+        REMOTE_FETCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, null);
   }
 
   @Override
   public GlobalStatistics getGlobalStatistics(DeviceId deviceId) {
-    return deviceGlobalStats.get(deviceId);
+    GlobalStatisticsSample sample = globalSample(deviceId);
+    if (sample == null) {
+      return null;
+    }
+    return sample.statistics();
   }
 
   @Override
   public GlobalStatistics getGlobalDeltaStatistics(DeviceId deviceId) {
-    return deviceGlobalDeltaStats.get(deviceId);
+    GlobalStatisticsSample sample = globalSample(deviceId);
+    if (sample == null) {
+      return null;
+    }
+    return sample.deltaStatistics();
   }
 
   @Override
   public List<PortStatistics> getPortStatistics(DeviceId deviceId) {
-    Map<PortNumber, PortStatistics> portStats = devicePortStats.get(deviceId);
-    if (portStats == null) {
+    PortStatisticsSample sample = portSample(deviceId);
+    if (sample == null) {
       return Collections.emptyList();
     }
-    return ImmutableList.copyOf(portStats.values());
+    return sample.statistics();
   }
 
   @Override
   public List<PortStatistics> getPortDeltaStatistics(DeviceId deviceId) {
-    Map<PortNumber, PortStatistics> portStats = devicePortDeltaStats.get(deviceId);
-    if (portStats == null) {
+    PortStatisticsSample sample = portSample(deviceId);
+    if (sample == null) {
       return Collections.emptyList();
     }
-    return ImmutableList.copyOf(portStats.values());
+    return sample.deltaStatistics();
   }
 
   @Override
   public PortStatistics getStatisticsForPort(DeviceId deviceId, PortNumber portNumber) {
-    Map<PortNumber, PortStatistics> portStatsMap = devicePortStats.get(deviceId);
-    if (portStatsMap == null) {
+    PortStatisticsSample sample = portSample(deviceId);
+    if (sample == null) {
       return null;
     }
-    PortStatistics portStats = portStatsMap.get(portNumber);
-    return portStats;
+    return sample.statisticsForPort(portNumber);
   }
 
   @Override
   public PortStatistics getDeltaStatisticsForPort(DeviceId deviceId, PortNumber portNumber) {
-    Map<PortNumber, PortStatistics> portStatsMap = devicePortDeltaStats.get(deviceId);
-    if (portStatsMap == null) {
+    PortStatisticsSample sample = portSample(deviceId);
+    if (sample == null) {
       return null;
     }
-    PortStatistics portStats = portStatsMap.get(portNumber);
-    return portStats;
+    return sample.deltaStatisticsForPort(portNumber);
   }
 
-  private class InternalGlobalStatsListener implements EventuallyConsistentMapListener<DeviceId, GlobalStatistics> {
+  @Override
+  public Map<DeviceId, GlobalStatistics> getGlobalStatistics(Collection<DeviceId> deviceIds, boolean delta) {
+    StatisticsSamples samples = samples(deviceIds);
+    Map<DeviceId, GlobalStatistics> statistics = Maps.newLinkedHashMap();
+    for (DeviceId deviceId : deviceIds) {
+      GlobalStatisticsSample sample = samples.globalSample(deviceId);
+      if (sample != null) {
+        statistics.put(deviceId, delta ? sample.deltaStatistics() : sample.statistics());
+      }
+    }
+    return statistics;
+  }
+
+  // each device's sample is read once, however many of its ports are selected
+  @Override
+  public Map<DeviceId, List<PortStatistics>> getPortStatistics(Map<DeviceId, ? extends Collection<PortNumber>> ports,
+      boolean delta) {
+    StatisticsSamples samples = samples(ports.keySet());
+    Map<DeviceId, List<PortStatistics>> statistics = Maps.newLinkedHashMap();
+    ports.forEach((deviceId, portNumbers) -> {
+      PortStatisticsSample sample = samples.portSample(deviceId);
+      if (sample == null) {
+        statistics.put(deviceId, Collections.emptyList());
+      } else if (portNumbers == null || portNumbers.isEmpty()) {
+        statistics.put(deviceId, delta ? sample.deltaStatistics() : sample.statistics());
+      } else {
+        List<PortStatistics> selected = Lists.newArrayListWithCapacity(portNumbers.size());
+        for (PortNumber portNumber : portNumbers) {
+          PortStatistics stats = delta ? sample.deltaStatisticsForPort(portNumber)
+              : sample.statisticsForPort(portNumber);
+          if (stats != null) {
+            selected.add(stats);
+          }
+        }
+        statistics.put(deviceId, selected);
+      }
+    });
+    return statistics;
+  }
+
+  @Override
+  public List<HistoricalStatistics> getGlobalStatisticsHistory(DeviceId deviceId, long startTime, long endTime) {
+    return history(new HistoryQuery(deviceId, null, startTime, endTime));
+  }
+
+  @Override
+  public List<HistoricalStatistics> getPortStatisticsHistory(DeviceId deviceId, PortNumber portNumber,
+      long startTime, long endTime) {
+    return history(new HistoryQuery(deviceId, portNumber, startTime, endTime));
+  }
+
+  // with master-local statistics only the master records a device's history, so other nodes ask it
+  private List<HistoricalStatistics> history(HistoryQuery query) {
+    if (masterLocalStatistics) {
+      NodeId master = mastershipService.getMasterFor(query.deviceId());
+      if (master != null && !master.equals(clusterService.getLocalNode().id())) {
+        List<HistoricalStatistics> remote = fetchFromMaster(HISTORY_REQUEST, query, master);
+        return remote != null ? remote : Collections.emptyList();
+      }
+    }
+    return localHistory(query);
+  }
+
+  private List<HistoricalStatistics> localHistory(HistoryQuery query) {
+    List<HistoricalStatistics> entries = query.portNumber() == null
+        ? history.globalHistory(query.deviceId(), query.startTime(), query.endTime())
+        : history.portHistory(query.deviceId(), query.portNumber(), query.startTime(), query.endTime());
+    return ImmutableList.copyOf(entries);
+  }
+
+  @Override
+  public List<StatisticsRollup> getGlobalStatisticsRollup(DeviceId deviceId, RollupResolution resolution) {
+    return rollup(new RollupQuery(deviceId, null, resolution));
+  }
+
+  @Override
+  public List<StatisticsRollup> getPortStatisticsRollup(DeviceId deviceId, PortNumber portNumber,
+      RollupResolution resolution) {
+    return rollup(new RollupQuery(deviceId, portNumber, resolution));
+  }
+
+  // rollups are recorded with the history, so they are read from the same node
+  private List<StatisticsRollup> rollup(RollupQuery query) {
+    if (masterLocalStatistics) {
+      NodeId master = mastershipService.getMasterFor(query.deviceId());
+      if (master != null && !master.equals(clusterService.getLocalNode().id())) {
+        List<StatisticsRollup> remote = fetchFromMaster(ROLLUP_REQUEST, query, master);
+        return remote != null ? remote : Collections.emptyList();
+      }
+    }
+    return localRollup(query);
+  }
+
+  private List<StatisticsRollup> localRollup(RollupQuery query) {
+    long now = System.currentTimeMillis();
+    List<StatisticsRollup> entries = query.portNumber() == null
+        ? rollups.globalRollup(query.deviceId(), query.resolution(), now)
+        : rollups.portRollup(query.deviceId(), query.portNumber(), query.resolution(), now);
+    return ImmutableList.copyOf(entries);
+  }
+
+  // every stored sample feeds the history and the rollups, on each node that holds the device
+  private void recordGlobal(DeviceId deviceId, GlobalStatisticsSample sample) {
+    history.recordGlobal(deviceId, sample.timestamp(), sample);
+    rollups.addGlobal(deviceId, sample.timestamp(), sample.currentConsumption(), sample.powerDrawn());
+  }
+
+  private void recordPorts(DeviceId deviceId, long timestamp, PortStatisticsSnapshot snapshot) {
+    history.recordPorts(deviceId, timestamp, snapshot);
+    rollups.addPorts(deviceId, timestamp, snapshot);
+  }
+
+  private void removeRecords(DeviceId deviceId) {
+    history.remove(deviceId);
+    rollups.remove(deviceId);
+  }
+
+  private class InternalGlobalStatsListener
+      implements EventuallyConsistentMapListener<DeviceId, GlobalStatisticsSample> {
+
     @Override
-    public void event(EventuallyConsistentMapEvent<DeviceId, GlobalStatistics> event) {
+    public void event(EventuallyConsistentMapEvent<DeviceId, GlobalStatisticsSample> event) {
       if (event.type() == PUT) {
         DeviceId deviceId = event.key();
-        notifyDelegate(new FlexcommStatisticsEvent(GLOBAL_STATS_UPDATED, deviceId));
+        // build the read views once, here, instead of on every read
+        event.value().warm();
+        recordGlobal(deviceId, event.value());
+        bumpVersion(deviceId);
+        if (!event.value().isBatched()) {
+          notifyDelegate(new FlexcommStatisticsEvent(GLOBAL_STATS_UPDATED, deviceId));
+        }
+      } else if (event.type() == REMOVE) {
+        DeviceId deviceId = event.key();
+        removeRecords(deviceId);
+        bumpVersion(deviceId);
+        notifyDelegate(new FlexcommStatisticsEvent(GLOBAL_STATS_REMOVED, deviceId));
       }
     }
   }
 
   private class InternalPortStatsListener
-      implements EventuallyConsistentMapListener<DeviceId, Map<PortNumber, PortStatistics>> {
+      implements EventuallyConsistentMapListener<DeviceId, PortStatisticsSample> {
 
     @Override
-    public void event(EventuallyConsistentMapEvent<DeviceId, Map<PortNumber, PortStatistics>> event) {
+    public void event(EventuallyConsistentMapEvent<DeviceId, PortStatisticsSample> event) {
       if (event.type() == PUT) {
         DeviceId deviceId = event.key();
-        notifyDelegate(new FlexcommStatisticsEvent(PORT_STATS_UPDATED, deviceId));
+        event.value().warm();
+        recordPorts(deviceId, event.value().timestamp(), event.value().updated());
+        bumpVersion(deviceId);
+        if (!event.value().isBatched()) {
+          notifyDelegate(portsUpdated(deviceId, event.value()));
+        }
+      } else if (event.type() == REMOVE) {
+        DeviceId deviceId = event.key();
+        removeRecords(deviceId);
+        bumpVersion(deviceId);
+        notifyDelegate(new FlexcommStatisticsEvent(PORT_STATS_REMOVED, deviceId));
       }
     }
   }
@@ -3,11 +3,19 @@ package org.inesctec.flexcomm.statistics.impl;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.Iterator;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
+import org.inesctec.flexcomm.statistics.api.DefaultPollingStatistics;
+import org.inesctec.flexcomm.statistics.api.PollingStatistics;
+import org.onosproject.net.DeviceId;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.RoleState;
 import org.projectfloodlight.openflow.protocol.OFFlexcommGlobalEnergyRequest;
@@ -16,7 +24,12 @@ import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.types.OFPort;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Counter;
 import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 
 public class FlexcommStatisticsCollector {
 
@@ -24,44 +37,394 @@ public class FlexcommStatisticsCollector {
 
   private static final long SECONDS = 1000L;
 
+  private static final int SLOW_TIER_MISSES = 3;
+  private static final int SLOW_TIER_RECOVERY = 3;
+  static final int SLOW_TIER_FACTOR = 4;
+
+  // switches send their own reports with xid 0, requests are numbered from 1
+  public static final long PUSH_XID = 0;
+
   private OpenFlowSwitch sw;
-  private Timer timer;
-  private TimerTask task;
+  private ScheduledExecutorService executor;
+  private ScheduledFuture<?> task;
+
+  // polls are anchored to the wall clock so a reschedule or a new master keeps the switch at its phase
+  LongSupplier wallClock = System::currentTimeMillis;
+  // times requests, replies and pushed reports
+  LongSupplier nanoClock = System::nanoTime;
 
   private int refreshInterval;
+  private int effectiveInterval;
   private final AtomicLong xidAtomic = new AtomicLong(1);
 
-  public FlexcommStatisticsCollector(Timer timer, OpenFlowSwitch sw, int interval) {
-    this.timer = timer;
+  // send time of every request still waiting for its reply, by xid
+  private final Map<Long, Long> outstanding = Maps.newConcurrentMap();
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong missedPolls = new AtomicLong();
+  private final AtomicLong pushedReports = new AtomicLong();
+  private final Counter missedPollsMetric;
+
+  private int maxInFlight;
+  private int consecutiveMisses;
+  private boolean slowTier;
+  // requests of the last admitted poll still unanswered, and the run of polls answered in full before it
+  private final Set<Long> tickRequests = Sets.newHashSet();
+  private int answeredPolls;
+
+  private volatile boolean pushMode;
+  private volatile long pushTimeoutNanos;
+  private volatile long lastPushNanos;
+  private volatile boolean hasPush;
+  private volatile long lastPortPushNanos;
+  private volatile boolean hasPortPush;
+
+  private volatile boolean hotPortPolling;
+  private volatile int fullSweepFactor = 1;
+  private volatile Set<Long> configuredHotPorts = ImmutableSet.of();
+  // ports whose readings changed since they were last read
+  private final Set<Long> hotPorts = Sets.newConcurrentHashSet();
+  private final Map<Long, double[]> lastPortReadings = Maps.newHashMap();
+  private final Set<Long> portRequests = Sets.newConcurrentHashSet();
+  private final Set<Long> sweepRequests = Sets.newConcurrentHashSet();
+  // hot-port replies held until the rest of their tick is in
+  private PortEnergyEntries heldPorts;
+  private long ticks;
+
+  private volatile long portPollNanos;
+  private long lastPortPollNanos;
+  private boolean portPolled;
+
+  private boolean adaptive;
+  private int minInterval;
+  private int maxInterval;
+  private double adaptiveThreshold;
+
+  private boolean hasReading;
+  private double lastCurrentConsumption;
+  private double lastPowerDrawn;
+
+  public FlexcommStatisticsCollector(ScheduledExecutorService executor, OpenFlowSwitch sw, int interval,
+      Counter missedPollsMetric) {
+    this.executor = checkNotNull(executor, "Null executor");
     this.sw = checkNotNull(sw, "Null switch");
     this.refreshInterval = interval;
+    this.effectiveInterval = interval;
+    this.missedPollsMetric = checkNotNull(missedPollsMetric, "Null missed polls metric");
   }
 
-  private class InternalTimerTask extends TimerTask {
+  public synchronized void start() {
+    log.info("Starting Flexcomm Statistics collection for {}", sw.getStringId());
+    schedule();
+  }
 
-    @Override
-    public void run() {
-      sendFlexcommStatisticRequest();
-    }
+  public synchronized int pollInterval() {
+    return slowTier ? effectiveInterval * SLOW_TIER_FACTOR : effectiveInterval;
   }
 
-  public synchronized void start() {
-    log.info("Starting Flexcomm Statistics collection thread for {}", sw.getStringId());
-    task = new InternalTimerTask();
-    timer.scheduleAtFixedRate(task, 1 * SECONDS, refreshInterval * SECONDS);
+  public synchronized void setMaxInFlight(int maxInFlight) {
+    this.maxInFlight = maxInFlight;
+    if (maxInFlight <= 0) {
+      consecutiveMisses = 0;
+      setSlowTier(false);
+    }
   }
 
   public synchronized void stop() {
-    log.info("Stopping Flexcomm Statistics collection thread for {}", sw.getStringId());
-    task.cancel();
-    task = null;
+    log.info("Stopping Flexcomm Statistics collection for {}", sw.getStringId());
+    if (task != null) {
+      task.cancel(false);
+      task = null;
+    }
   }
 
   public synchronized void adjustPollInterval(int pollInterval) {
     this.refreshInterval = pollInterval;
-    task.cancel();
-    task = new InternalTimerTask();
-    timer.scheduleAtFixedRate(task, refreshInterval * SECONDS, refreshInterval * SECONDS);
+    resetInterval();
+  }
+
+  // ports are requested at most once per port poll interval, zero or less requests them on every tick
+  public void setPortPollInterval(int portPollInterval) {
+    this.portPollNanos = TimeUnit.SECONDS.toNanos(Math.max(0, portPollInterval));
+  }
+
+  public synchronized void configureAdaptivePolling(boolean enabled, int minInterval, int maxInterval,
+      double threshold) {
+    this.adaptive = enabled;
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.adaptiveThreshold = threshold;
+    resetInterval();
+  }
+
+  public void configurePushMode(boolean enabled, int timeout) {
+    this.pushTimeoutNanos = TimeUnit.SECONDS.toNanos(timeout);
+    this.pushMode = enabled;
+  }
+
+  public void configureHotPortPolling(boolean enabled, int fullSweepFactor, Set<Long> ports) {
+    this.configuredHotPorts = ImmutableSet.copyOf(ports);
+    this.fullSweepFactor = Math.max(1, fullSweepFactor);
+    this.hotPortPolling = enabled;
+    if (!enabled) {
+      hotPorts.clear();
+      synchronized (lastPortReadings) {
+        lastPortReadings.clear();
+      }
+    }
+  }
+
+  public void observePorts(long[] portNumbers, double[] currentConsumption, double[] powerDrawn, int size) {
+    if (!hotPortPolling) {
+      return;
+    }
+    synchronized (lastPortReadings) {
+      for (int i = 0; i < size; i++) {
+        double[] last = lastPortReadings.get(portNumbers[i]);
+        if (last == null) {
+          lastPortReadings.put(portNumbers[i], new double[] {currentConsumption[i], powerDrawn[i]});
+          continue;
+        }
+        if (last[0] != currentConsumption[i] || last[1] != powerDrawn[i]) {
+          hotPorts.add(portNumbers[i]);
+        } else {
+          hotPorts.remove(portNumbers[i]);
+        }
+        last[0] = currentConsumption[i];
+        last[1] = powerDrawn[i];
+      }
+    }
+  }
+
+  // replies to single-port requests only cover part of the device, late replies are treated the same way
+  public boolean isPortRequest(long xid) {
+    return portRequests.contains(xid) || (hotPortPolling && xid != PUSH_XID && !sweepRequests.contains(xid));
+  }
+
+  // one tick's hot-port replies are handed on together once the last of them is in, so they cost one merge
+  synchronized PortEnergyEntries coalescePorts(long xid, PortEnergyEntries entries) {
+    heldPorts = heldPorts != null ? heldPorts.append(entries) : entries;
+    portRequests.remove(xid);
+    return releaseHeldPorts();
+  }
+
+  // replies held for requests that have expired since, called after expireRequests
+  synchronized PortEnergyEntries releaseHeldPorts() {
+    if (heldPorts == null || !portRequests.isEmpty()) {
+      return null;
+    }
+    PortEnergyEntries released = heldPorts;
+    heldPorts = null;
+    return released;
+  }
+
+  // unsolicited reports stand in for polls until the switch goes quiet for longer than the push timeout
+  public void pushReceived() {
+    pushedReports.incrementAndGet();
+    if (!hasPush) {
+      log.info("Switch {} is pushing energy reports", sw.getStringId());
+    }
+    lastPushNanos = nanoClock.getAsLong();
+    hasPush = true;
+  }
+
+  // port reports are tracked apart, a switch that only pushes its global reading still has its ports polled
+  public void portPushReceived() {
+    pushedReports.incrementAndGet();
+    if (!hasPortPush) {
+      log.info("Switch {} is pushing port energy reports", sw.getStringId());
+    }
+    lastPortPushNanos = nanoClock.getAsLong();
+    hasPortPush = true;
+  }
+
+  public boolean isPushing() {
+    if (!pushMode || !hasPush) {
+      return false;
+    }
+    if (nanoClock.getAsLong() - lastPushNanos > pushTimeoutNanos) {
+      log.info("Switch {} stopped pushing energy reports, falling back to polling", sw.getStringId());
+      hasPush = false;
+      return false;
+    }
+    return true;
+  }
+
+  public boolean isPushingPorts() {
+    if (!pushMode || !hasPortPush) {
+      return false;
+    }
+    if (nanoClock.getAsLong() - lastPortPushNanos > pushTimeoutNanos) {
+      log.info("Switch {} stopped pushing port energy reports, falling back to polling", sw.getStringId());
+      hasPortPush = false;
+      return false;
+    }
+    return true;
+  }
+
+  // halves the interval while readings move more than the threshold, doubles it while they are stable
+  public synchronized void observeReading(double currentConsumption, double powerDrawn) {
+    if (adaptive && hasReading && task != null) {
+      double change = Math.max(relativeChange(lastCurrentConsumption, currentConsumption),
+          relativeChange(lastPowerDrawn, powerDrawn));
+      int interval = change > adaptiveThreshold ? Math.max(minInterval, effectiveInterval / 2)
+          : Math.min(maxInterval, effectiveInterval * 2);
+      if (interval != effectiveInterval) {
+        log.debug("Adapting poll interval of {} from {}s to {}s", sw.getStringId(), effectiveInterval, interval);
+        effectiveInterval = interval;
+        task.cancel(false);
+        schedule();
+      }
+    }
+
+    hasReading = true;
+    lastCurrentConsumption = currentConsumption;
+    lastPowerDrawn = powerDrawn;
+  }
+
+  public void replyReceived(long xid) {
+    portRequests.remove(xid);
+    sweepRequests.remove(xid);
+    Long sentAt = outstanding.remove(xid);
+    if (sentAt != null) {
+      latency.record(TimeUnit.NANOSECONDS.toMicros(nanoClock.getAsLong() - sentAt));
+      tickReplied(xid);
+    }
+  }
+
+  public int expireRequests(long timeoutNanos) {
+    long now = nanoClock.getAsLong();
+    int expired = 0;
+    Iterator<Map.Entry<Long, Long>> it = outstanding.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Long, Long> request = it.next();
+      if (now - request.getValue() > timeoutNanos) {
+        it.remove();
+        portRequests.remove(request.getKey());
+        sweepRequests.remove(request.getKey());
+        tickExpired(request.getKey());
+        expired++;
+      }
+    }
+    timeouts.addAndGet(expired);
+    return expired;
+  }
+
+  public PollingStatistics pollingStatistics(DeviceId deviceId) {
+    return DefaultPollingStatistics.builder()
+        .setDeviceId(deviceId)
+        .setRequests(requests.get())
+        .setReplies(latency.count())
+        .setTimeouts(timeouts.get())
+        .setMissedPolls(missedPolls.get())
+        .setOutstanding(outstanding.size())
+        .setMeanLatencyMicros(latency.mean())
+        .setLatencyPercentilesMicros(latency.percentile(50), latency.percentile(90), latency.percentile(99))
+        .setMaxLatencyMicros(latency.max())
+        .setPushedReports(pushedReports.get())
+        .setPushing(isPushing())
+        .build();
+  }
+
+  private static double relativeChange(double previous, double value) {
+    double change = Math.abs(value - previous);
+    if (previous == 0) {
+      return change == 0 ? 0 : Double.POSITIVE_INFINITY;
+    }
+    return change / Math.abs(previous);
+  }
+
+  private void resetInterval() {
+    int interval = adaptive ? Math.max(minInterval, Math.min(maxInterval, refreshInterval)) : refreshInterval;
+    if (interval != effectiveInterval) {
+      effectiveInterval = interval;
+      if (task != null) {
+        task.cancel(false);
+        schedule();
+      }
+    }
+  }
+
+  // the next instant after now at the phase of the switch, counted from the epoch
+  private void schedule() {
+    long period = period();
+    long delay = Math.floorMod(phase(period) - wallClock.getAsLong() - 1, period) + 1;
+    task = executor.scheduleAtFixedRate(this::poll, delay, period, TimeUnit.MILLISECONDS);
+  }
+
+  private long period() {
+    return pollInterval() * SECONDS;
+  }
+
+  // skips the tick if its requests do not fit beside the replies still owed, slows down after a run of skips
+  private synchronized boolean admitPoll(int requests) {
+    if (withinBudget(requests)) {
+      consecutiveMisses = 0;
+      return true;
+    }
+
+    missedPolls.incrementAndGet();
+    missedPollsMetric.inc();
+    answeredPolls = 0;
+    if (++consecutiveMisses >= SLOW_TIER_MISSES) {
+      setSlowTier(true);
+    }
+    log.debug("Skipping poll of {}, {} requests in flight", sw.getStringId(), outstanding.size());
+    return false;
+  }
+
+  // the slow tier is only left once the switch has answered a run of polls in full
+  private synchronized void tickReplied(long xid) {
+    if (tickRequests.remove(xid) && tickRequests.isEmpty() && slowTier && ++answeredPolls >= SLOW_TIER_RECOVERY) {
+      setSlowTier(false);
+    }
+  }
+
+  private synchronized void tickExpired(long xid) {
+    if (tickRequests.remove(xid)) {
+      tickRequests.clear();
+      answeredPolls = 0;
+    }
+  }
+
+  private synchronized boolean withinBudget(int requests) {
+    return maxInFlight <= 0 || outstanding.size() + requests <= maxInFlight;
+  }
+
+  private void setSlowTier(boolean slow) {
+    if (slow == slowTier) {
+      return;
+    }
+    log.info("{} slow polling tier for {}", slow ? "Entering" : "Leaving", sw.getStringId());
+    slowTier = slow;
+    answeredPolls = 0;
+    if (task != null) {
+      task.cancel(false);
+      schedule();
+    }
+  }
+
+  // spreads switches evenly across the interval so they are not all polled at once
+  private long phase(long period) {
+    int hash = Hashing.murmur3_32().hashLong(sw.getId()).asInt();
+    return Math.floorMod(hash, period);
+  }
+
+  // half a tick of slack keeps a port poll interval that is a multiple of the tick from slipping a tick
+  private boolean portPollDue(long now) {
+    long interval = portPollNanos;
+    return interval <= 0 || !portPolled
+        || now - lastPortPollNanos + TimeUnit.MILLISECONDS.toNanos(period()) / 2 >= interval;
+  }
+
+  private void poll() {
+    // an exception would cancel this switch's periodic task, keep polling instead
+    try {
+      sendFlexcommStatisticRequest();
+    } catch (Exception e) {
+      log.warn("Unable to collect statistics for {}", sw.getStringId(), e);
+    }
   }
 
   private void sendFlexcommStatisticRequest() {
@@ -69,19 +432,74 @@ public class FlexcommStatisticsCollector {
       return;
     }
 
+    // pushed global and port reports each stand in for their own part of the poll only
+    long now = nanoClock.getAsLong();
+    boolean pollGlobal = !isPushing();
+    boolean pollPorts = !isPushingPorts() && portPollDue(now);
+    if (!pollGlobal && !pollPorts) {
+      return;
+    }
+
+    // between full sweeps only the hot and configured ports are requested, one request each
+    boolean sweep = !hotPortPolling || ticks % fullSweepFactor == 0;
+    Set<Long> ports = sweep ? ImmutableSet.of() : Sets.union(configuredHotPorts, hotPorts).immutableCopy();
+    int globalRequests = pollGlobal ? 1 : 0;
+    // a sweep is a single request, it stands in for hot ports that do not fit the in-flight budget
+    if (pollPorts && !sweep && !withinBudget(globalRequests + ports.size())) {
+      log.debug("{} hot ports of {} exceed the in-flight budget, sweeping instead", ports.size(),
+          sw.getStringId());
+      sweep = true;
+    }
+    int portRequestCount = !pollPorts ? 0 : sweep ? 1 : ports.size();
+    if (!admitPoll(globalRequests + portRequestCount)) {
+      return;
+    }
+
     log.trace("Collecting statistics for {}", sw.getStringId());
 
     List<OFMessage> statsRequests = Lists.newArrayList();
-    Long statsXid = xidAtomic.getAndIncrement();
-    OFFlexcommGlobalEnergyRequest globalStatsRequest = sw.factory().buildFlexcommGlobalEnergyRequest().setXid(statsXid)
-        .build();
-    statsRequests.add(globalStatsRequest);
+    Long statsXid;
+    if (pollGlobal) {
+      statsXid = xidAtomic.getAndIncrement();
+      OFFlexcommGlobalEnergyRequest globalStatsRequest = sw.factory().buildFlexcommGlobalEnergyRequest()
+          .setXid(statsXid).build();
+      statsRequests.add(globalStatsRequest);
+    }
 
-    statsXid = xidAtomic.getAndIncrement();
-    OFFlexcommPortEnergyRequest portStatsRequest = sw.factory().buildFlexcommPortEnergyRequest().setXid(statsXid)
-        .setPortNo(OFPort.ANY).build();
+    if (pollPorts) {
+      portPolled = true;
+      lastPortPollNanos = now;
+      if (hotPortPolling) {
+        ticks++;
+      }
+      if (!sweep) {
+        for (Long port : ports) {
+          statsXid = xidAtomic.getAndIncrement();
+          statsRequests.add(sw.factory().buildFlexcommPortEnergyRequest().setXid(statsXid)
+              .setPortNo(OFPort.of(port.intValue())).build());
+          portRequests.add(statsXid);
+        }
+      } else {
+        statsXid = xidAtomic.getAndIncrement();
+        OFFlexcommPortEnergyRequest portStatsRequest = sw.factory().buildFlexcommPortEnergyRequest()
+            .setXid(statsXid).setPortNo(OFPort.ANY).build();
+
+        statsRequests.add(portStatsRequest);
+        sweepRequests.add(statsXid);
+      }
+    }
 
-    statsRequests.add(portStatsRequest);
+    if (statsRequests.isEmpty()) {
+      return;
+    }
+    synchronized (this) {
+      tickRequests.clear();
+      for (OFMessage request : statsRequests) {
+        outstanding.put(request.getXid(), now);
+        tickRequests.add(request.getXid());
+      }
+    }
+    requests.addAndGet(statsRequests.size());
     sw.sendMsg(statsRequests);
   }
 
@@ -1,20 +1,27 @@
 package org.inesctec.flexcomm.statistics.impl;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.FM_PURGE_ON_DISCONNECTION;
 import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.FM_PURGE_ON_DISCONNECTION_DEFAULT;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.security.AppGuard.checkPermission;
+import static org.onosproject.net.config.basics.SubjectFactories.DEVICE_SUBJECT_FACTORY;
 import static org.onosproject.security.AppPermission.Type.DEVICE_READ;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import org.inesctec.flexcomm.statistics.api.AggregateStatistics;
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsConfig;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsListener;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsProvider;
@@ -24,11 +31,18 @@ import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsService;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsStore;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsStoreDelegate;
 import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.HistoricalStatistics;
+import org.inesctec.flexcomm.statistics.api.PollingStatistics;
 import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.inesctec.flexcomm.statistics.api.RollupResolution;
+import org.inesctec.flexcomm.statistics.api.StatisticsRollup;
 import org.onlab.util.Tools;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.PortNumber;
+import org.onosproject.net.config.ConfigFactory;
+import org.onosproject.net.config.NetworkConfigEvent;
+import org.onosproject.net.config.NetworkConfigListener;
 import org.onosproject.net.config.NetworkConfigRegistry;
 import org.onosproject.net.config.basics.BasicDeviceConfig;
 import org.onosproject.net.device.DeviceEvent;
@@ -36,6 +50,7 @@ import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.provider.AbstractListenerProviderRegistry;
 import org.onosproject.net.provider.AbstractProviderService;
+import org.onosproject.net.provider.ProviderId;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -45,6 +60,8 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.slf4j.Logger;
 
+import com.google.common.collect.ImmutableMap;
+
 @Component(immediate = true, service = {
     FlexcommStatisticsService.class,
     FlexcommStatisticsProviderRegistry.class
@@ -58,11 +75,23 @@ public class FlexcommStatisticsManager
 
   public static final String DEVICE_ID_NULL = "Device ID cannot be null";
   public static final String PORT_NUMBER_NULL = "Port number cannot be null";
+  public static final String RESOLUTION_NULL = "Rollup resolution cannot be null";
+  public static final String COUNT_NOT_POSITIVE = "Count must be positive";
 
   private final Logger log = getLogger(getClass());
 
   private final FlexcommStatisticsStoreDelegate delegate = new InternalFlexcommStoreDelegate();
   private final DeviceListener deviceListener = new InternalDeviceListener();
+  private final NetworkConfigListener configListener = new InternalConfigListener();
+
+  private final ConfigFactory<DeviceId, FlexcommStatisticsConfig> configFactory =
+      new ConfigFactory<DeviceId, FlexcommStatisticsConfig>(DEVICE_SUBJECT_FACTORY, FlexcommStatisticsConfig.class,
+          FlexcommStatisticsConfig.CONFIG_KEY) {
+        @Override
+        public FlexcommStatisticsConfig createConfig() {
+          return new FlexcommStatisticsConfig();
+        }
+      };
 
   private ExecutorService eventExecutor;
 
@@ -80,12 +109,18 @@ public class FlexcommStatisticsManager
 
   private boolean purgeOnDisconnection = FM_PURGE_ON_DISCONNECTION_DEFAULT;
 
+  // fed from every posted event, so it covers the devices whose updates this node sees
+  private final StatisticsAggregates aggregates = new StatisticsAggregates();
+
   @Activate
   public void activate(ComponentContext context) {
     eventExecutor = Executors.newSingleThreadExecutor(groupedThreads("onos/flexcomm/stats", "event"));
     store.setDelegate(delegate);
     eventDispatcher.addSink(FlexcommStatisticsEvent.class, listenerRegistry);
     deviceService.addListener(deviceListener);
+    netCfgService.registerConfigFactory(configFactory);
+    netCfgService.addListener(configListener);
+    netCfgService.getSubjects(DeviceId.class, FlexcommStatisticsConfig.class).forEach(this::applyConfig);
     cfgService.registerProperties(getClass());
     modified(context);
 
@@ -96,9 +131,12 @@ public class FlexcommStatisticsManager
   public void deactivate(ComponentContext context) {
     eventExecutor.shutdown();
     deviceService.removeListener(deviceListener);
+    netCfgService.removeListener(configListener);
+    netCfgService.unregisterConfigFactory(configFactory);
     cfgService.unregisterProperties(getClass(), false);
     store.unsetDelegate(delegate);
     eventDispatcher.removeSink(FlexcommStatisticsEvent.class);
+    aggregates.clear();
     log.info("Stopped");
   }
 
@@ -139,6 +177,34 @@ public class FlexcommStatisticsManager
     return store.getPortStatistics(deviceId);
   }
 
+  @Override
+  public Map<DeviceId, GlobalStatistics> getGlobalStatistics(Collection<DeviceId> deviceIds, boolean delta) {
+    checkPermission(DEVICE_READ);
+    checkNotNull(deviceIds, "Device IDs cannot be null");
+    return store.getGlobalStatistics(deviceIds, delta);
+  }
+
+  @Override
+  public Map<DeviceId, List<PortStatistics>> getPortStatistics(Map<DeviceId, ? extends Collection<PortNumber>> ports,
+      boolean delta) {
+    checkPermission(DEVICE_READ);
+    checkNotNull(ports, "Port selection cannot be null");
+    return store.getPortStatistics(ports, delta);
+  }
+
+  @Override
+  public long getStatisticsVersion() {
+    checkPermission(DEVICE_READ);
+    return store.getStatisticsVersion();
+  }
+
+  @Override
+  public long getStatisticsVersion(DeviceId deviceId) {
+    checkPermission(DEVICE_READ);
+    checkNotNull(deviceId, DEVICE_ID_NULL);
+    return store.getStatisticsVersion(deviceId);
+  }
+
   @Override
   public List<PortStatistics> getPortDeltaStatistics(DeviceId deviceId) {
     checkPermission(DEVICE_READ);
@@ -162,6 +228,121 @@ public class FlexcommStatisticsManager
     return store.getDeltaStatisticsForPort(deviceId, portNumber);
   }
 
+  @Override
+  public List<HistoricalStatistics> getGlobalStatisticsHistory(DeviceId deviceId, long startTime, long endTime) {
+    checkPermission(DEVICE_READ);
+    checkNotNull(deviceId, DEVICE_ID_NULL);
+    return store.getGlobalStatisticsHistory(deviceId, startTime, endTime);
+  }
+
+  @Override
+  public List<HistoricalStatistics> getPortStatisticsHistory(DeviceId deviceId, PortNumber portNumber,
+      long startTime, long endTime) {
+    checkPermission(DEVICE_READ);
+    checkNotNull(deviceId, DEVICE_ID_NULL);
+    checkNotNull(portNumber, PORT_NUMBER_NULL);
+    return store.getPortStatisticsHistory(deviceId, portNumber, startTime, endTime);
+  }
+
+  @Override
+  public List<StatisticsRollup> getGlobalStatisticsRollup(DeviceId deviceId, RollupResolution resolution) {
+    checkPermission(DEVICE_READ);
+    checkNotNull(deviceId, DEVICE_ID_NULL);
+    checkNotNull(resolution, RESOLUTION_NULL);
+    return store.getGlobalStatisticsRollup(deviceId, resolution);
+  }
+
+  @Override
+  public List<StatisticsRollup> getPortStatisticsRollup(DeviceId deviceId, PortNumber portNumber,
+      RollupResolution resolution) {
+    checkPermission(DEVICE_READ);
+    checkNotNull(deviceId, DEVICE_ID_NULL);
+    checkNotNull(portNumber, PORT_NUMBER_NULL);
+    checkNotNull(resolution, RESOLUTION_NULL);
+    return store.getPortStatisticsRollup(deviceId, portNumber, resolution);
+  }
+
+  @Override
+  public PollingStatistics getPollingStatistics(DeviceId deviceId) {
+    checkPermission(DEVICE_READ);
+    checkNotNull(deviceId, DEVICE_ID_NULL);
+    for (ProviderId providerId : getProviders()) {
+      FlexcommStatisticsProvider provider = getProvider(providerId);
+      PollingStatistics statistics = provider != null ? provider.getPollingStatistics(deviceId) : null;
+      if (statistics != null) {
+        return statistics;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public AggregateStatistics getAggregatePortStatistics() {
+    checkPermission(DEVICE_READ);
+    return aggregates.total();
+  }
+
+  @Override
+  public AggregateStatistics getAggregatePortStatistics(DeviceId deviceId) {
+    checkPermission(DEVICE_READ);
+    checkNotNull(deviceId, DEVICE_ID_NULL);
+    return aggregates.device(deviceId);
+  }
+
+  @Override
+  public List<AggregateStatistics> getTopPortsByPowerDrawn(int count) {
+    checkPermission(DEVICE_READ);
+    checkArgument(count > 0, COUNT_NOT_POSITIVE);
+    return aggregates.topPorts(count);
+  }
+
+  @Override
+  public List<AggregateStatistics> getTopDevicesByPowerDrawn(int count) {
+    checkPermission(DEVICE_READ);
+    checkArgument(count > 0, COUNT_NOT_POSITIVE);
+    return aggregates.topDevices(count);
+  }
+
+  // local updates come back from the store and remote ones through the delegate, both end up here
+  @Override
+  protected void post(FlexcommStatisticsEvent event) {
+    if (event != null && !eventExecutor.isShutdown()) {
+      eventExecutor.execute(() -> aggregate(event));
+    }
+    super.post(event);
+  }
+
+  private void aggregate(FlexcommStatisticsEvent event) {
+    switch (event.type()) {
+      case PORT_STATS_UPDATED:
+        if (event.ports().isEmpty()) {
+          refreshAggregates(event.subject());
+        } else {
+          mergeAggregates(event.subject(), event.ports());
+        }
+        break;
+      case PORT_STATS_REMOVED:
+        aggregates.remove(event.subject());
+        break;
+      case STATS_BATCH_UPDATED:
+        event.devices().forEach(this::refreshAggregates);
+        break;
+      default:
+        break;
+    }
+  }
+
+  // the latest stored readings are used, so events queued behind each other collapse into the newest sample
+  private void refreshAggregates(DeviceId deviceId) {
+    aggregates.update(deviceId, store.getPortStatistics(deviceId));
+  }
+
+  // a port changed by a later sample is applied early with its latest reading, which is still exact per port
+  private void mergeAggregates(DeviceId deviceId, Set<PortNumber> ports) {
+    List<PortStatistics> statistics = store.getPortStatistics(ImmutableMap.of(deviceId, ports), false).get(deviceId);
+    aggregates.merge(deviceId, statistics != null ? statistics : Collections.emptyList());
+  }
+
   @Override
   protected FlexcommStatisticsProviderService createProviderService(FlexcommStatisticsProvider provider) {
     return new InternalFlexcommStatisticsProviderService(provider);
@@ -203,6 +384,72 @@ public class FlexcommStatisticsManager
       post(event);
     }
 
+    @Override
+    public void updatePortStatistics(DeviceId deviceId, long[] portNumbers, double[] currentConsumption,
+        double[] powerDrawn, int size) {
+      checkNotNull(deviceId, DEVICE_ID_NULL);
+      checkNotNull(portNumbers, "Port numbers cannot be null");
+      checkNotNull(currentConsumption, "Current consumption cannot be null");
+      checkNotNull(powerDrawn, "Power drawn cannot be null");
+      checkValidity();
+
+      FlexcommStatisticsEvent event = store.updatePortStatistics(deviceId, portNumbers, currentConsumption,
+          powerDrawn, size);
+      post(event);
+    }
+
+    @Override
+    public void mergePortStatistics(DeviceId deviceId, long[] portNumbers, double[] currentConsumption,
+        double[] powerDrawn, int size) {
+      checkNotNull(deviceId, DEVICE_ID_NULL);
+      checkNotNull(portNumbers, "Port numbers cannot be null");
+      checkNotNull(currentConsumption, "Current consumption cannot be null");
+      checkNotNull(powerDrawn, "Power drawn cannot be null");
+      checkValidity();
+
+      FlexcommStatisticsEvent event = store.mergePortStatistics(deviceId, portNumbers, currentConsumption,
+          powerDrawn, size);
+      post(event);
+    }
+
+    @Override
+    public void updateStatistics(Map<DeviceId, GlobalStatistics> globalStatistics,
+        Map<DeviceId, Collection<PortStatistics>> portStatistics) {
+      checkNotNull(globalStatistics, "Global statistics map cannot be null");
+      checkNotNull(portStatistics, "Port statistics map cannot be null");
+      checkValidity();
+
+      FlexcommStatisticsEvent event = store.updateStatistics(globalStatistics, portStatistics);
+      post(event);
+    }
+
+  }
+
+  private void applyConfig(DeviceId deviceId) {
+    FlexcommStatisticsConfig cfg = netCfgService.getConfig(deviceId, FlexcommStatisticsConfig.class);
+    store.setHistorySize(deviceId, cfg != null ? cfg.historySize() : FlexcommStatisticsConfig.UNSET);
+  }
+
+  // polling settings are applied by the providers, only the history retention is kept here
+  private class InternalConfigListener implements NetworkConfigListener {
+
+    @Override
+    public boolean isRelevant(NetworkConfigEvent event) {
+      return event.configClass() == FlexcommStatisticsConfig.class && event.subject() instanceof DeviceId;
+    }
+
+    @Override
+    public void event(NetworkConfigEvent event) {
+      switch (event.type()) {
+        case CONFIG_ADDED:
+        case CONFIG_UPDATED:
+        case CONFIG_REMOVED:
+          eventExecutor.execute(() -> applyConfig((DeviceId) event.subject()));
+          break;
+        default:
+          break;
+      }
+    }
   }
 
   private class InternalDeviceListener implements DeviceListener {
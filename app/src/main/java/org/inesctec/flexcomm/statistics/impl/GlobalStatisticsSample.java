@@ -0,0 +1,124 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.inesctec.flexcomm.statistics.api.DefaultGlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+import org.onosproject.net.DefaultAnnotations;
+
+public final class GlobalStatisticsSample {
+
+  private final long timestamp;
+  private final double currentConsumption;
+  private final double powerDrawn;
+  private final boolean hasPrevious;
+  private final double prvCurrentConsumption;
+  private final double prvPowerDrawn;
+  // set on samples written by a batch update, never replicated
+  private final boolean batched;
+  // read views, built once per sample and shared by every reader
+  private volatile GlobalStatistics statistics;
+  private volatile GlobalStatistics deltaStatistics;
+
+  GlobalStatisticsSample(long timestamp, double currentConsumption, double powerDrawn, boolean hasPrevious,
+      double prvCurrentConsumption, double prvPowerDrawn) {
+    this(timestamp, currentConsumption, powerDrawn, hasPrevious, prvCurrentConsumption, prvPowerDrawn, false);
+  }
+
+  private GlobalStatisticsSample(long timestamp, double currentConsumption, double powerDrawn, boolean hasPrevious,
+      double prvCurrentConsumption, double prvPowerDrawn, boolean batched) {
+    this.timestamp = timestamp;
+    this.currentConsumption = currentConsumption;
+    this.powerDrawn = powerDrawn;
+    this.hasPrevious = hasPrevious;
+    this.prvCurrentConsumption = prvCurrentConsumption;
+    this.prvPowerDrawn = prvPowerDrawn;
+    this.batched = batched;
+  }
+
+  public static GlobalStatisticsSample of(GlobalStatistics statistics, GlobalStatisticsSample previous) {
+    return of(statistics, previous, false);
+  }
+
+  public static GlobalStatisticsSample of(GlobalStatistics statistics, GlobalStatisticsSample previous,
+      boolean batched) {
+    checkNotNull(statistics, "Global statistics cannot be null");
+    long now = System.currentTimeMillis();
+    if (previous == null) {
+      return new GlobalStatisticsSample(now, statistics.currentConsumption(), statistics.powerDrawn(), false, 0, 0,
+          batched);
+    }
+    return new GlobalStatisticsSample(now, statistics.currentConsumption(), statistics.powerDrawn(), true,
+        previous.currentConsumption, previous.powerDrawn, batched);
+  }
+
+  public long timestamp() {
+    return timestamp;
+  }
+
+  public double currentConsumption() {
+    return currentConsumption;
+  }
+
+  public double powerDrawn() {
+    return powerDrawn;
+  }
+
+  public boolean hasPrevious() {
+    return hasPrevious;
+  }
+
+  public double prvCurrentConsumption() {
+    return prvCurrentConsumption;
+  }
+
+  public double prvPowerDrawn() {
+    return prvPowerDrawn;
+  }
+
+  public boolean isBatched() {
+    return batched;
+  }
+
+  void warm() {
+    statistics();
+    deltaStatistics();
+  }
+
+  public GlobalStatistics statistics() {
+    GlobalStatistics view = statistics;
+    if (view == null) {
+      view = DefaultGlobalStatistics.builder()
+          .setCurrentConsumption(currentConsumption)
+          .setPowerDrawn(powerDrawn)
+          .setAnnotations(DefaultAnnotations.EMPTY)
+          .build();
+      statistics = view;
+    }
+    return view;
+  }
+
+  public GlobalStatistics deltaStatistics() {
+    GlobalStatistics view = deltaStatistics;
+    if (view == null) {
+      GlobalStatistics.Builder builder = DefaultGlobalStatistics.builder()
+          .setAnnotations(DefaultAnnotations.EMPTY);
+      if (hasPrevious) {
+        builder.setCurrentConsumption(currentConsumption - prvCurrentConsumption)
+            .setPowerDrawn(powerDrawn - prvPowerDrawn);
+      }
+      view = builder.build();
+      deltaStatistics = view;
+    }
+    return view;
+  }
+
+  @Override
+  public String toString() {
+    return "timestamp: " + timestamp + ", " +
+        "currentConsumption: " + currentConsumption + ", " +
+        "powerDrawn: " + powerDrawn + ", " +
+        "prvCurrentConsumption: " + (hasPrevious ? prvCurrentConsumption : "none") + ", " +
+        "prvPowerDrawn: " + (hasPrevious ? prvPowerDrawn : "none");
+  }
+}
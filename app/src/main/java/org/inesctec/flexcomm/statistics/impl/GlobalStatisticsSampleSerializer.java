@@ -0,0 +1,41 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+public final class GlobalStatisticsSampleSerializer extends Serializer<GlobalStatisticsSample> {
+
+  public GlobalStatisticsSampleSerializer() {
+    super(false, true);
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output, GlobalStatisticsSample sample) {
+    output.writeLong(sample.timestamp());
+    output.writeDouble(sample.currentConsumption());
+    output.writeDouble(sample.powerDrawn());
+    output.writeBoolean(sample.hasPrevious());
+    if (sample.hasPrevious()) {
+      output.writeDouble(sample.prvCurrentConsumption());
+      output.writeDouble(sample.prvPowerDrawn());
+    }
+  }
+
+  @Override
+  public GlobalStatisticsSample read(Kryo kryo, Input input, Class<GlobalStatisticsSample> type) {
+    long timestamp = input.readLong();
+    double currentConsumption = input.readDouble();
+    double powerDrawn = input.readDouble();
+    boolean hasPrevious = input.readBoolean();
+    double prvCurrentConsumption = 0;
+    double prvPowerDrawn = 0;
+    if (hasPrevious) {
+      prvCurrentConsumption = input.readDouble();
+      prvPowerDrawn = input.readDouble();
+    }
+    return new GlobalStatisticsSample(timestamp, currentConsumption, powerDrawn, hasPrevious, prvCurrentConsumption,
+        prvPowerDrawn);
+  }
+}
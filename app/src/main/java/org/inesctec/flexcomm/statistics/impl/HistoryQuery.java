@@ -0,0 +1,44 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+// history request sent to a device's master when statistics are kept there only, no port means global history
+final class HistoryQuery {
+
+  private final DeviceId deviceId;
+  private final PortNumber portNumber;
+  private final long startTime;
+  private final long endTime;
+
+  HistoryQuery(DeviceId deviceId, PortNumber portNumber, long startTime, long endTime) {
+    this.deviceId = deviceId;
+    this.portNumber = portNumber;
+    this.startTime = startTime;
+    this.endTime = endTime;
+  }
+
+  DeviceId deviceId() {
+    return deviceId;
+  }
+
+  PortNumber portNumber() {
+    return portNumber;
+  }
+
+  long startTime() {
+    return startTime;
+  }
+
+  long endTime() {
+    return endTime;
+  }
+
+  @Override
+  public String toString() {
+    return "device: " + deviceId + ", " +
+        "port: " + portNumber + ", " +
+        "startTime: " + startTime + ", " +
+        "endTime: " + endTime;
+  }
+}
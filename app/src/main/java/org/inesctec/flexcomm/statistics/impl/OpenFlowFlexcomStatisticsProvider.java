@@ -1,31 +1,65 @@
 package org.inesctec.flexcomm.statistics.impl;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.ADAPTIVE_POLLING;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.ADAPTIVE_POLLING_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.ADAPTIVE_THRESHOLD;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.ADAPTIVE_THRESHOLD_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.BATCH_WINDOW;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.BATCH_WINDOW_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.FULL_SWEEP_FACTOR;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.FULL_SWEEP_FACTOR_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.HOT_PORTS;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.HOT_PORTS_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.HOT_PORT_POLLING;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.HOT_PORT_POLLING_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MAX_IN_FLIGHT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MAX_IN_FLIGHT_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MAX_POLL_FREQ;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MAX_POLL_FREQ_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MIN_POLL_FREQ;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MIN_POLL_FREQ_DEFAULT;
 import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POLL_FREQ;
 import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POLL_FREQ_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POLL_THREADS;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POLL_THREADS_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PUSH_MODE;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PUSH_MODE_DEFAULT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PUSH_TIMEOUT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PUSH_TIMEOUT_DEFAULT;
 import static org.onlab.util.Tools.get;
+import static org.onlab.util.Tools.groupedThreads;
 import static org.slf4j.LoggerFactory.getLogger;
 
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Dictionary;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Timer;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 import org.inesctec.flexcomm.statistics.api.DefaultGlobalStatistics;
-import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsConfig;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsProvider;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsProviderRegistry;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsProviderService;
 import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
-import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.inesctec.flexcomm.statistics.api.PollingStatistics;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onlab.util.AbstractAccumulator;
+import org.onlab.util.SharedExecutors;
+import org.onlab.util.Tools;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.net.DeviceId;
-import org.onosproject.net.PortNumber;
+import org.onosproject.net.config.NetworkConfigEvent;
+import org.onosproject.net.config.NetworkConfigListener;
+import org.onosproject.net.config.NetworkConfigService;
 import org.onosproject.net.provider.AbstractProvider;
 import org.onosproject.net.provider.ProviderId;
 import org.onosproject.openflow.controller.Dpid;
@@ -54,25 +88,52 @@ import org.projectfloodlight.openflow.protocol.OFFlexcommSubtype;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 import org.projectfloodlight.openflow.protocol.OFPortStatus;
 import org.projectfloodlight.openflow.protocol.OFStatsReply;
-import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
 import org.projectfloodlight.openflow.protocol.OFStatsRequest;
 import org.projectfloodlight.openflow.protocol.OFStatsType;
 import org.projectfloodlight.openflow.protocol.OFType;
 import org.projectfloodlight.openflow.protocol.errormsg.OFBadRequestErrorMsg;
 import org.slf4j.Logger;
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 
 @Component(immediate = true, property = {
     POLL_FREQ + ":Integer=" + POLL_FREQ_DEFAULT,
+    POLL_THREADS + ":Integer=" + POLL_THREADS_DEFAULT,
+    BATCH_WINDOW + ":Integer=" + BATCH_WINDOW_DEFAULT,
+    ADAPTIVE_POLLING + ":Boolean=" + ADAPTIVE_POLLING_DEFAULT,
+    MIN_POLL_FREQ + ":Integer=" + MIN_POLL_FREQ_DEFAULT,
+    MAX_POLL_FREQ + ":Integer=" + MAX_POLL_FREQ_DEFAULT,
+    ADAPTIVE_THRESHOLD + ":Double=" + ADAPTIVE_THRESHOLD_DEFAULT,
+    MAX_IN_FLIGHT + ":Integer=" + MAX_IN_FLIGHT_DEFAULT,
+    PUSH_MODE + ":Boolean=" + PUSH_MODE_DEFAULT,
+    PUSH_TIMEOUT + ":Integer=" + PUSH_TIMEOUT_DEFAULT,
+    HOT_PORT_POLLING + ":Boolean=" + HOT_PORT_POLLING_DEFAULT,
+    FULL_SWEEP_FACTOR + ":Integer=" + FULL_SWEEP_FACTOR_DEFAULT,
+    HOT_PORTS + "=" + HOT_PORTS_DEFAULT,
 })
 public class OpenFlowFlexcomStatisticsProvider extends AbstractProvider implements FlexcommStatisticsProvider {
 
   public static final long FLEXCOMM_EXPERIMENTER = 0xf82aL;
 
+  private static final int MAX_BATCH_ITEMS = 10000;
+
+  private static final int MIN_IN_FLIGHT = 2;
+
+  private static final String OF_SCHEME = "of";
+
+  private static final String METRICS_COMPONENT = "FlexcommStatistics";
+  private static final String METRICS_FEATURE = "Polling";
+  private static final String POLL_INTERVAL_METRIC = ".pollInterval";
+  private static final String DROPPED_REPLIES_METRIC = "droppedPartialReplies";
+  private static final String REQUEST_TIMEOUTS_METRIC = "requestTimeouts";
+  private static final String MISSED_POLLS_METRIC = "missedPolls";
+
+  private static final long REASSEMBLY_CHECK_SECONDS = 1;
+
   private final Logger log = getLogger(getClass());
 
   @Reference(cardinality = ReferenceCardinality.MANDATORY)
@@ -84,16 +145,68 @@ public class OpenFlowFlexcomStatisticsProvider extends AbstractProvider implemen
   @Reference(cardinality = ReferenceCardinality.MANDATORY)
   protected FlexcommStatisticsProviderRegistry providerRegistry;
 
+  @Reference(cardinality = ReferenceCardinality.MANDATORY)
+  protected MetricsService metricsService;
+
+  @Reference(cardinality = ReferenceCardinality.MANDATORY)
+  protected NetworkConfigService netCfgService;
+
   private FlexcommStatisticsProviderService providerService;
 
   private final InternalFlexcommProvider listener = new InternalFlexcommProvider();
 
+  private final NetworkConfigListener configListener = new InternalConfigListener();
+
   private int flexcommStatsPollFrequency = POLL_FREQ_DEFAULT;
 
-  private final Timer timer = new Timer("onos-openflow-flexcomm-collector");
+  private int flexcommStatsPollThreads = POLL_THREADS_DEFAULT;
+
+  private int flexcommStatsBatchWindow = BATCH_WINDOW_DEFAULT;
+
+  private boolean flexcommStatsAdaptivePolling = ADAPTIVE_POLLING_DEFAULT;
+
+  private int flexcommStatsMinPollFrequency = MIN_POLL_FREQ_DEFAULT;
+
+  private int flexcommStatsMaxPollFrequency = MAX_POLL_FREQ_DEFAULT;
+
+  private double flexcommStatsAdaptiveThreshold = ADAPTIVE_THRESHOLD_DEFAULT;
+
+  private int flexcommStatsMaxInFlight = MAX_IN_FLIGHT_DEFAULT;
+
+  private boolean flexcommStatsPushMode = PUSH_MODE_DEFAULT;
+
+  private int flexcommStatsPushTimeout = PUSH_TIMEOUT_DEFAULT;
+
+  private boolean flexcommStatsHotPortPolling = HOT_PORT_POLLING_DEFAULT;
+
+  private int flexcommStatsFullSweepFactor = FULL_SWEEP_FACTOR_DEFAULT;
+
+  private Set<Long> flexcommStatsHotPorts = ImmutableSet.of();
+
+  private MetricsComponent metricsComponent;
+
+  private MetricsFeature metricsFeature;
+
+  private Counter droppedPartialReplies;
+
+  private Counter requestTimeouts;
+
+  private Counter missedPolls;
+
+  private final PortEnergyReplyReassembler reassembler = new PortEnergyReplyReassembler();
+
+  private volatile InternalStatisticsAccumulator accumulator;
+
+  private ScheduledExecutorService pollExecutor;
+
+  private ScheduledExecutorService expiryExecutor;
 
   private Map<Dpid, FlexcommStatisticsCollector> collectors = Maps.newConcurrentMap();
 
+  // clocks handed to the collectors, replaced by tests running on virtual time
+  LongSupplier wallClock = System::currentTimeMillis;
+  LongSupplier nanoClock = System::nanoTime;
+
   public OpenFlowFlexcomStatisticsProvider() {
     super(new ProviderId("of", "org.inesctec.provider.flexcomm"));
   }
@@ -104,8 +217,21 @@ public class OpenFlowFlexcomStatisticsProvider extends AbstractProvider implemen
 
     providerService = providerRegistry.register(this);
 
+    metricsComponent = metricsService.registerComponent(METRICS_COMPONENT);
+    metricsFeature = metricsComponent.registerFeature(METRICS_FEATURE);
+    droppedPartialReplies = metricsService.createCounter(metricsComponent, metricsFeature, DROPPED_REPLIES_METRIC);
+    requestTimeouts = metricsService.createCounter(metricsComponent, metricsFeature, REQUEST_TIMEOUTS_METRIC);
+    missedPolls = metricsService.createCounter(metricsComponent, metricsFeature, MISSED_POLLS_METRIC);
+
+    pollExecutor = newExecutor(flexcommStatsPollThreads, "collector-%d");
+    // expiry walks every collector, on its own thread it cannot hold up the polls of a large fleet
+    expiryExecutor = newExecutor(1, "expiry-%d");
+    expiryExecutor.scheduleWithFixedDelay(this::expireOutstandingReplies, REASSEMBLY_CHECK_SECONDS,
+        REASSEMBLY_CHECK_SECONDS, TimeUnit.SECONDS);
+
     openFlowController.addListener(listener);
     openFlowController.addEventListener(listener);
+    netCfgService.addListener(configListener);
 
     modified(context);
 
@@ -117,13 +243,22 @@ public class OpenFlowFlexcomStatisticsProvider extends AbstractProvider implemen
     cfgService.unregisterProperties(getClass(), false);
     listener.disable();
 
+    netCfgService.removeListener(configListener);
     openFlowController.removeEventListener(listener);
     openFlowController.removeListener(listener);
 
     providerRegistry.unregister(this);
+    accumulator = null;
 
+    collectors.keySet().forEach(this::removePollMetric);
     collectors.values().forEach(FlexcommStatisticsCollector::stop);
     collectors.clear();
+    expiryExecutor.shutdownNow();
+    pollExecutor.shutdownNow();
+    reassembler.clear();
+    metricsService.removeMetric(metricsComponent, metricsFeature, DROPPED_REPLIES_METRIC);
+    metricsService.removeMetric(metricsComponent, metricsFeature, REQUEST_TIMEOUTS_METRIC);
+    metricsService.removeMetric(metricsComponent, metricsFeature, MISSED_POLLS_METRIC);
 
     providerService = null;
 
@@ -142,48 +277,427 @@ public class OpenFlowFlexcomStatisticsProvider extends AbstractProvider implemen
       newFlexcommStatsPollFrequency = flexcommStatsPollFrequency;
     }
 
+    if (newFlexcommStatsPollFrequency < 1) {
+      log.warn("Ignoring invalid poll frequency {}", newFlexcommStatsPollFrequency);
+      newFlexcommStatsPollFrequency = flexcommStatsPollFrequency;
+    }
+
     if (newFlexcommStatsPollFrequency != flexcommStatsPollFrequency) {
       flexcommStatsPollFrequency = newFlexcommStatsPollFrequency;
-      collectors.values().forEach(fsc -> fsc.adjustPollInterval(flexcommStatsPollFrequency));
+      collectors.forEach((dpid, fsc) -> fsc.adjustPollInterval(pollInterval(dpid)));
+    }
+
+    int newFlexcommStatsPollThreads;
+    try {
+      String s = get(properties, POLL_THREADS);
+      newFlexcommStatsPollThreads = isNullOrEmpty(s) ? flexcommStatsPollThreads : Integer.parseInt(s.trim());
+    } catch (NumberFormatException | ClassCastException e) {
+      newFlexcommStatsPollThreads = flexcommStatsPollThreads;
+    }
+
+    if (newFlexcommStatsPollThreads < 1) {
+      log.warn("Ignoring invalid poll thread count {}", newFlexcommStatsPollThreads);
+      newFlexcommStatsPollThreads = flexcommStatsPollThreads;
+    }
+
+    if (newFlexcommStatsPollThreads != flexcommStatsPollThreads) {
+      flexcommStatsPollThreads = newFlexcommStatsPollThreads;
+      // the collectors keep their executor, the pool is resized in place
+      if (pollExecutor instanceof ScheduledThreadPoolExecutor) {
+        ((ScheduledThreadPoolExecutor) pollExecutor).setCorePoolSize(flexcommStatsPollThreads);
+      }
+    }
+
+    int newFlexcommStatsBatchWindow;
+    try {
+      String s = get(properties, BATCH_WINDOW);
+      newFlexcommStatsBatchWindow = isNullOrEmpty(s) ? flexcommStatsBatchWindow : Integer.parseInt(s.trim());
+
+    } catch (NumberFormatException | ClassCastException e) {
+      newFlexcommStatsBatchWindow = flexcommStatsBatchWindow;
+    }
+
+    if (newFlexcommStatsBatchWindow != flexcommStatsBatchWindow) {
+      flexcommStatsBatchWindow = newFlexcommStatsBatchWindow;
+      // a replaced accumulator still flushes what it holds on its own task of the shared timer
+      accumulator = flexcommStatsBatchWindow > 0 ? new InternalStatisticsAccumulator(flexcommStatsBatchWindow)
+          : null;
+    }
+
+    boolean newAdaptivePolling = flexcommStatsAdaptivePolling;
+    Boolean flag = Tools.isPropertyEnabled(properties, ADAPTIVE_POLLING);
+    if (flag != null) {
+      newAdaptivePolling = flag;
+    }
+
+    int newMinPollFrequency;
+    int newMaxPollFrequency;
+    double newAdaptiveThreshold;
+    try {
+      String s = get(properties, MIN_POLL_FREQ);
+      newMinPollFrequency = isNullOrEmpty(s) ? flexcommStatsMinPollFrequency : Integer.parseInt(s.trim());
+      s = get(properties, MAX_POLL_FREQ);
+      newMaxPollFrequency = isNullOrEmpty(s) ? flexcommStatsMaxPollFrequency : Integer.parseInt(s.trim());
+      s = get(properties, ADAPTIVE_THRESHOLD);
+      newAdaptiveThreshold = isNullOrEmpty(s) ? flexcommStatsAdaptiveThreshold : Double.parseDouble(s.trim());
+    } catch (NumberFormatException | ClassCastException e) {
+      newMinPollFrequency = flexcommStatsMinPollFrequency;
+      newMaxPollFrequency = flexcommStatsMaxPollFrequency;
+      newAdaptiveThreshold = flexcommStatsAdaptiveThreshold;
+    }
+
+    if (newMinPollFrequency < 1 || newMaxPollFrequency < newMinPollFrequency || newAdaptiveThreshold < 0) {
+      log.warn("Ignoring invalid adaptive polling settings min={}, max={}, threshold={}", newMinPollFrequency,
+          newMaxPollFrequency, newAdaptiveThreshold);
+      newMinPollFrequency = flexcommStatsMinPollFrequency;
+      newMaxPollFrequency = flexcommStatsMaxPollFrequency;
+      newAdaptiveThreshold = flexcommStatsAdaptiveThreshold;
+    }
+
+    if (newAdaptivePolling != flexcommStatsAdaptivePolling
+        || newMinPollFrequency != flexcommStatsMinPollFrequency
+        || newMaxPollFrequency != flexcommStatsMaxPollFrequency
+        || newAdaptiveThreshold != flexcommStatsAdaptiveThreshold) {
+      flexcommStatsAdaptivePolling = newAdaptivePolling;
+      flexcommStatsMinPollFrequency = newMinPollFrequency;
+      flexcommStatsMaxPollFrequency = newMaxPollFrequency;
+      flexcommStatsAdaptiveThreshold = newAdaptiveThreshold;
+      collectors.values().forEach(this::configureAdaptivePolling);
+    }
+
+    int newFlexcommStatsMaxInFlight;
+    try {
+      String s = get(properties, MAX_IN_FLIGHT);
+      newFlexcommStatsMaxInFlight = isNullOrEmpty(s) ? flexcommStatsMaxInFlight : Integer.parseInt(s.trim());
+    } catch (NumberFormatException | ClassCastException e) {
+      newFlexcommStatsMaxInFlight = flexcommStatsMaxInFlight;
+    }
+
+    if (newFlexcommStatsMaxInFlight < 0) {
+      log.warn("Ignoring invalid in-flight cap {}", newFlexcommStatsMaxInFlight);
+      newFlexcommStatsMaxInFlight = flexcommStatsMaxInFlight;
+    } else if (newFlexcommStatsMaxInFlight > 0 && newFlexcommStatsMaxInFlight < MIN_IN_FLIGHT) {
+      // a cap below a global request and a sweep would never admit a poll
+      log.warn("Raising in-flight cap {} to {}", newFlexcommStatsMaxInFlight, MIN_IN_FLIGHT);
+      newFlexcommStatsMaxInFlight = MIN_IN_FLIGHT;
+    }
+
+    if (newFlexcommStatsMaxInFlight != flexcommStatsMaxInFlight) {
+      flexcommStatsMaxInFlight = newFlexcommStatsMaxInFlight;
+      collectors.values().forEach(fsc -> fsc.setMaxInFlight(flexcommStatsMaxInFlight));
+    }
+
+    boolean newPushMode = flexcommStatsPushMode;
+    flag = Tools.isPropertyEnabled(properties, PUSH_MODE);
+    if (flag != null) {
+      newPushMode = flag;
+    }
+
+    int newPushTimeout;
+    try {
+      String s = get(properties, PUSH_TIMEOUT);
+      newPushTimeout = isNullOrEmpty(s) ? flexcommStatsPushTimeout : Integer.parseInt(s.trim());
+    } catch (NumberFormatException | ClassCastException e) {
+      newPushTimeout = flexcommStatsPushTimeout;
+    }
+
+    if (newPushTimeout < 1) {
+      log.warn("Ignoring invalid push timeout {}", newPushTimeout);
+      newPushTimeout = flexcommStatsPushTimeout;
+    }
+
+    if (newPushMode != flexcommStatsPushMode || newPushTimeout != flexcommStatsPushTimeout) {
+      flexcommStatsPushMode = newPushMode;
+      flexcommStatsPushTimeout = newPushTimeout;
+      collectors.values().forEach(fsc -> fsc.configurePushMode(flexcommStatsPushMode, flexcommStatsPushTimeout));
+    }
+
+    boolean newHotPortPolling = flexcommStatsHotPortPolling;
+    flag = Tools.isPropertyEnabled(properties, HOT_PORT_POLLING);
+    if (flag != null) {
+      newHotPortPolling = flag;
+    }
+
+    int newFullSweepFactor;
+    Set<Long> newHotPorts;
+    try {
+      String s = get(properties, FULL_SWEEP_FACTOR);
+      newFullSweepFactor = isNullOrEmpty(s) ? flexcommStatsFullSweepFactor : Integer.parseInt(s.trim());
+      s = get(properties, HOT_PORTS);
+      newHotPorts = s == null ? flexcommStatsHotPorts : parsePorts(s);
+    } catch (NumberFormatException | ClassCastException e) {
+      newFullSweepFactor = flexcommStatsFullSweepFactor;
+      newHotPorts = flexcommStatsHotPorts;
     }
 
-    log.info("Settings: flexcommStatsPollFrequency={}", flexcommStatsPollFrequency);
+    if (newFullSweepFactor < 1) {
+      log.warn("Ignoring invalid full sweep factor {}", newFullSweepFactor);
+      newFullSweepFactor = flexcommStatsFullSweepFactor;
+    }
+
+    if (newHotPortPolling != flexcommStatsHotPortPolling || newFullSweepFactor != flexcommStatsFullSweepFactor
+        || !newHotPorts.equals(flexcommStatsHotPorts)) {
+      flexcommStatsHotPortPolling = newHotPortPolling;
+      flexcommStatsFullSweepFactor = newFullSweepFactor;
+      flexcommStatsHotPorts = newHotPorts;
+      collectors.values().forEach(this::configureHotPortPolling);
+    }
+
+    log.info("Settings: flexcommStatsPollFrequency={}, flexcommStatsPollThreads={}, flexcommStatsBatchWindow={}, "
+        + "flexcommStatsMaxInFlight={}", flexcommStatsPollFrequency, flexcommStatsPollThreads,
+        flexcommStatsBatchWindow, flexcommStatsMaxInFlight);
+    log.info("Settings: flexcommStatsAdaptivePolling={}, flexcommStatsMinPollFrequency={}, " +
+        "flexcommStatsMaxPollFrequency={}, flexcommStatsAdaptiveThreshold={}", flexcommStatsAdaptivePolling,
+        flexcommStatsMinPollFrequency, flexcommStatsMaxPollFrequency, flexcommStatsAdaptiveThreshold);
+    log.info("Settings: flexcommStatsPushMode={}, flexcommStatsPushTimeout={}", flexcommStatsPushMode,
+        flexcommStatsPushTimeout);
+    log.info("Settings: flexcommStatsHotPortPolling={}, flexcommStatsFullSweepFactor={}, flexcommStatsHotPorts={}",
+        flexcommStatsHotPortPolling, flexcommStatsFullSweepFactor, flexcommStatsHotPorts);
+  }
+
+  @Override
+  public PollingStatistics getPollingStatistics(DeviceId deviceId) {
+    if (!OF_SCHEME.equals(deviceId.uri().getScheme())) {
+      return null;
+    }
+    FlexcommStatisticsCollector collector = collectors.get(Dpid.dpid(deviceId.uri()));
+    return collector != null ? collector.pollingStatistics(deviceId) : null;
+  }
+
+  // tests substitute executors running on virtual time
+  ScheduledExecutorService newExecutor(int threads, String pattern) {
+    return Executors.newScheduledThreadPool(threads, groupedThreads("onos/flexcomm/stats", pattern, log));
+  }
+
+  // a reply or partial set older than one poll interval of its switch will never be completed
+  private void expireOutstandingReplies() {
+    try {
+      int dropped = reassembler.expire(this::replyTimeout);
+      if (dropped > 0) {
+        log.debug("Dropped {} incomplete port energy replies", dropped);
+        droppedPartialReplies.inc(dropped);
+      }
+
+      int expired = 0;
+      for (Map.Entry<Dpid, FlexcommStatisticsCollector> entry : collectors.entrySet()) {
+        FlexcommStatisticsCollector collector = entry.getValue();
+        expired += collector.expireRequests(TimeUnit.SECONDS.toNanos(collector.pollInterval()));
+        mergePortMetrics(DeviceId.deviceId(Dpid.uri(entry.getKey())), collector.releaseHeldPorts());
+      }
+      if (expired > 0) {
+        log.debug("{} statistics requests timed out", expired);
+        requestTimeouts.inc(expired);
+      }
+    } catch (Exception e) {
+      log.warn("Unable to expire outstanding statistics replies", e);
+    }
+  }
+
+  // the interval a collector actually polls at, adaptive and slow tier included
+  private long replyTimeout(Dpid dpid) {
+    FlexcommStatisticsCollector collector = collectors.get(dpid);
+    return TimeUnit.SECONDS.toNanos(collector != null ? collector.pollInterval() : pollInterval(dpid));
+  }
+
+  private FlexcommStatisticsConfig deviceConfig(Dpid dpid) {
+    return netCfgService.getConfig(DeviceId.deviceId(Dpid.uri(dpid)), FlexcommStatisticsConfig.class);
+  }
+
+  private int pollInterval(Dpid dpid) {
+    FlexcommStatisticsConfig cfg = deviceConfig(dpid);
+    return cfg != null && cfg.pollInterval() != FlexcommStatisticsConfig.UNSET ? cfg.pollInterval()
+        : flexcommStatsPollFrequency;
+  }
+
+  private void applyDeviceConfig(Dpid dpid, FlexcommStatisticsCollector collector) {
+    FlexcommStatisticsConfig cfg = deviceConfig(dpid);
+    collector.adjustPollInterval(pollInterval(dpid));
+    collector.setPortPollInterval(cfg != null ? cfg.portPollInterval() : FlexcommStatisticsConfig.UNSET);
+  }
+
+  // only the device the configuration belongs to is touched, other collectors keep running
+  private void deviceConfigChanged(Dpid dpid) {
+    FlexcommStatisticsConfig cfg = deviceConfig(dpid);
+    if (cfg != null && !cfg.enabled()) {
+      if (collectors.containsKey(dpid)) {
+        log.info("Flexcomm statistics disabled for {}", dpid);
+        listener.stopCollectorIfNeeded(dpid, collectors.remove(dpid));
+        reassembler.remove(dpid);
+      }
+      return;
+    }
+
+    FlexcommStatisticsCollector collector = collectors.get(dpid);
+    if (collector != null) {
+      applyDeviceConfig(dpid, collector);
+    } else if (openFlowController.getSwitch(dpid) != null) {
+      listener.switchAdded(dpid);
+    }
+  }
+
+  private static Set<Long> parsePorts(String ports) {
+    ImmutableSet.Builder<Long> builder = ImmutableSet.builder();
+    for (String port : Splitter.on(',').trimResults().omitEmptyStrings().split(ports)) {
+      builder.add(Long.parseLong(port));
+    }
+    return builder.build();
+  }
+
+  private void configureHotPortPolling(FlexcommStatisticsCollector collector) {
+    collector.configureHotPortPolling(flexcommStatsHotPortPolling, flexcommStatsFullSweepFactor,
+        flexcommStatsHotPorts);
+  }
+
+  private void configureAdaptivePolling(FlexcommStatisticsCollector collector) {
+    collector.configureAdaptivePolling(flexcommStatsAdaptivePolling, flexcommStatsMinPollFrequency,
+        flexcommStatsMaxPollFrequency, flexcommStatsAdaptiveThreshold);
+  }
+
+  private void registerPollMetric(Dpid dpid, FlexcommStatisticsCollector collector) {
+    removePollMetric(dpid);
+    metricsService.registerMetric(metricsComponent, metricsFeature, dpid + POLL_INTERVAL_METRIC,
+        (Gauge<Integer>) collector::pollInterval);
+  }
+
+  private void removePollMetric(Dpid dpid) {
+    metricsService.removeMetric(metricsComponent, metricsFeature, dpid + POLL_INTERVAL_METRIC);
   }
 
-  private void pushPortMetrics(Dpid dpid, List<OFFlexcommPortStatsEntry> portStatsEntries) {
+  private void pushGlobalMetrics(Dpid dpid, GlobalStatistics stats) {
     DeviceId deviceId = DeviceId.deviceId(Dpid.uri(dpid));
-    Collection<PortStatistics> stats = buildPortStatistics(deviceId, ImmutableList.copyOf(portStatsEntries));
-    providerService.updatePortStatistics(deviceId, stats);
+    InternalStatisticsAccumulator batch = accumulator;
+    if (batch != null) {
+      batch.add(new StatisticsUpdate(deviceId, stats, null, false));
+    } else {
+      providerService.updateGlobalStatistics(deviceId, stats);
+    }
+  }
+
+  // decodes straight into the arrays the store keeps, without intermediate collections
+  private void pushPortMetrics(Dpid dpid, List<OFFlexcommPortStatsEntry> portStatsEntries,
+      FlexcommStatisticsCollector collector, long xid) {
+    DeviceId deviceId = DeviceId.deviceId(Dpid.uri(dpid));
+    PortEnergyEntries entries = PortEnergyEntries.decode(portStatsEntries);
+
+    if (collector != null) {
+      collector.observePorts(entries.portNumbers(), entries.currentConsumption(), entries.powerDrawn(),
+          entries.size());
+    }
+
+    // partial replies are merged a tick at a time
+    if (collector != null && collector.isPortRequest(xid)) {
+      mergePortMetrics(deviceId, collector.coalescePorts(xid, entries));
+      return;
+    }
+    InternalStatisticsAccumulator batch = accumulator;
+    if (batch != null) {
+      batch.add(new StatisticsUpdate(deviceId, null, entries, false));
+    } else {
+      providerService.updatePortStatistics(deviceId, entries.portNumbers(), entries.currentConsumption(),
+          entries.powerDrawn(), entries.size());
+    }
+  }
+
+  // merges go through the batch as well, so they are applied in order with the full updates held there
+  private void mergePortMetrics(DeviceId deviceId, PortEnergyEntries entries) {
+    if (entries == null) {
+      return;
+    }
+    InternalStatisticsAccumulator batch = accumulator;
+    if (batch != null) {
+      batch.add(new StatisticsUpdate(deviceId, null, entries, true));
+    } else {
+      providerService.mergePortStatistics(deviceId, entries.portNumbers(), entries.currentConsumption(),
+          entries.powerDrawn(), entries.size());
+    }
   }
 
-  private Collection<PortStatistics> buildPortStatistics(DeviceId deviceId, List<OFFlexcommPortStatsEntry> entries) {
-    HashSet<PortStatistics> stats = Sets.newHashSet();
+  private static final class StatisticsUpdate {
+
+    private final DeviceId deviceId;
+    private final GlobalStatistics globalStatistics;
+    private final PortEnergyEntries portStatistics;
+    private final boolean merge;
+
+    private StatisticsUpdate(DeviceId deviceId, GlobalStatistics globalStatistics,
+        PortEnergyEntries portStatistics, boolean merge) {
+      this.deviceId = deviceId;
+      this.globalStatistics = globalStatistics;
+      this.portStatistics = portStatistics;
+      this.merge = merge;
+    }
+  }
+
+  private class InternalStatisticsAccumulator extends AbstractAccumulator<StatisticsUpdate> {
+
+    InternalStatisticsAccumulator(int batchWindow) {
+      super(SharedExecutors.getTimer(), MAX_BATCH_ITEMS, batchWindow, batchWindow);
+    }
 
-    for (OFFlexcommPortStatsEntry entry : entries) {
-      if (entry == null || entry.getPortNo() == null || entry.getPortNo().getPortNumber() < 0) {
-        continue;
+    @Override
+    public void processItems(List<StatisticsUpdate> items) {
+      FlexcommStatisticsProviderService service = providerService;
+      if (service == null) {
+        return;
       }
 
-      double currentConsumption = Double.longBitsToDouble(entry.getCurrentConsumption().getValue());
-      double powerDrawn = Double.longBitsToDouble(entry.getPowerDrawn().getValue());
+      StatisticsBatch batch = new StatisticsBatch();
+      for (StatisticsUpdate item : items) {
+        if (item.globalStatistics != null) {
+          batch.addGlobal(item.deviceId, item.globalStatistics);
+        }
+        if (item.portStatistics != null && item.merge) {
+          batch.mergePorts(item.deviceId, item.portStatistics);
+        } else if (item.portStatistics != null) {
+          batch.addPorts(item.deviceId, item.portStatistics);
+        }
+      }
+      try {
+        service.updateStatistics(batch.globalStatistics(), batch.portStatistics());
+        batch.mergedPortStatistics().forEach((deviceId, entries) -> service.mergePortStatistics(deviceId,
+            entries.portNumbers(), entries.currentConsumption(), entries.powerDrawn(), entries.size()));
+      } catch (IllegalStateException e) {
+        log.debug("Dropping {} batched statistics updates, provider is no longer valid", items.size());
+      }
+    }
+  }
 
-      PortStatistics.Builder builder = DefaultPortStatistics.builder();
-      PortStatistics portStats = builder.setPortNumber(PortNumber.portNumber(entry.getPortNo().getPortNumber()))
-          .setCurrentConsumption(currentConsumption).setPowerDrawn(powerDrawn).build();
+  private class InternalConfigListener implements NetworkConfigListener {
 
-      stats.add(portStats);
+    @Override
+    public boolean isRelevant(NetworkConfigEvent event) {
+      return event.configClass() == FlexcommStatisticsConfig.class && event.subject() instanceof DeviceId
+          && OF_SCHEME.equals(((DeviceId) event.subject()).uri().getScheme());
     }
 
-    return Collections.unmodifiableSet(stats);
+    @Override
+    public void event(NetworkConfigEvent event) {
+      switch (event.type()) {
+        case CONFIG_ADDED:
+        case CONFIG_UPDATED:
+        case CONFIG_REMOVED:
+          Dpid dpid = Dpid.dpid(((DeviceId) event.subject()).uri());
+          pollExecutor.execute(() -> {
+            try {
+              deviceConfigChanged(dpid);
+            } catch (Exception e) {
+              log.warn("Unable to apply Flexcomm statistics configuration for {}", dpid, e);
+            }
+          });
+          break;
+        default:
+          break;
+      }
+    }
   }
 
   private class InternalFlexcommProvider implements OpenFlowSwitchListener, OpenFlowEventListener {
 
-    private HashMap<Dpid, List<OFFlexcommPortStatsEntry>> portStatsReplies = new HashMap<>();
     private boolean isDisable = false;
 
-    private void stopCollectorIfNeeded(FlexcommStatisticsCollector collector) {
+    private void stopCollectorIfNeeded(Dpid dpid, FlexcommStatisticsCollector collector) {
       if (collector != null) {
+        removePollMetric(dpid);
         collector.stop();
       }
     }
@@ -210,8 +724,23 @@ public class OpenFlowFlexcomStatisticsProvider extends AbstractProvider implemen
         return;
       }
 
-      FlexcommStatisticsCollector fsc = new FlexcommStatisticsCollector(timer, sw, flexcommStatsPollFrequency);
-      stopCollectorIfNeeded(collectors.put(dpid, fsc));
+      FlexcommStatisticsConfig cfg = deviceConfig(dpid);
+      if (cfg != null && !cfg.enabled()) {
+        log.info("Flexcomm statistics are disabled for {}, not polling it", dpid);
+        return;
+      }
+
+      FlexcommStatisticsCollector fsc = new FlexcommStatisticsCollector(pollExecutor, sw, pollInterval(dpid),
+          missedPolls);
+      fsc.wallClock = wallClock;
+      fsc.nanoClock = nanoClock;
+      fsc.setPortPollInterval(cfg != null ? cfg.portPollInterval() : FlexcommStatisticsConfig.UNSET);
+      fsc.setMaxInFlight(flexcommStatsMaxInFlight);
+      fsc.configurePushMode(flexcommStatsPushMode, flexcommStatsPushTimeout);
+      configureHotPortPolling(fsc);
+      configureAdaptivePolling(fsc);
+      stopCollectorIfNeeded(dpid, collectors.put(dpid, fsc));
+      registerPollMetric(dpid, fsc);
       fsc.start();
 
       if (openFlowController.getSwitch(dpid) == null) {
@@ -226,7 +755,8 @@ public class OpenFlowFlexcomStatisticsProvider extends AbstractProvider implemen
 
     @Override
     public void switchRemoved(Dpid dpid) {
-      stopCollectorIfNeeded(collectors.remove(dpid));
+      stopCollectorIfNeeded(dpid, collectors.remove(dpid));
+      reassembler.remove(dpid);
     }
 
     @Override
@@ -248,26 +778,35 @@ public class OpenFlowFlexcomStatisticsProvider extends AbstractProvider implemen
                     .longBitsToDouble(globalEnergyReply.getCurrentConsumption().getValue());
                 double powerDrawn = Double
                     .longBitsToDouble(globalEnergyReply.getPowerDrawn().getValue());
-                DeviceId deviceId = DeviceId.deviceId(Dpid.uri(dpid));
                 GlobalStatistics.Builder builder = DefaultGlobalStatistics.builder();
                 GlobalStatistics stats = builder.setCurrentConsumption(currentConsumption)
                     .setPowerDrawn(powerDrawn)
                     .build();
-                providerService.updateGlobalStatistics(deviceId, stats);
+                pushGlobalMetrics(dpid, stats);
+
+                FlexcommStatisticsCollector collector = collectors.get(dpid);
+                if (collector != null) {
+                  if (msg.getXid() == FlexcommStatisticsCollector.PUSH_XID) {
+                    collector.pushReceived();
+                  } else {
+                    collector.replyReceived(msg.getXid());
+                    collector.observeReading(currentConsumption, powerDrawn);
+                  }
+                }
 
               } else if (flexcommStatsReply.getSubtype() == OFFlexcommSubtype.PORT_ENERGY.ordinal()) {
                 OFFlexcommPortEnergyReply portEnergyReply = (OFFlexcommPortEnergyReply) msg;
-                List<OFFlexcommPortStatsEntry> portStatsReplyList = portStatsReplies.get(dpid);
-                if (portStatsReplyList == null) {
-                  portStatsReplyList = Lists.newCopyOnWriteArrayList();
-                }
-                portStatsReplyList.addAll(portEnergyReply.getEntries());
-                portStatsReplies.put(dpid, portStatsReplyList);
-                if (!portEnergyReply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE)) {
-                  List<OFFlexcommPortStatsEntry> statsEntries = portStatsReplies.get(dpid);
-                  if (statsEntries != null) {
-                    pushPortMetrics(dpid, statsEntries);
-                    statsEntries.clear();
+                List<OFFlexcommPortStatsEntry> statsEntries = reassembler.add(dpid, portEnergyReply);
+                if (statsEntries != null) {
+                  FlexcommStatisticsCollector collector = collectors.get(dpid);
+                  pushPortMetrics(dpid, statsEntries, collector, msg.getXid());
+
+                  if (collector != null) {
+                    if (msg.getXid() == FlexcommStatisticsCollector.PUSH_XID) {
+                      collector.portPushReceived();
+                    } else {
+                      collector.replyReceived(msg.getXid());
+                    }
                   }
                 }
               }
@@ -282,7 +821,8 @@ public class OpenFlowFlexcomStatisticsProvider extends AbstractProvider implemen
                 if (ofMessage.getType() == OFType.STATS_REQUEST
                     && ((OFStatsRequest) ofMessage).getStatsType() == OFStatsType.EXPERIMENTER
                     && ((OFExperimenterStatsRequest) ofMessage).getExperimenter() == FLEXCOMM_EXPERIMENTER) {
-                  stopCollectorIfNeeded(collectors.remove(dpid));
+                  stopCollectorIfNeeded(dpid, collectors.remove(dpid));
+                  reassembler.remove(dpid);
                 }
               }
             }
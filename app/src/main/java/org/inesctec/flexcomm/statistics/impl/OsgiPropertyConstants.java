@@ -8,6 +8,66 @@ public final class OsgiPropertyConstants {
   public static final String POLL_FREQ = "flexcommStatsPollFrequency";
   public static final int POLL_FREQ_DEFAULT = 5;
 
+  public static final String POLL_THREADS = "flexcommStatsPollThreads";
+  public static final int POLL_THREADS_DEFAULT = 4;
+
+  public static final String BATCH_WINDOW = "flexcommStatsBatchWindow";
+  public static final int BATCH_WINDOW_DEFAULT = 0;
+
+  public static final String ADAPTIVE_POLLING = "flexcommStatsAdaptivePolling";
+  public static final boolean ADAPTIVE_POLLING_DEFAULT = false;
+
+  public static final String MIN_POLL_FREQ = "flexcommStatsMinPollFrequency";
+  public static final int MIN_POLL_FREQ_DEFAULT = 1;
+
+  public static final String MAX_POLL_FREQ = "flexcommStatsMaxPollFrequency";
+  public static final int MAX_POLL_FREQ_DEFAULT = 60;
+
+  public static final String ADAPTIVE_THRESHOLD = "flexcommStatsAdaptiveThreshold";
+  public static final double ADAPTIVE_THRESHOLD_DEFAULT = 0.05;
+
+  public static final String MAX_IN_FLIGHT = "flexcommStatsMaxInFlight";
+  public static final int MAX_IN_FLIGHT_DEFAULT = 0;
+
+  public static final String PUSH_MODE = "flexcommStatsPushMode";
+  public static final boolean PUSH_MODE_DEFAULT = false;
+
+  public static final String PUSH_TIMEOUT = "flexcommStatsPushTimeout";
+  public static final int PUSH_TIMEOUT_DEFAULT = 30;
+
+  public static final String HOT_PORT_POLLING = "flexcommStatsHotPortPolling";
+  public static final boolean HOT_PORT_POLLING_DEFAULT = false;
+
+  public static final String FULL_SWEEP_FACTOR = "flexcommStatsFullSweepFactor";
+  public static final int FULL_SWEEP_FACTOR_DEFAULT = 12;
+
+  public static final String HOT_PORTS = "flexcommStatsHotPorts";
+  public static final String HOT_PORTS_DEFAULT = "";
+
   public static final String FM_PURGE_ON_DISCONNECTION = "purgeOnDisconnection";
   public static final boolean FM_PURGE_ON_DISCONNECTION_DEFAULT = false;
+
+  public static final String PORT_STATS_ROLLUPS = "portStatsRollups";
+  public static final boolean PORT_STATS_ROLLUPS_DEFAULT = false;
+
+  public static final String STATS_HISTORY_SIZE = "statsHistorySize";
+  public static final int STATS_HISTORY_SIZE_DEFAULT = 720;
+
+  public static final String MASTER_LOCAL_STATS = "masterLocalStatistics";
+  public static final boolean MASTER_LOCAL_STATS_DEFAULT = false;
+
+  public static final String STATS_EXPIRY_FACTOR = "statsExpiryFactor";
+  public static final int STATS_EXPIRY_FACTOR_DEFAULT = 0;
+
+  public static final String CURRENT_DEADBAND = "currentConsumptionDeadband";
+  public static final double CURRENT_DEADBAND_DEFAULT = 0;
+
+  public static final String CURRENT_RELATIVE_DEADBAND = "currentConsumptionRelativeDeadband";
+  public static final double CURRENT_RELATIVE_DEADBAND_DEFAULT = 0;
+
+  public static final String POWER_DEADBAND = "powerDrawnDeadband";
+  public static final double POWER_DEADBAND_DEFAULT = 0;
+
+  public static final String POWER_RELATIVE_DEADBAND = "powerDrawnRelativeDeadband";
+  public static final double POWER_RELATIVE_DEADBAND_DEFAULT = 0;
 }
@@ -0,0 +1,89 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.PortNumber;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortStatsEntry;
+
+// port energy reply entries decoded into exact-size arrays, which are handed on to the store as they are,
+// batched updates carry them as a list whose statistics are only built when an entry is read
+final class PortEnergyEntries extends AbstractList<PortStatistics> {
+
+  private final long[] portNumbers;
+  private final double[] currentConsumption;
+  private final double[] powerDrawn;
+  private final int size;
+
+  private PortEnergyEntries(long[] portNumbers, double[] currentConsumption, double[] powerDrawn, int size) {
+    this.portNumbers = portNumbers;
+    this.currentConsumption = currentConsumption;
+    this.powerDrawn = powerDrawn;
+    this.size = size;
+  }
+
+  // entries without a valid port are skipped, readings are doubles carried in the bits of a U64
+  static PortEnergyEntries decode(List<OFFlexcommPortStatsEntry> entries) {
+    int count = entries.size();
+    long[] portNumbers = new long[count];
+    double[] currentConsumption = new double[count];
+    double[] powerDrawn = new double[count];
+    int size = 0;
+    for (int i = 0; i < count; i++) {
+      OFFlexcommPortStatsEntry entry = entries.get(i);
+      if (entry == null || entry.getPortNo() == null || entry.getPortNo().getPortNumber() < 0) {
+        continue;
+      }
+      portNumbers[size] = entry.getPortNo().getPortNumber();
+      currentConsumption[size] = Double.longBitsToDouble(entry.getCurrentConsumption().getValue());
+      powerDrawn[size] = Double.longBitsToDouble(entry.getPowerDrawn().getValue());
+      size++;
+    }
+    return new PortEnergyEntries(portNumbers, currentConsumption, powerDrawn, size);
+  }
+
+  // the entries of both, a port in the other one wins over the same port here once they are stored
+  PortEnergyEntries append(PortEnergyEntries other) {
+    long[] ports = Arrays.copyOf(portNumbers, size + other.size);
+    double[] current = Arrays.copyOf(currentConsumption, size + other.size);
+    double[] power = Arrays.copyOf(powerDrawn, size + other.size);
+    System.arraycopy(other.portNumbers, 0, ports, size, other.size);
+    System.arraycopy(other.currentConsumption, 0, current, size, other.size);
+    System.arraycopy(other.powerDrawn, 0, power, size, other.size);
+    return new PortEnergyEntries(ports, current, power, ports.length);
+  }
+
+  long[] portNumbers() {
+    return portNumbers;
+  }
+
+  double[] currentConsumption() {
+    return currentConsumption;
+  }
+
+  double[] powerDrawn() {
+    return powerDrawn;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public PortStatistics get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+    }
+    return DefaultPortStatistics.builder()
+        .setPortNumber(PortNumber.portNumber(portNumbers[index]))
+        .setCurrentConsumption(currentConsumption[index])
+        .setPowerDrawn(powerDrawn[index])
+        .setAnnotations(DefaultAnnotations.EMPTY)
+        .build();
+  }
+}
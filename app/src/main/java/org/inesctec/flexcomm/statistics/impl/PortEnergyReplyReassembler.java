@@ -0,0 +1,106 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+import org.onosproject.openflow.controller.Dpid;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortEnergyReply;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+
+import com.google.common.collect.Maps;
+
+public final class PortEnergyReplyReassembler {
+
+  private final Map<ReplyKey, PendingReply> pending = Maps.newConcurrentMap();
+
+  // returns the complete entry list once the last part arrives, null while parts are still missing
+  public List<OFFlexcommPortStatsEntry> add(Dpid dpid, OFFlexcommPortEnergyReply reply) {
+    ReplyKey key = new ReplyKey(dpid, reply.getXid());
+    boolean last = !reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE);
+    if (last) {
+      PendingReply parts = pending.remove(key);
+      if (parts == null) {
+        return reply.getEntries();
+      }
+      return parts.complete(reply.getEntries());
+    }
+
+    pending.computeIfAbsent(key, k -> new PendingReply(System.nanoTime())).add(reply.getEntries());
+    return null;
+  }
+
+  // drops partial sets older than the timeout of their switch and returns how many were dropped
+  public int expire(ToLongFunction<Dpid> timeoutNanos) {
+    long now = System.nanoTime();
+    int dropped = 0;
+    Iterator<Map.Entry<ReplyKey, PendingReply>> it = pending.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<ReplyKey, PendingReply> entry = it.next();
+      if (now - entry.getValue().createdAt > timeoutNanos.applyAsLong(entry.getKey().dpid)) {
+        it.remove();
+        dropped++;
+      }
+    }
+    return dropped;
+  }
+
+  public void remove(Dpid dpid) {
+    pending.keySet().removeIf(key -> key.dpid.equals(dpid));
+  }
+
+  public void clear() {
+    pending.clear();
+  }
+
+  private static final class ReplyKey {
+
+    private final Dpid dpid;
+    private final long xid;
+
+    private ReplyKey(Dpid dpid, long xid) {
+      this.dpid = dpid;
+      this.xid = xid;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof ReplyKey)) {
+        return false;
+      }
+      ReplyKey that = (ReplyKey) obj;
+      return xid == that.xid && dpid.equals(that.dpid);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(dpid, xid);
+    }
+  }
+
+  private static final class PendingReply {
+
+    private final long createdAt;
+    private final List<OFFlexcommPortStatsEntry> entries = new ArrayList<>();
+
+    private PendingReply(long createdAt) {
+      this.createdAt = createdAt;
+    }
+
+    private synchronized void add(List<OFFlexcommPortStatsEntry> part) {
+      entries.addAll(part);
+    }
+
+    private synchronized List<OFFlexcommPortStatsEntry> complete(List<OFFlexcommPortStatsEntry> part) {
+      entries.addAll(part);
+      return entries;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.onosproject.net.PortNumber;
+
+public final class PortStatisticsSample {
+
+  private final long timestamp;
+  private final PortStatisticsSnapshot current;
+  private final PortStatisticsSnapshot previous;
+  // the ports this sample read from the switch, null when it read all of them
+  private final PortStatisticsSnapshot updated;
+  // set on samples written by a batch update, never replicated
+  private final boolean batched;
+  // read views, built once per sample and shared by every reader
+  private volatile List<PortStatistics> statistics;
+  private volatile List<PortStatistics> deltaStatistics;
+
+  PortStatisticsSample(long timestamp, PortStatisticsSnapshot current, PortStatisticsSnapshot previous) {
+    this(timestamp, current, previous, null, false);
+  }
+
+  PortStatisticsSample(long timestamp, PortStatisticsSnapshot current, PortStatisticsSnapshot previous,
+      PortStatisticsSnapshot updated) {
+    this(timestamp, current, previous, updated, false);
+  }
+
+  private PortStatisticsSample(long timestamp, PortStatisticsSnapshot current, PortStatisticsSnapshot previous,
+      PortStatisticsSnapshot updated, boolean batched) {
+    this.timestamp = timestamp;
+    this.current = checkNotNull(current, "Current snapshot cannot be null");
+    this.previous = previous;
+    this.updated = updated;
+    this.batched = batched;
+  }
+
+  public static PortStatisticsSample of(PortStatisticsSnapshot statistics, PortStatisticsSample previous) {
+    return of(statistics, previous, false);
+  }
+
+  public static PortStatisticsSample of(PortStatisticsSnapshot statistics, PortStatisticsSample previous,
+      boolean batched) {
+    return new PortStatisticsSample(System.currentTimeMillis(), statistics,
+        previous != null ? previous.current : null, null, batched);
+  }
+
+  // only the merged ports move on, every other port keeps the reading its last delta was taken against
+  public static PortStatisticsSample merge(PortStatisticsSample previous, PortStatisticsSnapshot update) {
+    if (previous == null) {
+      return of(update, null);
+    }
+
+    PortStatisticsSnapshot replaced = previous.current.retain(update);
+    return new PortStatisticsSample(System.currentTimeMillis(), previous.current.merge(update),
+        previous.previous != null ? previous.previous.merge(replaced) : replaced,
+        update.hasSamePorts(previous.current) ? null : update, false);
+  }
+
+  public long timestamp() {
+    return timestamp;
+  }
+
+  public PortStatisticsSnapshot current() {
+    return current;
+  }
+
+  public PortStatisticsSnapshot previous() {
+    return previous;
+  }
+
+  public PortStatisticsSnapshot updated() {
+    return updated != null ? updated : current;
+  }
+
+  boolean isPartial() {
+    return updated != null;
+  }
+
+  public boolean isBatched() {
+    return batched;
+  }
+
+  void warm() {
+    statistics();
+    deltaStatistics();
+  }
+
+  public List<PortStatistics> statistics() {
+    List<PortStatistics> views = statistics;
+    if (views == null) {
+      views = current.statistics();
+      statistics = views;
+    }
+    return views;
+  }
+
+  public List<PortStatistics> deltaStatistics() {
+    if (previous == null) {
+      return Collections.emptyList();
+    }
+
+    List<PortStatistics> views = deltaStatistics;
+    if (views == null) {
+      views = current.delta(previous).statistics();
+      deltaStatistics = views;
+    }
+    return views;
+  }
+
+  public PortStatistics statisticsForPort(PortNumber portNumber) {
+    int index = current.indexOf(portNumber.toLong());
+    return index < 0 ? null : statistics().get(index);
+  }
+
+  public PortStatistics deltaStatisticsForPort(PortNumber portNumber) {
+    if (previous == null) {
+      return null;
+    }
+
+    // the delta views follow the current snapshot's port order
+    int index = current.indexOf(portNumber.toLong());
+    return index < 0 ? null : deltaStatistics().get(index);
+  }
+
+  @Override
+  public String toString() {
+    return "timestamp: " + timestamp + ", current: [" + current + "], previous: [" + previous + "], " +
+        "updated: [" + updated + "]";
+  }
+}
@@ -0,0 +1,90 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+public final class PortStatisticsSampleSerializer extends Serializer<PortStatisticsSample> {
+
+  private static final byte NO_PREVIOUS = 0;
+  private static final byte SAME_PORTS = 1;
+  private static final byte OTHER_PORTS = 2;
+
+  private static final byte ALL_UPDATED = 0;
+  private static final byte SOME_UPDATED = 1;
+
+  public PortStatisticsSampleSerializer() {
+    super(false, true);
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output, PortStatisticsSample sample) {
+    PortStatisticsSnapshot current = sample.current();
+    PortStatisticsSnapshot previous = sample.previous();
+    output.writeLong(sample.timestamp());
+    kryo.writeObject(output, current);
+
+    if (previous == null) {
+      output.writeByte(NO_PREVIOUS);
+    } else if (current.hasSamePorts(previous)) {
+      // the port set rarely changes between samples, so only the readings are sent
+      output.writeByte(SAME_PORTS);
+      for (int i = 0; i < previous.size(); i++) {
+        output.writeDouble(previous.currentConsumption(i));
+        output.writeDouble(previous.powerDrawn(i));
+      }
+    } else {
+      output.writeByte(OTHER_PORTS);
+      kryo.writeObject(output, previous);
+    }
+
+    // the readings of updated ports are already in the current snapshot, only their numbers are sent
+    if (sample.isPartial()) {
+      PortStatisticsSnapshot updated = sample.updated();
+      output.writeByte(SOME_UPDATED);
+      output.writeInt(updated.size(), true);
+      long prvPort = 0;
+      for (int i = 0; i < updated.size(); i++) {
+        output.writeVarLong(updated.portNumber(i) - prvPort, true);
+        prvPort = updated.portNumber(i);
+      }
+    } else {
+      output.writeByte(ALL_UPDATED);
+    }
+  }
+
+  @Override
+  public PortStatisticsSample read(Kryo kryo, Input input, Class<PortStatisticsSample> type) {
+    long timestamp = input.readLong();
+    PortStatisticsSnapshot current = kryo.readObject(input, PortStatisticsSnapshot.class);
+    PortStatisticsSnapshot previous = null;
+
+    byte prvType = input.readByte();
+    if (prvType == SAME_PORTS) {
+      double[] currentConsumption = new double[current.size()];
+      double[] powerDrawn = new double[current.size()];
+      for (int i = 0; i < current.size(); i++) {
+        currentConsumption[i] = input.readDouble();
+        powerDrawn[i] = input.readDouble();
+      }
+      previous = current.withValues(currentConsumption, powerDrawn);
+    } else if (prvType == OTHER_PORTS) {
+      previous = kryo.readObject(input, PortStatisticsSnapshot.class);
+    }
+
+    PortStatisticsSnapshot updated = null;
+    if (input.readByte() == SOME_UPDATED) {
+      long[] ports = new long[input.readInt(true)];
+      long port = 0;
+      for (int i = 0; i < ports.length; i++) {
+        port += input.readVarLong(true);
+        ports[i] = port;
+      }
+      updated = current.retain(PortStatisticsSnapshot.of(ports, new double[ports.length],
+          new double[ports.length], ports.length));
+    }
+
+    return new PortStatisticsSample(timestamp, current, previous, updated);
+  }
+}
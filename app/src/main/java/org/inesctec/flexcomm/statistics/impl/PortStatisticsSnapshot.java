@@ -0,0 +1,269 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.PortNumber;
+
+import com.google.common.collect.ImmutableList;
+
+public final class PortStatisticsSnapshot {
+
+  public static final PortStatisticsSnapshot EMPTY = new PortStatisticsSnapshot(new long[0], new double[0],
+      new double[0]);
+
+  private final long[] portNumbers;
+  private final double[] currentConsumption;
+  private final double[] powerDrawn;
+
+  PortStatisticsSnapshot(long[] portNumbers, double[] currentConsumption, double[] powerDrawn) {
+    checkArgument(portNumbers.length == currentConsumption.length && portNumbers.length == powerDrawn.length,
+        "Snapshot arrays must have the same length");
+    this.portNumbers = portNumbers;
+    this.currentConsumption = currentConsumption;
+    this.powerDrawn = powerDrawn;
+  }
+
+  public static PortStatisticsSnapshot of(Collection<PortStatistics> statistics) {
+    checkNotNull(statistics, "Port statistics cannot be null");
+    if (statistics instanceof PortEnergyEntries) {
+      PortEnergyEntries entries = (PortEnergyEntries) statistics;
+      return of(entries.portNumbers(), entries.currentConsumption(), entries.powerDrawn(), entries.size());
+    }
+
+    long[] ports = new long[statistics.size()];
+    double[] current = new double[ports.length];
+    double[] power = new double[ports.length];
+    int size = 0;
+    for (PortStatistics stats : statistics) {
+      if (stats != null && stats.portNumber() != null) {
+        ports[size] = stats.portNumber().toLong();
+        current[size] = stats.currentConsumption();
+        power[size] = stats.powerDrawn();
+        size++;
+      }
+    }
+
+    return of(ports, current, power, size);
+  }
+
+  // takes ownership of the arrays, which are used as they are when already sorted and exactly sized
+  public static PortStatisticsSnapshot of(long[] portNumbers, double[] currentConsumption, double[] powerDrawn,
+      int size) {
+    checkArgument(size >= 0 && size <= portNumbers.length && size <= currentConsumption.length
+        && size <= powerDrawn.length, "Invalid snapshot size %s", size);
+    if (size == 0) {
+      return EMPTY;
+    }
+    if (size == portNumbers.length && size == currentConsumption.length && size == powerDrawn.length
+        && isStrictlySorted(portNumbers)) {
+      return new PortStatisticsSnapshot(portNumbers, currentConsumption, powerDrawn);
+    }
+
+    long[] sortedPorts = Arrays.copyOf(portNumbers, size);
+    Arrays.sort(sortedPorts);
+    int unique = 0;
+    for (int i = 0; i < size; i++) {
+      if (unique == 0 || sortedPorts[unique - 1] != sortedPorts[i]) {
+        sortedPorts[unique++] = sortedPorts[i];
+      }
+    }
+    if (unique != size) {
+      sortedPorts = Arrays.copyOf(sortedPorts, unique);
+    }
+
+    // later entries for the same port win
+    double[] current = new double[unique];
+    double[] power = new double[unique];
+    for (int i = 0; i < size; i++) {
+      int index = Arrays.binarySearch(sortedPorts, portNumbers[i]);
+      current[index] = currentConsumption[i];
+      power[index] = powerDrawn[i];
+    }
+
+    return new PortStatisticsSnapshot(sortedPorts, current, power);
+  }
+
+  private static boolean isStrictlySorted(long[] values) {
+    for (int i = 1; i < values.length; i++) {
+      if (values[i - 1] >= values[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public int size() {
+    return portNumbers.length;
+  }
+
+  public long portNumber(int index) {
+    return portNumbers[index];
+  }
+
+  public double currentConsumption(int index) {
+    return currentConsumption[index];
+  }
+
+  public double powerDrawn(int index) {
+    return powerDrawn[index];
+  }
+
+  public int indexOf(long portNumber) {
+    int index = Arrays.binarySearch(portNumbers, portNumber);
+    return index < 0 ? -1 : index;
+  }
+
+  public PortStatistics get(PortNumber portNumber) {
+    int index = indexOf(portNumber.toLong());
+    return index < 0 ? null : view(index);
+  }
+
+  public List<PortStatistics> statistics() {
+    if (portNumbers.length == 0) {
+      return Collections.emptyList();
+    }
+
+    ImmutableList.Builder<PortStatistics> builder = ImmutableList.builder();
+    for (int i = 0; i < portNumbers.length; i++) {
+      builder.add(view(i));
+    }
+    return builder.build();
+  }
+
+  public boolean hasSamePorts(PortStatisticsSnapshot other) {
+    return portNumbers == other.portNumbers || Arrays.equals(portNumbers, other.portNumbers);
+  }
+
+  PortStatisticsSnapshot withValues(double[] currentConsumption, double[] powerDrawn) {
+    return new PortStatisticsSnapshot(portNumbers, currentConsumption, powerDrawn);
+  }
+
+  // ports in the update replace this snapshot's values, every other port keeps its last reading
+  public PortStatisticsSnapshot merge(PortStatisticsSnapshot update) {
+    if (update.portNumbers.length == 0) {
+      return this;
+    }
+    if (portNumbers.length == 0) {
+      return update;
+    }
+
+    int size = 0;
+    for (int i = 0, j = 0; i < portNumbers.length || j < update.portNumbers.length; size++) {
+      if (j == update.portNumbers.length || (i < portNumbers.length && portNumbers[i] < update.portNumbers[j])) {
+        i++;
+      } else if (i == portNumbers.length || portNumbers[i] > update.portNumbers[j]) {
+        j++;
+      } else {
+        i++;
+        j++;
+      }
+    }
+
+    // the update only touched known ports, so the port array can be shared
+    boolean samePorts = size == portNumbers.length;
+    long[] ports = samePorts ? portNumbers : new long[size];
+    double[] current = new double[size];
+    double[] power = new double[size];
+    for (int i = 0, j = 0, k = 0; k < size; k++) {
+      if (j == update.portNumbers.length || (i < portNumbers.length && portNumbers[i] < update.portNumbers[j])) {
+        if (!samePorts) {
+          ports[k] = portNumbers[i];
+        }
+        current[k] = currentConsumption[i];
+        power[k] = powerDrawn[i++];
+      } else {
+        if (i < portNumbers.length && portNumbers[i] == update.portNumbers[j]) {
+          i++;
+        }
+        if (!samePorts) {
+          ports[k] = update.portNumbers[j];
+        }
+        current[k] = update.currentConsumption[j];
+        power[k] = update.powerDrawn[j++];
+      }
+    }
+    return new PortStatisticsSnapshot(ports, current, power);
+  }
+
+  // this snapshot's values for the ports that are also in the other one
+  public PortStatisticsSnapshot retain(PortStatisticsSnapshot ports) {
+    if (hasSamePorts(ports)) {
+      return this;
+    }
+
+    long[] retained = new long[Math.min(portNumbers.length, ports.portNumbers.length)];
+    double[] current = new double[retained.length];
+    double[] power = new double[retained.length];
+    int size = 0;
+    for (int i = 0, j = 0; i < portNumbers.length && j < ports.portNumbers.length;) {
+      if (portNumbers[i] < ports.portNumbers[j]) {
+        i++;
+      } else if (portNumbers[i] > ports.portNumbers[j]) {
+        j++;
+      } else {
+        retained[size] = portNumbers[i];
+        current[size] = currentConsumption[i];
+        power[size++] = powerDrawn[i++];
+        j++;
+      }
+    }
+    return of(retained, current, power, size);
+  }
+
+  public PortStatisticsSnapshot delta(PortStatisticsSnapshot previous) {
+    double[] current = new double[portNumbers.length];
+    double[] power = new double[portNumbers.length];
+    for (int i = 0; i < portNumbers.length; i++) {
+      int prvIndex = previous.indexOf(portNumbers[i]);
+      if (prvIndex >= 0) {
+        current[i] = currentConsumption[i] - previous.currentConsumption[prvIndex];
+        power[i] = powerDrawn[i] - previous.powerDrawn[prvIndex];
+      }
+    }
+    return new PortStatisticsSnapshot(portNumbers, current, power);
+  }
+
+  private PortStatistics view(int index) {
+    return DefaultPortStatistics.builder()
+        .setPortNumber(PortNumber.portNumber(portNumbers[index]))
+        .setCurrentConsumption(currentConsumption[index])
+        .setPowerDrawn(powerDrawn[index])
+        .setAnnotations(DefaultAnnotations.EMPTY)
+        .build();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof PortStatisticsSnapshot)) {
+      return false;
+    }
+    PortStatisticsSnapshot that = (PortStatisticsSnapshot) obj;
+    return Arrays.equals(portNumbers, that.portNumbers)
+        && Arrays.equals(currentConsumption, that.currentConsumption)
+        && Arrays.equals(powerDrawn, that.powerDrawn);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(portNumbers);
+  }
+
+  @Override
+  public String toString() {
+    return "ports: " + Arrays.toString(portNumbers) + ", " +
+        "currentConsumption: " + Arrays.toString(currentConsumption) + ", " +
+        "powerDrawn: " + Arrays.toString(powerDrawn);
+  }
+}
@@ -0,0 +1,48 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+public final class PortStatisticsSnapshotSerializer extends Serializer<PortStatisticsSnapshot> {
+
+  public PortStatisticsSnapshotSerializer() {
+    super(false, true);
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output, PortStatisticsSnapshot snapshot) {
+    int size = snapshot.size();
+    output.writeInt(size, true);
+    // ports are sorted, so the gaps between them stay small
+    long prvPort = 0;
+    for (int i = 0; i < size; i++) {
+      long port = snapshot.portNumber(i);
+      output.writeVarLong(port - prvPort, true);
+      prvPort = port;
+      output.writeDouble(snapshot.currentConsumption(i));
+      output.writeDouble(snapshot.powerDrawn(i));
+    }
+  }
+
+  @Override
+  public PortStatisticsSnapshot read(Kryo kryo, Input input, Class<PortStatisticsSnapshot> type) {
+    int size = input.readInt(true);
+    if (size == 0) {
+      return PortStatisticsSnapshot.EMPTY;
+    }
+
+    long[] portNumbers = new long[size];
+    double[] currentConsumption = new double[size];
+    double[] powerDrawn = new double[size];
+    long port = 0;
+    for (int i = 0; i < size; i++) {
+      port += input.readVarLong(true);
+      portNumbers[i] = port;
+      currentConsumption[i] = input.readDouble();
+      powerDrawn[i] = input.readDouble();
+    }
+    return new PortStatisticsSnapshot(portNumbers, currentConsumption, powerDrawn);
+  }
+}
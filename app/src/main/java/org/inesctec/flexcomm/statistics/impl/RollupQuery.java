@@ -0,0 +1,38 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import org.inesctec.flexcomm.statistics.api.RollupResolution;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+// rollup request sent to a device's master when statistics are kept there only, no port means global rollups
+final class RollupQuery {
+
+  private final DeviceId deviceId;
+  private final PortNumber portNumber;
+  private final RollupResolution resolution;
+
+  RollupQuery(DeviceId deviceId, PortNumber portNumber, RollupResolution resolution) {
+    this.deviceId = deviceId;
+    this.portNumber = portNumber;
+    this.resolution = resolution;
+  }
+
+  DeviceId deviceId() {
+    return deviceId;
+  }
+
+  PortNumber portNumber() {
+    return portNumber;
+  }
+
+  RollupResolution resolution() {
+    return resolution;
+  }
+
+  @Override
+  public String toString() {
+    return "device: " + deviceId + ", " +
+        "port: " + portNumber + ", " +
+        "resolution: " + resolution;
+  }
+}
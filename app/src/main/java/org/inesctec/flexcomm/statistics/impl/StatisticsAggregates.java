@@ -0,0 +1,216 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.inesctec.flexcomm.statistics.api.AggregateStatistics;
+import org.inesctec.flexcomm.statistics.api.DefaultAggregateStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public final class StatisticsAggregates {
+
+  // highest draw first, device and port break ties so distinct entries never collapse in a ranking
+  private static final Comparator<AggregateStatistics> BY_POWER_DRAWN = Comparator
+      .comparingDouble(AggregateStatistics::powerDrawn).reversed()
+      .thenComparing((AggregateStatistics stats) -> stats.deviceId().toString())
+      .thenComparingLong(stats -> stats.portNumber() != null ? stats.portNumber().toLong() : -1);
+
+  private final Map<DeviceId, Map<Long, AggregateStatistics>> ports = Maps.newHashMap();
+  private final Map<DeviceId, AggregateStatistics> devices = Maps.newHashMap();
+
+  // full orderings rather than bounded heaps, a bounded heap cannot recover an entry evicted before a leader dropped
+  private final NavigableSet<AggregateStatistics> portRanking = new TreeSet<>(BY_POWER_DRAWN);
+  private final NavigableSet<AggregateStatistics> deviceRanking = new TreeSet<>(BY_POWER_DRAWN);
+
+  private int portCount;
+  private double currentConsumption;
+  private double powerDrawn;
+
+  // replaces the device's ports with the given readings; a full sample re-anchors the device sums
+  public synchronized void update(DeviceId deviceId, Collection<PortStatistics> statistics) {
+    apply(deviceId, statistics, true);
+  }
+
+  // only the given ports changed, the device's other ports keep their readings
+  public synchronized void merge(DeviceId deviceId, Collection<PortStatistics> statistics) {
+    apply(deviceId, statistics, false);
+  }
+
+  // each changed port moves the device and network sums by its own delta, unchanged ports are not re-ranked
+  private void apply(DeviceId deviceId, Collection<PortStatistics> statistics, boolean replace) {
+    Map<Long, AggregateStatistics> devicePorts = ports.get(deviceId);
+    if (devicePorts == null) {
+      if (statistics.isEmpty()) {
+        if (replace) {
+          removeDevice(deviceId);
+        }
+        return;
+      }
+      devicePorts = Maps.newHashMapWithExpectedSize(statistics.size());
+      ports.put(deviceId, devicePorts);
+    }
+
+    AggregateStatistics device = devices.get(deviceId);
+    double deviceCurrent = device != null ? device.currentConsumption() : 0;
+    double devicePower = device != null ? device.powerDrawn() : 0;
+    double sampleCurrent = 0;
+    double samplePower = 0;
+    int samplePorts = 0;
+    boolean changed = false;
+    for (PortStatistics stats : statistics) {
+      if (stats == null || stats.portNumber() == null) {
+        continue;
+      }
+      long port = stats.portNumber().toLong();
+      AggregateStatistics entry = devicePorts.get(port);
+      if (entry == null || entry.currentConsumption() != stats.currentConsumption()
+          || entry.powerDrawn() != stats.powerDrawn()) {
+        if (entry != null) {
+          portRanking.remove(entry);
+          deviceCurrent -= entry.currentConsumption();
+          devicePower -= entry.powerDrawn();
+        }
+        entry = aggregate(deviceId, stats.portNumber(), 1, stats.currentConsumption(), stats.powerDrawn());
+        devicePorts.put(port, entry);
+        portRanking.add(entry);
+        deviceCurrent += entry.currentConsumption();
+        devicePower += entry.powerDrawn();
+        changed = true;
+      }
+      sampleCurrent += entry.currentConsumption();
+      samplePower += entry.powerDrawn();
+      samplePorts++;
+    }
+
+    if (replace) {
+      if (devicePorts.size() > samplePorts) {
+        changed |= retainPorts(devicePorts, statistics);
+      }
+      deviceCurrent = sampleCurrent;
+      devicePower = samplePower;
+    }
+
+    if (devicePorts.isEmpty()) {
+      ports.remove(deviceId);
+      removeDevice(deviceId);
+      return;
+    }
+    if (!changed && device != null) {
+      return;
+    }
+    removeDevice(deviceId);
+    device = aggregate(deviceId, null, devicePorts.size(), deviceCurrent, devicePower);
+    devices.put(deviceId, device);
+    deviceRanking.add(device);
+    portCount += device.ports();
+    currentConsumption += device.currentConsumption();
+    powerDrawn += device.powerDrawn();
+  }
+
+  // drops the ports a full sample no longer reports, which is rare enough to afford the set
+  private boolean retainPorts(Map<Long, AggregateStatistics> devicePorts, Collection<PortStatistics> statistics) {
+    Set<Long> reported = Sets.newHashSetWithExpectedSize(statistics.size());
+    for (PortStatistics stats : statistics) {
+      if (stats != null && stats.portNumber() != null) {
+        reported.add(stats.portNumber().toLong());
+      }
+    }
+    boolean removed = false;
+    Iterator<Map.Entry<Long, AggregateStatistics>> it = devicePorts.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Long, AggregateStatistics> entry = it.next();
+      if (!reported.contains(entry.getKey())) {
+        portRanking.remove(entry.getValue());
+        it.remove();
+        removed = true;
+      }
+    }
+    return removed;
+  }
+
+  public synchronized void remove(DeviceId deviceId) {
+    Map<Long, AggregateStatistics> removed = ports.remove(deviceId);
+    if (removed != null) {
+      removed.values().forEach(portRanking::remove);
+    }
+    removeDevice(deviceId);
+  }
+
+  public synchronized void clear() {
+    ports.clear();
+    devices.clear();
+    portRanking.clear();
+    deviceRanking.clear();
+    resetTotals();
+  }
+
+  public synchronized AggregateStatistics total() {
+    return aggregate(null, null, portCount, currentConsumption, powerDrawn);
+  }
+
+  public synchronized AggregateStatistics device(DeviceId deviceId) {
+    return devices.get(deviceId);
+  }
+
+  public synchronized List<AggregateStatistics> topPorts(int count) {
+    return top(portRanking, count);
+  }
+
+  public synchronized List<AggregateStatistics> topDevices(int count) {
+    return top(deviceRanking, count);
+  }
+
+  private void removeDevice(DeviceId deviceId) {
+    AggregateStatistics device = devices.remove(deviceId);
+    if (device == null) {
+      return;
+    }
+    deviceRanking.remove(device);
+    if (devices.isEmpty()) {
+      // drop the rounding error accumulated by the running sums
+      resetTotals();
+    } else {
+      portCount -= device.ports();
+      currentConsumption -= device.currentConsumption();
+      powerDrawn -= device.powerDrawn();
+    }
+  }
+
+  private void resetTotals() {
+    portCount = 0;
+    currentConsumption = 0;
+    powerDrawn = 0;
+  }
+
+  private static List<AggregateStatistics> top(NavigableSet<AggregateStatistics> ranking, int count) {
+    ImmutableList.Builder<AggregateStatistics> builder = ImmutableList.builder();
+    Iterator<AggregateStatistics> it = ranking.iterator();
+    for (int i = 0; i < count && it.hasNext(); i++) {
+      builder.add(it.next());
+    }
+    return builder.build();
+  }
+
+  private static AggregateStatistics aggregate(DeviceId deviceId, PortNumber portNumber, int ports,
+      double currentConsumption, double powerDrawn) {
+    return DefaultAggregateStatistics.builder()
+        .setDeviceId(deviceId)
+        .setPortNumber(portNumber)
+        .setPorts(ports)
+        .setCurrentConsumption(currentConsumption)
+        .setPowerDrawn(powerDrawn)
+        .build();
+  }
+}
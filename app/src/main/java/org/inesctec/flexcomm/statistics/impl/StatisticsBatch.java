@@ -0,0 +1,53 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.onosproject.net.DeviceId;
+
+import com.google.common.collect.Maps;
+
+// the updates of one batch window reduced in arrival order to one full and one merged port update per device,
+// so a merge is never overwritten by a full update it arrived after
+final class StatisticsBatch {
+
+  private final Map<DeviceId, GlobalStatistics> globalStatistics = Maps.newHashMap();
+  private final Map<DeviceId, PortEnergyEntries> portStatistics = Maps.newHashMap();
+  private final Map<DeviceId, PortEnergyEntries> mergedPortStatistics = Maps.newHashMap();
+
+  void addGlobal(DeviceId deviceId, GlobalStatistics statistics) {
+    globalStatistics.put(deviceId, statistics);
+  }
+
+  // a full update replaces every port, including those merged before it
+  void addPorts(DeviceId deviceId, PortEnergyEntries entries) {
+    portStatistics.put(deviceId, entries);
+    mergedPortStatistics.remove(deviceId);
+  }
+
+  // a merge after a full update of the same batch is folded into it, later entries win for the same port
+  void mergePorts(DeviceId deviceId, PortEnergyEntries entries) {
+    PortEnergyEntries full = portStatistics.get(deviceId);
+    if (full != null) {
+      portStatistics.put(deviceId, full.append(entries));
+    } else {
+      mergedPortStatistics.merge(deviceId, entries, PortEnergyEntries::append);
+    }
+  }
+
+  Map<DeviceId, GlobalStatistics> globalStatistics() {
+    return globalStatistics;
+  }
+
+  Map<DeviceId, Collection<PortStatistics>> portStatistics() {
+    return Collections.unmodifiableMap(portStatistics);
+  }
+
+  // applied after the full updates, none of them touches a device merged here
+  Map<DeviceId, PortEnergyEntries> mergedPortStatistics() {
+    return mergedPortStatistics;
+  }
+}
@@ -0,0 +1,73 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+
+final class StatisticsDeadband {
+
+  static final StatisticsDeadband NONE = new StatisticsDeadband(0, 0, 0, 0);
+
+  private final double currentAbsolute;
+  private final double currentRelative;
+  private final double powerAbsolute;
+  private final double powerRelative;
+
+  StatisticsDeadband(double currentAbsolute, double currentRelative, double powerAbsolute, double powerRelative) {
+    this.currentAbsolute = currentAbsolute;
+    this.currentRelative = currentRelative;
+    this.powerAbsolute = powerAbsolute;
+    this.powerRelative = powerRelative;
+  }
+
+  boolean isEnabled() {
+    return currentAbsolute > 0 || currentRelative > 0 || powerAbsolute > 0 || powerRelative > 0;
+  }
+
+  boolean suppresses(GlobalStatisticsSample previous, GlobalStatistics statistics) {
+    if (previous == null || !isEnabled()) {
+      return false;
+    }
+    return withinCurrent(previous.currentConsumption(), statistics.currentConsumption())
+        && withinPower(previous.powerDrawn(), statistics.powerDrawn());
+  }
+
+  boolean suppresses(PortStatisticsSample previous, PortStatisticsSnapshot snapshot) {
+    if (previous == null || !isEnabled()) {
+      return false;
+    }
+
+    // a port that came or went is always a change
+    PortStatisticsSnapshot stored = previous.current();
+    if (!stored.hasSamePorts(snapshot)) {
+      return false;
+    }
+    for (int i = 0; i < snapshot.size(); i++) {
+      if (!withinCurrent(stored.currentConsumption(i), snapshot.currentConsumption(i))
+          || !withinPower(stored.powerDrawn(i), snapshot.powerDrawn(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean withinCurrent(double previous, double value) {
+    return within(previous, value, currentAbsolute, currentRelative);
+  }
+
+  private boolean withinPower(double previous, double value) {
+    return within(previous, value, powerAbsolute, powerRelative);
+  }
+
+  // an unchanged reading is always within, even at zero or on a field without a deadband of its own
+  private static boolean within(double previous, double value, double absolute, double relative) {
+    double change = Math.abs(value - previous);
+    return change == 0 || change < absolute || change < relative * Math.abs(previous);
+  }
+
+  @Override
+  public String toString() {
+    return "currentAbsolute: " + currentAbsolute + ", " +
+        "currentRelative: " + currentRelative + ", " +
+        "powerAbsolute: " + powerAbsolute + ", " +
+        "powerRelative: " + powerRelative;
+  }
+}
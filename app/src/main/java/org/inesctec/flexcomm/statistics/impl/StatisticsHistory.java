@@ -0,0 +1,200 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.inesctec.flexcomm.statistics.api.DefaultHistoricalStatistics;
+import org.inesctec.flexcomm.statistics.api.HistoricalStatistics;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+public final class StatisticsHistory {
+
+  private final Map<DeviceId, DeviceHistory> devices = Maps.newConcurrentMap();
+  private final Map<DeviceId, Integer> deviceCapacities = Maps.newConcurrentMap();
+
+  private volatile int capacity;
+
+  public StatisticsHistory(int capacity) {
+    this.capacity = Math.max(capacity, 0);
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public void setCapacity(int capacity) {
+    capacity = Math.max(capacity, 0);
+    if (capacity != this.capacity) {
+      this.capacity = capacity;
+      devices.clear();
+    }
+  }
+
+  // a negative capacity restores the global one, the device's history restarts when its capacity changes
+  public void setCapacity(DeviceId deviceId, int capacity) {
+    Integer newCapacity = capacity < 0 ? null : capacity;
+    Integer oldCapacity = newCapacity == null ? deviceCapacities.remove(deviceId)
+        : deviceCapacities.put(deviceId, newCapacity);
+    if (!Objects.equals(oldCapacity, newCapacity)) {
+      devices.remove(deviceId);
+    }
+  }
+
+  public void recordGlobal(DeviceId deviceId, long timestamp, GlobalStatisticsSample sample) {
+    DeviceHistory history = deviceHistory(deviceId);
+    if (history != null) {
+      history.recordGlobal(timestamp, sample.currentConsumption(), sample.powerDrawn());
+    }
+  }
+
+  public void recordPorts(DeviceId deviceId, long timestamp, PortStatisticsSnapshot snapshot) {
+    DeviceHistory history = deviceHistory(deviceId);
+    if (history != null) {
+      history.recordPorts(timestamp, snapshot);
+    }
+  }
+
+  public List<HistoricalStatistics> globalHistory(DeviceId deviceId, long startTime, long endTime) {
+    DeviceHistory history = devices.get(deviceId);
+    if (history == null) {
+      return Collections.emptyList();
+    }
+    return history.globalHistory(startTime, endTime);
+  }
+
+  public List<HistoricalStatistics> portHistory(DeviceId deviceId, PortNumber portNumber, long startTime,
+      long endTime) {
+    DeviceHistory history = devices.get(deviceId);
+    if (history == null) {
+      return Collections.emptyList();
+    }
+    return history.portHistory(portNumber.toLong(), startTime, endTime);
+  }
+
+  public void remove(DeviceId deviceId) {
+    devices.remove(deviceId);
+  }
+
+  public void clear() {
+    devices.clear();
+    deviceCapacities.clear();
+  }
+
+  private DeviceHistory deviceHistory(DeviceId deviceId) {
+    Integer deviceCapacity = deviceCapacities.get(deviceId);
+    int size = deviceCapacity != null ? deviceCapacity : capacity;
+    if (size == 0) {
+      return null;
+    }
+    return devices.computeIfAbsent(deviceId, k -> new DeviceHistory(size));
+  }
+
+  private static final class DeviceHistory {
+
+    private final int capacity;
+    private Ring global;
+    private long[] ports = new long[0];
+    private Ring[] portRings = new Ring[0];
+
+    private DeviceHistory(int capacity) {
+      this.capacity = capacity;
+    }
+
+    private synchronized void recordGlobal(long timestamp, double currentConsumption, double powerDrawn) {
+      if (global == null) {
+        global = new Ring(capacity);
+      }
+      global.add(timestamp, currentConsumption, powerDrawn);
+    }
+
+    private synchronized void recordPorts(long timestamp, PortStatisticsSnapshot snapshot) {
+      for (int i = 0; i < snapshot.size(); i++) {
+        portRing(snapshot.portNumber(i)).add(timestamp, snapshot.currentConsumption(i), snapshot.powerDrawn(i));
+      }
+    }
+
+    private synchronized List<HistoricalStatistics> globalHistory(long startTime, long endTime) {
+      if (global == null) {
+        return Collections.emptyList();
+      }
+      return global.range(startTime, endTime);
+    }
+
+    private synchronized List<HistoricalStatistics> portHistory(long portNumber, long startTime, long endTime) {
+      int index = Arrays.binarySearch(ports, portNumber);
+      if (index < 0) {
+        return Collections.emptyList();
+      }
+      return portRings[index].range(startTime, endTime);
+    }
+
+    private Ring portRing(long portNumber) {
+      int index = Arrays.binarySearch(ports, portNumber);
+      if (index >= 0) {
+        return portRings[index];
+      }
+
+      // new port: only happens while a device's port set grows
+      int insertAt = -index - 1;
+      long[] newPorts = new long[ports.length + 1];
+      Ring[] newRings = new Ring[ports.length + 1];
+      System.arraycopy(ports, 0, newPorts, 0, insertAt);
+      System.arraycopy(portRings, 0, newRings, 0, insertAt);
+      System.arraycopy(ports, insertAt, newPorts, insertAt + 1, ports.length - insertAt);
+      System.arraycopy(portRings, insertAt, newRings, insertAt + 1, ports.length - insertAt);
+      newPorts[insertAt] = portNumber;
+      newRings[insertAt] = new Ring(capacity);
+      ports = newPorts;
+      portRings = newRings;
+      return newRings[insertAt];
+    }
+  }
+
+  private static final class Ring {
+
+    private final long[] timestamps;
+    private final double[] currentConsumption;
+    private final double[] powerDrawn;
+    private int next;
+    private int size;
+
+    private Ring(int capacity) {
+      timestamps = new long[capacity];
+      currentConsumption = new double[capacity];
+      powerDrawn = new double[capacity];
+    }
+
+    private void add(long timestamp, double current, double power) {
+      timestamps[next] = timestamp;
+      currentConsumption[next] = current;
+      powerDrawn[next] = power;
+      next = (next + 1) % timestamps.length;
+      if (size < timestamps.length) {
+        size++;
+      }
+    }
+
+    private List<HistoricalStatistics> range(long startTime, long endTime) {
+      ImmutableList.Builder<HistoricalStatistics> builder = ImmutableList.builder();
+      int first = (next - size + timestamps.length) % timestamps.length;
+      for (int i = 0; i < size; i++) {
+        int index = (first + i) % timestamps.length;
+        if (timestamps[index] >= startTime && timestamps[index] <= endTime) {
+          builder.add(DefaultHistoricalStatistics.builder()
+              .setTimestamp(timestamps[index])
+              .setCurrentConsumption(currentConsumption[index])
+              .setPowerDrawn(powerDrawn[index])
+              .build());
+        }
+      }
+      return builder.build();
+    }
+  }
+}
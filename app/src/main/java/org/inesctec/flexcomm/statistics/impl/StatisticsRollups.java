@@ -0,0 +1,227 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.inesctec.flexcomm.statistics.api.DefaultStatisticsRollup;
+import org.inesctec.flexcomm.statistics.api.RollupResolution;
+import org.inesctec.flexcomm.statistics.api.StatisticsRollup;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+public final class StatisticsRollups {
+
+  private static final RollupResolution[] RESOLUTIONS = RollupResolution.values();
+
+  private final Map<DeviceId, DeviceRollups> devices = Maps.newConcurrentMap();
+
+  private volatile boolean portRollups;
+
+  public StatisticsRollups(boolean portRollups) {
+    this.portRollups = portRollups;
+  }
+
+  public void setPortRollups(boolean portRollups) {
+    if (portRollups != this.portRollups) {
+      this.portRollups = portRollups;
+      devices.values().forEach(DeviceRollups::clearPorts);
+    }
+  }
+
+  public void addGlobal(DeviceId deviceId, long timestamp, double currentConsumption, double powerDrawn) {
+    devices.computeIfAbsent(deviceId, k -> new DeviceRollups())
+        .addGlobal(timestamp, currentConsumption, powerDrawn);
+  }
+
+  public void addPorts(DeviceId deviceId, long timestamp, PortStatisticsSnapshot snapshot) {
+    if (!portRollups) {
+      return;
+    }
+    devices.computeIfAbsent(deviceId, k -> new DeviceRollups()).addPorts(timestamp, snapshot);
+  }
+
+  public List<StatisticsRollup> globalRollup(DeviceId deviceId, RollupResolution resolution, long now) {
+    DeviceRollups rollups = devices.get(deviceId);
+    if (rollups == null) {
+      return Collections.emptyList();
+    }
+    return rollups.globalRollup(resolution, now);
+  }
+
+  public List<StatisticsRollup> portRollup(DeviceId deviceId, PortNumber portNumber, RollupResolution resolution,
+      long now) {
+    DeviceRollups rollups = devices.get(deviceId);
+    if (rollups == null) {
+      return Collections.emptyList();
+    }
+    return rollups.portRollup(portNumber.toLong(), resolution, now);
+  }
+
+  public void remove(DeviceId deviceId) {
+    devices.remove(deviceId);
+  }
+
+  public void clear() {
+    devices.clear();
+  }
+
+  private static final class DeviceRollups {
+
+    private Series[] global;
+    private long[] ports = new long[0];
+    private Series[][] portSeries = new Series[0][];
+
+    private synchronized void addGlobal(long timestamp, double currentConsumption, double powerDrawn) {
+      if (global == null) {
+        global = newSeries();
+      }
+      for (Series series : global) {
+        series.add(timestamp, currentConsumption, powerDrawn);
+      }
+    }
+
+    private synchronized void addPorts(long timestamp, PortStatisticsSnapshot snapshot) {
+      for (int i = 0; i < snapshot.size(); i++) {
+        for (Series series : portSeries(snapshot.portNumber(i))) {
+          series.add(timestamp, snapshot.currentConsumption(i), snapshot.powerDrawn(i));
+        }
+      }
+    }
+
+    private synchronized List<StatisticsRollup> globalRollup(RollupResolution resolution, long now) {
+      if (global == null) {
+        return Collections.emptyList();
+      }
+      return global[resolution.ordinal()].rollup(now);
+    }
+
+    private synchronized List<StatisticsRollup> portRollup(long portNumber, RollupResolution resolution, long now) {
+      int index = Arrays.binarySearch(ports, portNumber);
+      if (index < 0) {
+        return Collections.emptyList();
+      }
+      return portSeries[index][resolution.ordinal()].rollup(now);
+    }
+
+    private synchronized void clearPorts() {
+      ports = new long[0];
+      portSeries = new Series[0][];
+    }
+
+    private Series[] portSeries(long portNumber) {
+      int index = Arrays.binarySearch(ports, portNumber);
+      if (index >= 0) {
+        return portSeries[index];
+      }
+
+      int insertAt = -index - 1;
+      long[] newPorts = new long[ports.length + 1];
+      Series[][] newSeries = new Series[ports.length + 1][];
+      System.arraycopy(ports, 0, newPorts, 0, insertAt);
+      System.arraycopy(portSeries, 0, newSeries, 0, insertAt);
+      System.arraycopy(ports, insertAt, newPorts, insertAt + 1, ports.length - insertAt);
+      System.arraycopy(portSeries, insertAt, newSeries, insertAt + 1, ports.length - insertAt);
+      newPorts[insertAt] = portNumber;
+      newSeries[insertAt] = newSeries();
+      ports = newPorts;
+      portSeries = newSeries;
+      return newSeries[insertAt];
+    }
+
+    private static Series[] newSeries() {
+      Series[] series = new Series[RESOLUTIONS.length];
+      for (RollupResolution resolution : RESOLUTIONS) {
+        series[resolution.ordinal()] = new Series(resolution);
+      }
+      return series;
+    }
+  }
+
+  // one bucket per interval, reused once the ring wraps around
+  private static final class Series {
+
+    private final long duration;
+    private final long[] startTimes;
+    private final long[] counts;
+    private final double[] currentSum;
+    private final double[] currentMin;
+    private final double[] currentMax;
+    private final double[] currentLast;
+    private final double[] powerSum;
+    private final double[] powerMin;
+    private final double[] powerMax;
+    private final double[] powerLast;
+
+    private Series(RollupResolution resolution) {
+      int buckets = resolution.buckets();
+      duration = resolution.durationMillis();
+      startTimes = new long[buckets];
+      Arrays.fill(startTimes, Long.MIN_VALUE);
+      counts = new long[buckets];
+      currentSum = new double[buckets];
+      currentMin = new double[buckets];
+      currentMax = new double[buckets];
+      currentLast = new double[buckets];
+      powerSum = new double[buckets];
+      powerMin = new double[buckets];
+      powerMax = new double[buckets];
+      powerLast = new double[buckets];
+    }
+
+    private int index(long startTime) {
+      return (int) Math.floorMod(startTime / duration, (long) startTimes.length);
+    }
+
+    private void add(long timestamp, double current, double power) {
+      long startTime = timestamp - Math.floorMod(timestamp, duration);
+      int i = index(startTime);
+      if (startTimes[i] != startTime) {
+        // a late sample for a bucket that was already reused
+        if (startTimes[i] > startTime) {
+          return;
+        }
+        startTimes[i] = startTime;
+        counts[i] = 0;
+        currentSum[i] = 0;
+        currentMin[i] = current;
+        currentMax[i] = current;
+        powerSum[i] = 0;
+        powerMin[i] = power;
+        powerMax[i] = power;
+      }
+
+      counts[i]++;
+      currentSum[i] += current;
+      currentMin[i] = Math.min(currentMin[i], current);
+      currentMax[i] = Math.max(currentMax[i], current);
+      currentLast[i] = current;
+      powerSum[i] += power;
+      powerMin[i] = Math.min(powerMin[i], power);
+      powerMax[i] = Math.max(powerMax[i], power);
+      powerLast[i] = power;
+    }
+
+    private List<StatisticsRollup> rollup(long now) {
+      ImmutableList.Builder<StatisticsRollup> builder = ImmutableList.builder();
+      long latest = now - Math.floorMod(now, duration);
+      for (int k = startTimes.length - 1; k >= 0; k--) {
+        long startTime = latest - k * duration;
+        int i = index(startTime);
+        if (startTimes[i] == startTime) {
+          builder.add(DefaultStatisticsRollup.builder()
+              .setStartTime(startTime)
+              .setCount(counts[i])
+              .setCurrentConsumption(currentSum[i], currentMin[i], currentMax[i], currentLast[i])
+              .setPowerDrawn(powerSum[i], powerMin[i], powerMax[i], powerLast[i])
+              .build());
+        }
+      }
+      return builder.build();
+    }
+  }
+}
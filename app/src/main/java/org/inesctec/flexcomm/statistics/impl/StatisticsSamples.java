@@ -0,0 +1,45 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.onosproject.net.DeviceId;
+
+import com.google.common.collect.Maps;
+
+// the samples of several devices, also the reply of a master to a bulk request so one round trip serves both kinds
+final class StatisticsSamples {
+
+  private final HashMap<DeviceId, GlobalStatisticsSample> globalSamples;
+  private final HashMap<DeviceId, PortStatisticsSample> portSamples;
+
+  StatisticsSamples(int devices) {
+    globalSamples = Maps.newHashMapWithExpectedSize(devices);
+    portSamples = Maps.newHashMapWithExpectedSize(devices);
+  }
+
+  void add(DeviceId deviceId, GlobalStatisticsSample globalSample, PortStatisticsSample portSample) {
+    if (globalSample != null) {
+      globalSamples.put(deviceId, globalSample);
+    }
+    if (portSample != null) {
+      portSamples.put(deviceId, portSample);
+    }
+  }
+
+  GlobalStatisticsSample globalSample(DeviceId deviceId) {
+    return globalSamples.get(deviceId);
+  }
+
+  PortStatisticsSample portSample(DeviceId deviceId) {
+    return portSamples.get(deviceId);
+  }
+
+  Map<DeviceId, GlobalStatisticsSample> globalSamples() {
+    return globalSamples;
+  }
+
+  Map<DeviceId, PortStatisticsSample> portSamples() {
+    return portSamples;
+  }
+}
@@ -0,0 +1,57 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.util.Set;
+
+import org.onosproject.net.Annotations;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+final class StatisticsSerializers {
+
+  static final int HAS_DEVICE_ID = 1;
+  static final int HAS_PORT_NAME = 1 << 1;
+  static final int HAS_ANNOTATIONS = 1 << 2;
+  static final int HAS_PORT_NUMBER = 1 << 3;
+
+  private StatisticsSerializers() {
+  }
+
+  static int flags(DeviceId deviceId, PortNumber portNumber, Annotations annotations) {
+    int flags = 0;
+    if (deviceId != null) {
+      flags |= HAS_DEVICE_ID;
+    }
+    if (portNumber != null) {
+      flags |= HAS_PORT_NUMBER;
+      if (portNumber.hasName()) {
+        flags |= HAS_PORT_NAME;
+      }
+    }
+    if (annotations != null && !annotations.keys().isEmpty()) {
+      flags |= HAS_ANNOTATIONS;
+    }
+    return flags;
+  }
+
+  static void writeAnnotations(Output output, Annotations annotations) {
+    Set<String> keys = annotations.keys();
+    output.writeInt(keys.size(), true);
+    for (String key : keys) {
+      output.writeString(key);
+      output.writeString(annotations.value(key));
+    }
+  }
+
+  static Annotations readAnnotations(Input input) {
+    int size = input.readInt(true);
+    DefaultAnnotations.Builder builder = DefaultAnnotations.builder();
+    for (int i = 0; i < size; i++) {
+      builder.set(input.readString(), input.readString());
+    }
+    return builder.build();
+  }
+}
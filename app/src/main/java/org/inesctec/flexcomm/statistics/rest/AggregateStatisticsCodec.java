@@ -0,0 +1,32 @@
+package org.inesctec.flexcomm.statistics.rest;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.inesctec.flexcomm.statistics.api.AggregateStatistics;
+import org.onosproject.codec.CodecContext;
+import org.onosproject.codec.JsonCodec;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public final class AggregateStatisticsCodec extends JsonCodec<AggregateStatistics> {
+
+  @Override
+  public ObjectNode encode(AggregateStatistics entry, CodecContext context) {
+    checkNotNull(entry, "Aggregate statistics cannot be null");
+
+    final ObjectNode result = context.mapper().createObjectNode();
+    if (entry.deviceId() != null) {
+      result.put("device", entry.deviceId().toString());
+    }
+    if (entry.portNumber() != null) {
+      result.put("port", entry.portNumber().toString());
+    } else {
+      result.put("ports", entry.ports());
+    }
+    result.put("currentConsumption", entry.currentConsumption())
+        .put("powerDrawn", entry.powerDrawn());
+
+    return result;
+  }
+
+}
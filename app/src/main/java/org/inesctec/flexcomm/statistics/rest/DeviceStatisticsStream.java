@@ -0,0 +1,56 @@
+package org.inesctec.flexcomm.statistics.rest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.onosproject.net.DeviceId;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// writes one device block at a time instead of building the whole tree before the first byte
+final class DeviceStatisticsStream implements StreamingOutput {
+
+  private final JsonFactory factory;
+  private final Long version;
+  private final Iterable<DeviceId> deviceIds;
+  private final String statisticsField;
+  private final DeviceStatisticsWriter writer;
+
+  DeviceStatisticsStream(JsonFactory factory, Long version, Iterable<DeviceId> deviceIds, String statisticsField,
+      DeviceStatisticsWriter writer) {
+    this.factory = factory;
+    this.version = version;
+    this.deviceIds = deviceIds;
+    this.statisticsField = statisticsField;
+    this.writer = writer;
+  }
+
+  @Override
+  public void write(OutputStream output) throws IOException {
+    try (JsonGenerator generator = factory.createGenerator(output)) {
+      generator.writeStartObject();
+      if (version != null) {
+        generator.writeNumberField("version", version);
+      }
+      generator.writeArrayFieldStart("statistics");
+      for (final DeviceId deviceId : deviceIds) {
+        generator.writeStartObject();
+        generator.writeStringField("device", deviceId.toString());
+        generator.writeArrayFieldStart(statisticsField);
+        writer.write(generator, deviceId);
+        generator.writeEndArray();
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+  }
+
+  @FunctionalInterface
+  interface DeviceStatisticsWriter {
+    void write(JsonGenerator generator, DeviceId deviceId) throws IOException;
+  }
+}
@@ -2,8 +2,11 @@ package org.inesctec.flexcomm.statistics.rest;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import org.inesctec.flexcomm.statistics.api.AggregateStatistics;
 import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.PollingStatistics;
 import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.inesctec.flexcomm.statistics.api.StatisticsRollup;
 import org.onosproject.codec.CodecService;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -24,6 +27,9 @@ public class FlexcommStatisticsCodecRegistrator {
   public void activate() {
     codecService.registerCodec(GlobalStatistics.class, new GlobalStatisticsCodec());
     codecService.registerCodec(PortStatistics.class, new PortStatisticsCodec());
+    codecService.registerCodec(StatisticsRollup.class, new StatisticsRollupCodec());
+    codecService.registerCodec(PollingStatistics.class, new PollingStatisticsCodec());
+    codecService.registerCodec(AggregateStatistics.class, new AggregateStatisticsCodec());
 
     log.info("Started");
   }
@@ -32,6 +38,9 @@ public class FlexcommStatisticsCodecRegistrator {
   public void deactivate() {
     codecService.unregisterCodec(GlobalStatistics.class);
     codecService.unregisterCodec(PortStatistics.class);
+    codecService.unregisterCodec(StatisticsRollup.class);
+    codecService.unregisterCodec(PollingStatistics.class);
+    codecService.unregisterCodec(AggregateStatistics.class);
 
     log.info("Stopped");
   }
@@ -0,0 +1,339 @@
+package org.inesctec.flexcomm.statistics.rest;
+
+import static org.onlab.util.Tools.groupedThreads;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent;
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsListener;
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsService;
+import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.onlab.osgi.DefaultServiceDirectory;
+import org.onosproject.codec.CodecContext;
+import org.onosproject.codec.CodecService;
+import org.onosproject.codec.JsonCodec;
+import org.onosproject.net.DeviceId;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.slf4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+@Component(immediate = true, service = FlexcommStatisticsEventBroadcaster.class)
+public class FlexcommStatisticsEventBroadcaster {
+
+  private static final int SEND_THREADS = 2;
+
+  // a subscriber with more distinct device updates than this waiting is too slow and is dropped
+  private static final int MAX_PENDING_UPDATES = 4096;
+
+  // so is one whose client has not completed a send for this long
+  static final long SEND_TIMEOUT_MILLIS = 2000;
+
+  private final Logger log = getLogger(getClass());
+
+  @Reference(cardinality = ReferenceCardinality.MANDATORY)
+  protected FlexcommStatisticsService statisticsService;
+
+  @Reference(cardinality = ReferenceCardinality.MANDATORY)
+  protected CodecService codecService;
+
+  private final FlexcommStatisticsListener listener = new InternalStatisticsListener();
+
+  private final CodecContext context = new InternalCodecContext();
+
+  private final Set<Subscriber> subscribers = Sets.newConcurrentHashSet();
+
+  // read through a field so tests can move time
+  LongSupplier nanoClock = System::nanoTime;
+
+  private ExecutorService sendExecutor;
+  private ScheduledExecutorService watchdog;
+
+  @Activate
+  public void activate() {
+    sendExecutor = Executors.newFixedThreadPool(SEND_THREADS, groupedThreads("onos/flexcomm/stats", "sse-%d", log));
+    watchdog = Executors.newSingleThreadScheduledExecutor(groupedThreads("onos/flexcomm/stats", "sse-watchdog", log));
+    watchdog.scheduleWithFixedDelay(this::evictStalled, SEND_TIMEOUT_MILLIS / 2, SEND_TIMEOUT_MILLIS / 2,
+        TimeUnit.MILLISECONDS);
+    statisticsService.addListener(listener);
+
+    log.info("Started");
+  }
+
+  @Deactivate
+  public void deactivate() {
+    statisticsService.removeListener(listener);
+    watchdog.shutdownNow();
+    subscribers.forEach(Subscriber::close);
+    subscribers.clear();
+    sendExecutor.shutdownNow();
+
+    log.info("Stopped");
+  }
+
+  // an empty device set follows every device
+  public void subscribe(SseEventSink sink, Sse sse, Set<DeviceId> devices, Set<FlexcommStatisticsEvent.Type> types) {
+    subscribers.add(new Subscriber(sink, sse, devices, types));
+  }
+
+  // drops subscribers whose client went away or has not completed a send within SEND_TIMEOUT_MILLIS
+  void evictStalled() {
+    long now = nanoClock.getAsLong();
+    for (Subscriber subscriber : subscribers) {
+      if (subscriber.isClosed() || subscriber.isStalled(now)) {
+        log.info("Disconnecting stalled statistics event subscriber");
+        disconnect(subscriber);
+      }
+    }
+  }
+
+  private void disconnect(Subscriber subscriber) {
+    if (subscribers.remove(subscriber)) {
+      subscriber.close();
+    }
+  }
+
+  private static final class Update {
+
+    private final FlexcommStatisticsEvent.Type type;
+    private final DeviceId deviceId;
+
+    private Update(FlexcommStatisticsEvent.Type type, DeviceId deviceId) {
+      this.type = type;
+      this.deviceId = deviceId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Update)) {
+        return false;
+      }
+      Update that = (Update) obj;
+      return type == that.type && deviceId.equals(that.deviceId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, deviceId);
+    }
+  }
+
+  // sends one event at a time from the shared pool and chains the next one on the send's completion, so no thread
+  // waits on a client; updates for the same device and type coalesce while waiting
+  private final class Subscriber {
+
+    private final SseEventSink sink;
+    private final Sse sse;
+    private final Set<DeviceId> devices;
+    private final Set<FlexcommStatisticsEvent.Type> types;
+
+    private final Set<Update> pending = Sets.newLinkedHashSet();
+    private boolean sending;
+    private volatile boolean inFlight;
+    private volatile long sendStartNanos;
+
+    private Subscriber(SseEventSink sink, Sse sse, Set<DeviceId> devices, Set<FlexcommStatisticsEvent.Type> types) {
+      this.sink = sink;
+      this.sse = sse;
+      this.devices = ImmutableSet.copyOf(devices);
+      this.types = ImmutableSet.copyOf(types);
+    }
+
+    private boolean offer(FlexcommStatisticsEvent.Type type, DeviceId deviceId) {
+      if (!types.contains(type) || (!devices.isEmpty() && !devices.contains(deviceId))) {
+        return true;
+      }
+
+      synchronized (this) {
+        pending.add(new Update(type, deviceId));
+        if (pending.size() > MAX_PENDING_UPDATES) {
+          return false;
+        }
+        if (sending) {
+          return true;
+        }
+        sending = true;
+      }
+      return schedule();
+    }
+
+    private boolean isClosed() {
+      return sink.isClosed();
+    }
+
+    private boolean isStalled(long now) {
+      return inFlight && now - sendStartNanos > TimeUnit.MILLISECONDS.toNanos(SEND_TIMEOUT_MILLIS);
+    }
+
+    private boolean schedule() {
+      try {
+        sendExecutor.execute(this::sendNext);
+        return true;
+      } catch (RejectedExecutionException e) {
+        return false;
+      }
+    }
+
+    private void sendNext() {
+      if (sink.isClosed()) {
+        disconnect(this);
+        return;
+      }
+
+      OutboundSseEvent event = null;
+      while (event == null) {
+        Update update;
+        synchronized (this) {
+          Iterator<Update> it = pending.iterator();
+          if (!it.hasNext()) {
+            sending = false;
+            return;
+          }
+          update = it.next();
+          it.remove();
+        }
+        try {
+          event = toEvent(update);
+        } catch (Exception e) {
+          log.warn("Unable to encode {} for {}", update.type, update.deviceId, e);
+        }
+      }
+
+      sendStartNanos = nanoClock.getAsLong();
+      inFlight = true;
+      CompletionStage<?> sent;
+      try {
+        sent = sink.send(event);
+      } catch (Exception e) {
+        log.debug("Disconnecting statistics event subscriber", e);
+        disconnect(this);
+        return;
+      }
+      sent.whenComplete((result, error) -> {
+        inFlight = false;
+        if (error != null || !schedule()) {
+          log.debug("Disconnecting statistics event subscriber", error);
+          disconnect(this);
+        }
+      });
+    }
+
+    // the payload is read when the event is sent, so a coalesced update carries the latest values
+    private OutboundSseEvent toEvent(Update update) {
+      ObjectNode data = context.mapper().createObjectNode();
+      data.put("device", update.deviceId.toString());
+      if (update.type == FlexcommStatisticsEvent.Type.GLOBAL_STATS_UPDATED) {
+        GlobalStatistics stats = statisticsService.getGlobalStatistics(update.deviceId);
+        if (stats == null) {
+          return null;
+        }
+        data.putArray("global").add(context.codec(GlobalStatistics.class).encode(stats, context));
+      } else {
+        data.set("ports", context.codec(PortStatistics.class)
+            .encode(statisticsService.getPortStatistics(update.deviceId), context));
+      }
+
+      OutboundSseEvent.Builder builder = sse.newEventBuilder()
+          .name(update.type.name())
+          .mediaType(MediaType.APPLICATION_JSON_TYPE)
+          .data(String.class, data.toString());
+      long version = statisticsService.getStatisticsVersion(update.deviceId);
+      if (version != FlexcommStatisticsService.UNKNOWN_VERSION) {
+        builder.id(Long.toString(version));
+      }
+      return builder.build();
+    }
+
+    private void close() {
+      try {
+        sink.close();
+      } catch (Exception e) {
+        log.debug("Unable to close statistics event stream", e);
+      }
+    }
+  }
+
+  private class InternalStatisticsListener implements FlexcommStatisticsListener {
+
+    @Override
+    public boolean isRelevant(FlexcommStatisticsEvent event) {
+      return !subscribers.isEmpty();
+    }
+
+    @Override
+    public void event(FlexcommStatisticsEvent event) {
+      switch (event.type()) {
+        case GLOBAL_STATS_UPDATED:
+        case PORT_STATS_UPDATED:
+          offer(event.type(), event.subject());
+          break;
+        case STATS_BATCH_UPDATED:
+          // a batch does not say which part of a device changed
+          for (DeviceId deviceId : event.devices()) {
+            offer(FlexcommStatisticsEvent.Type.GLOBAL_STATS_UPDATED, deviceId);
+            offer(FlexcommStatisticsEvent.Type.PORT_STATS_UPDATED, deviceId);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    private void offer(FlexcommStatisticsEvent.Type type, DeviceId deviceId) {
+      for (Subscriber subscriber : subscribers) {
+        if (subscriber.isClosed()) {
+          disconnect(subscriber);
+        } else if (!subscriber.offer(type, deviceId)) {
+          log.info("Disconnecting slow statistics event subscriber");
+          disconnect(subscriber);
+        }
+      }
+    }
+  }
+
+  private final class InternalCodecContext implements CodecContext {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Override
+    public ObjectMapper mapper() {
+      return mapper;
+    }
+
+    @Override
+    public <T> JsonCodec<T> codec(Class<T> entityClass) {
+      return codecService.getCodec(entityClass);
+    }
+
+    @Override
+    public <T> T getService(Class<T> serviceClass) {
+      return DefaultServiceDirectory.getService(serviceClass);
+    }
+  }
+}
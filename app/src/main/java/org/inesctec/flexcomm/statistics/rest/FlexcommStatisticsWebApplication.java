@@ -16,6 +16,7 @@
 
 package org.inesctec.flexcomm.statistics.rest;
 
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.onlab.rest.AbstractWebApplication;
 
 import java.util.Set;
@@ -23,6 +24,6 @@ import java.util.Set;
 public class FlexcommStatisticsWebApplication extends AbstractWebApplication {
   @Override
   public Set<Class<?>> getClasses() {
-    return getClasses(FlexcommStatisticsWebResource.class);
+    return getClasses(FlexcommStatisticsWebResource.class, SseFeature.class);
   }
 }
@@ -15,55 +15,88 @@
  */
 package org.inesctec.flexcomm.statistics.rest;
 
+import static org.onlab.util.Tools.readTreeFromStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
+import org.inesctec.flexcomm.statistics.api.AggregateStatistics;
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent;
 import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsService;
 import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.PollingStatistics;
 import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.inesctec.flexcomm.statistics.api.RollupResolution;
+import org.inesctec.flexcomm.statistics.api.StatisticsRollup;
+import org.inesctec.flexcomm.statistics.rest.DeviceStatisticsStream.DeviceStatisticsWriter;
+import org.onosproject.cluster.ClusterService;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.PortNumber;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.rest.AbstractWebResource;
 
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 
 @Path("")
 public class FlexcommStatisticsWebResource extends AbstractWebResource {
 
+  @Context
+  private Request request;
+
   @GET
   @Path("global")
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getGlobalStatistics() {
+  public Response getGlobalStatistics(@QueryParam("since") Long since) {
     final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
-    final Iterable<Device> devices = get(DeviceService.class).getDevices();
-    final ObjectNode root = mapper().createObjectNode();
-    final ArrayNode rootArrayNode = root.putArray("statistics");
-    for (final Device device : devices) {
-      final ObjectNode deviceStatsNode = mapper().createObjectNode();
-      deviceStatsNode.put("device", device.id().toString());
-      final ArrayNode statisticsNode = deviceStatsNode.putArray("global");
-      final GlobalStatistics globalStatsEntry = service.getGlobalStatistics(device.id());
+    return streamVersionedDevices(since, "global", (generator, deviceId) -> {
+      final GlobalStatistics globalStatsEntry = service.getGlobalStatistics(deviceId);
       if (globalStatsEntry != null) {
-        statisticsNode.add(codec(GlobalStatistics.class).encode(globalStatsEntry, this));
+        generator.writeTree(codec(GlobalStatistics.class).encode(globalStatsEntry, this));
       }
-      rootArrayNode.add(deviceStatsNode);
-    }
-
-    return ok(root).build();
+    });
   }
 
+
   @GET
   @Path("global/{deviceId}")
   @Produces(MediaType.APPLICATION_JSON)
   public Response getGlobalStatisticsByDeviceId(@PathParam("deviceId") String deviceId) {
     final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final EntityTag tag = versionTag(ImmutableList.of(DeviceId.deviceId(deviceId)), null);
+    final Response notModified = notModified(tag);
+    if (notModified != null) {
+      return notModified;
+    }
     final GlobalStatistics globalStatsEntry = service.getGlobalStatistics(DeviceId.deviceId(deviceId));
     final ObjectNode root = mapper().createObjectNode();
     final ArrayNode rootArrayNode = root.putArray("statistics");
@@ -75,36 +108,33 @@ public class FlexcommStatisticsWebResource extends AbstractWebResource {
     }
     rootArrayNode.add(deviceStatsNode);
 
-    return ok(root).build();
+    return ok(root).tag(tag).build();
   }
 
   @GET
   @Path("delta/global")
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getGlobalDeltaStatistics() {
+  public Response getGlobalDeltaStatistics(@QueryParam("since") Long since) {
     final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
-    final Iterable<Device> devices = get(DeviceService.class).getDevices();
-    final ObjectNode root = mapper().createObjectNode();
-    final ArrayNode rootArrayNode = root.putArray("statistics");
-    for (final Device device : devices) {
-      final ObjectNode deviceStatsNode = mapper().createObjectNode();
-      deviceStatsNode.put("device", device.id().toString());
-      final ArrayNode statisticsNode = deviceStatsNode.putArray("global");
-      final GlobalStatistics globalStatsEntry = service.getGlobalDeltaStatistics(device.id());
+    return streamVersionedDevices(since, "global", (generator, deviceId) -> {
+      final GlobalStatistics globalStatsEntry = service.getGlobalDeltaStatistics(deviceId);
       if (globalStatsEntry != null) {
-        statisticsNode.add(codec(GlobalStatistics.class).encode(globalStatsEntry, this));
+        generator.writeTree(codec(GlobalStatistics.class).encode(globalStatsEntry, this));
       }
-      rootArrayNode.add(deviceStatsNode);
-    }
-
-    return ok(root).build();
+    });
   }
 
+
   @GET
   @Path("delta/global/{deviceId}")
   @Produces(MediaType.APPLICATION_JSON)
   public Response getGlobalDeltaStatisticsByDeviceId(@PathParam("deviceId") String deviceId) {
     final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final EntityTag tag = versionTag(ImmutableList.of(DeviceId.deviceId(deviceId)), null);
+    final Response notModified = notModified(tag);
+    if (notModified != null) {
+      return notModified;
+    }
     final GlobalStatistics globalStatsEntry = service.getGlobalDeltaStatistics(DeviceId.deviceId(deviceId));
     final ObjectNode root = mapper().createObjectNode();
     final ArrayNode rootArrayNode = root.putArray("statistics");
@@ -116,38 +146,35 @@ public class FlexcommStatisticsWebResource extends AbstractWebResource {
     }
     rootArrayNode.add(deviceStatsNode);
 
-    return ok(root).build();
+    return ok(root).tag(tag).build();
   }
 
   @GET
   @Path("ports")
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getPortStatistics() {
+  public Response getPortStatistics(@QueryParam("since") Long since) {
     final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
-    final Iterable<Device> devices = get(DeviceService.class).getDevices();
-    final ObjectNode root = mapper().createObjectNode();
-    final ArrayNode rootArrayNode = root.putArray("statistics");
-    for (final Device device : devices) {
-      final ObjectNode deviceStatsNode = mapper().createObjectNode();
-      deviceStatsNode.put("device", device.id().toString());
-      final ArrayNode statisticsNode = deviceStatsNode.putArray("ports");
-      final Iterable<PortStatistics> portStatsEntries = service.getPortStatistics(device.id());
+    return streamVersionedDevices(since, "ports", (generator, deviceId) -> {
+      final Iterable<PortStatistics> portStatsEntries = service.getPortStatistics(deviceId);
       if (portStatsEntries != null) {
         for (final PortStatistics entry : portStatsEntries) {
-          statisticsNode.add(codec(PortStatistics.class).encode(entry, this));
+          generator.writeTree(codec(PortStatistics.class).encode(entry, this));
         }
       }
-      rootArrayNode.add(deviceStatsNode);
-    }
-
-    return ok(root).build();
+    });
   }
 
+
   @GET
   @Path("ports/{deviceId}")
   @Produces(MediaType.APPLICATION_JSON)
   public Response getPortsStatisticsByDeviceId(@PathParam("deviceId") String deviceId) {
     final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final EntityTag tag = versionTag(ImmutableList.of(DeviceId.deviceId(deviceId)), null);
+    final Response notModified = notModified(tag);
+    if (notModified != null) {
+      return notModified;
+    }
     final Iterable<PortStatistics> portStatsEntries = service.getPortStatistics(DeviceId.deviceId(deviceId));
     final ObjectNode root = mapper().createObjectNode();
     final ArrayNode rootArrayNode = root.putArray("statistics");
@@ -161,7 +188,7 @@ public class FlexcommStatisticsWebResource extends AbstractWebResource {
     }
     rootArrayNode.add(deviceStatsNode);
 
-    return ok(root).build();
+    return ok(root).tag(tag).build();
   }
 
   @GET
@@ -170,6 +197,11 @@ public class FlexcommStatisticsWebResource extends AbstractWebResource {
   public Response getPortsStatisticsByDeviceIdAndPort(@PathParam("deviceId") String deviceId,
       @PathParam("port") String port) {
     final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final EntityTag tag = versionTag(ImmutableList.of(DeviceId.deviceId(deviceId)), null);
+    final Response notModified = notModified(tag);
+    if (notModified != null) {
+      return notModified;
+    }
     final PortNumber portNumber = PortNumber.portNumber(port);
     final PortStatistics portStatsEntry = service.getStatisticsForPort(DeviceId.deviceId(deviceId), portNumber);
     final ObjectNode root = mapper().createObjectNode();
@@ -182,38 +214,35 @@ public class FlexcommStatisticsWebResource extends AbstractWebResource {
     }
     rootArrayNode.add(deviceStatsNode);
 
-    return ok(root).build();
+    return ok(root).tag(tag).build();
   }
 
   @GET
   @Path("delta/ports")
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getPortsDeltaStatistics() {
+  public Response getPortsDeltaStatistics(@QueryParam("since") Long since) {
     final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
-    final Iterable<Device> devices = get(DeviceService.class).getDevices();
-    final ObjectNode root = mapper().createObjectNode();
-    final ArrayNode rootArrayNode = root.putArray("statistics");
-    for (final Device device : devices) {
-      final ObjectNode deviceStatsNode = mapper().createObjectNode();
-      deviceStatsNode.put("device", device.id().toString());
-      final ArrayNode statisticsNode = deviceStatsNode.putArray("ports");
-      final Iterable<PortStatistics> portStatsEntries = service.getPortDeltaStatistics(device.id());
+    return streamVersionedDevices(since, "ports", (generator, deviceId) -> {
+      final Iterable<PortStatistics> portStatsEntries = service.getPortDeltaStatistics(deviceId);
       if (portStatsEntries != null) {
         for (final PortStatistics entry : portStatsEntries) {
-          statisticsNode.add(codec(PortStatistics.class).encode(entry, this));
+          generator.writeTree(codec(PortStatistics.class).encode(entry, this));
         }
       }
-      rootArrayNode.add(deviceStatsNode);
-    }
-
-    return ok(root).build();
+    });
   }
 
+
   @GET
   @Path("delta/ports/{deviceId}")
   @Produces(MediaType.APPLICATION_JSON)
   public Response getPortsDeltaStatisticsByDeviceId(@PathParam("deviceId") String deviceId) {
     final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final EntityTag tag = versionTag(ImmutableList.of(DeviceId.deviceId(deviceId)), null);
+    final Response notModified = notModified(tag);
+    if (notModified != null) {
+      return notModified;
+    }
     final Iterable<PortStatistics> portStatsEntries = service.getPortDeltaStatistics(DeviceId.deviceId(deviceId));
     final ObjectNode root = mapper().createObjectNode();
     final ArrayNode rootArrayNode = root.putArray("statistics");
@@ -227,7 +256,7 @@ public class FlexcommStatisticsWebResource extends AbstractWebResource {
     }
     rootArrayNode.add(deviceStatsNode);
 
-    return ok(root).build();
+    return ok(root).tag(tag).build();
   }
 
   @GET
@@ -236,6 +265,11 @@ public class FlexcommStatisticsWebResource extends AbstractWebResource {
   public Response getPortsDeltaStatisticsByDeviceIdAndPort(@PathParam("deviceId") String deviceId,
       @PathParam("port") String port) {
     final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final EntityTag tag = versionTag(ImmutableList.of(DeviceId.deviceId(deviceId)), null);
+    final Response notModified = notModified(tag);
+    if (notModified != null) {
+      return notModified;
+    }
     final PortNumber portNumber = PortNumber.portNumber(port);
     final PortStatistics portStatsEntry = service.getDeltaStatisticsForPort(DeviceId.deviceId(deviceId), portNumber);
     final ObjectNode root = mapper().createObjectNode();
@@ -248,7 +282,285 @@ public class FlexcommStatisticsWebResource extends AbstractWebResource {
     }
     rootArrayNode.add(deviceStatsNode);
 
+    return ok(root).tag(tag).build();
+  }
+
+  // body: {"delta": false, "devices": [{"device": "of:...", "ports": ["1", "2"]}, ...]}, no ports selects them all
+  @POST
+  @Path("query")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response queryStatistics(InputStream stream) {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final JsonNode query;
+    try {
+      query = readTreeFromStream(mapper(), stream);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to parse statistics query", e);
+    }
+
+    final JsonNode devicesNode = query.path("devices");
+    if (!devicesNode.isArray()) {
+      throw new IllegalArgumentException("Statistics query must have a devices array");
+    }
+    final boolean delta = query.path("delta").asBoolean(false);
+    final Map<DeviceId, Set<PortNumber>> ports = Maps.newLinkedHashMap();
+    for (final JsonNode deviceNode : devicesNode) {
+      final String deviceId = deviceNode.path("device").asText(null);
+      if (deviceId == null) {
+        throw new IllegalArgumentException("Every queried device must have a device field");
+      }
+      final Set<PortNumber> portNumbers = ports.computeIfAbsent(DeviceId.deviceId(deviceId),
+          k -> Sets.newLinkedHashSet());
+      for (final JsonNode portNode : deviceNode.path("ports")) {
+        portNumbers.add(PortNumber.portNumber(portNode.asText()));
+      }
+    }
+
+    final Map<DeviceId, GlobalStatistics> globalStatistics = service.getGlobalStatistics(ports.keySet(), delta);
+    final Map<DeviceId, List<PortStatistics>> portStatistics = service.getPortStatistics(ports, delta);
+    final ObjectNode root = mapper().createObjectNode();
+    final ArrayNode rootArrayNode = root.putArray("statistics");
+    for (final DeviceId deviceId : ports.keySet()) {
+      final ObjectNode deviceStatsNode = mapper().createObjectNode();
+      deviceStatsNode.put("device", deviceId.toString());
+      final ArrayNode globalNode = deviceStatsNode.putArray("global");
+      final GlobalStatistics globalStatsEntry = globalStatistics.get(deviceId);
+      if (globalStatsEntry != null) {
+        globalNode.add(codec(GlobalStatistics.class).encode(globalStatsEntry, this));
+      }
+      final ArrayNode portsNode = deviceStatsNode.putArray("ports");
+      final List<PortStatistics> portStatsEntries = portStatistics.get(deviceId);
+      if (portStatsEntries != null) {
+        for (final PortStatistics entry : portStatsEntries) {
+          portsNode.add(codec(PortStatistics.class).encode(entry, this));
+        }
+      }
+      rootArrayNode.add(deviceStatsNode);
+    }
+
     return ok(root).build();
   }
 
+  // repeat device and type to follow several, none follows every device and both update types
+  @GET
+  @Path("events")
+  @Produces(MediaType.SERVER_SENT_EVENTS)
+  public void streamEvents(@QueryParam("device") List<String> devices, @QueryParam("type") List<String> types,
+      @Context SseEventSink sink, @Context Sse sse) {
+    final Set<DeviceId> deviceIds = Sets.newHashSet();
+    for (final String device : devices) {
+      deviceIds.add(DeviceId.deviceId(device));
+    }
+    final Set<FlexcommStatisticsEvent.Type> eventTypes = EnumSet.noneOf(FlexcommStatisticsEvent.Type.class);
+    for (final String type : types) {
+      final FlexcommStatisticsEvent.Type eventType = FlexcommStatisticsEvent.Type.valueOf(type.trim().toUpperCase());
+      if (eventType != FlexcommStatisticsEvent.Type.GLOBAL_STATS_UPDATED
+          && eventType != FlexcommStatisticsEvent.Type.PORT_STATS_UPDATED) {
+        throw new IllegalArgumentException("Unsupported event type " + type);
+      }
+      eventTypes.add(eventType);
+    }
+    if (eventTypes.isEmpty()) {
+      eventTypes.add(FlexcommStatisticsEvent.Type.GLOBAL_STATS_UPDATED);
+      eventTypes.add(FlexcommStatisticsEvent.Type.PORT_STATS_UPDATED);
+    }
+
+    get(FlexcommStatisticsEventBroadcaster.class).subscribe(sink, sse, deviceIds, eventTypes);
+  }
+
+  @GET
+  @Path("aggregate/ports")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getAggregatePortStatistics() {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final ObjectNode root = mapper().createObjectNode();
+    root.set("aggregate", codec(AggregateStatistics.class).encode(service.getAggregatePortStatistics(), this));
+
+    return ok(root).build();
+  }
+
+  @GET
+  @Path("aggregate/ports/{deviceId}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getAggregatePortStatisticsByDeviceId(@PathParam("deviceId") String deviceId) {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final AggregateStatistics aggregateEntry = service.getAggregatePortStatistics(DeviceId.deviceId(deviceId));
+    final ObjectNode root = mapper().createObjectNode();
+    final ArrayNode rootArrayNode = root.putArray("statistics");
+    final ObjectNode deviceStatsNode = mapper().createObjectNode();
+    deviceStatsNode.put("device", deviceId);
+    final ArrayNode statisticsNode = deviceStatsNode.putArray("aggregate");
+    if (aggregateEntry != null) {
+      statisticsNode.add(codec(AggregateStatistics.class).encode(aggregateEntry, this));
+    }
+    rootArrayNode.add(deviceStatsNode);
+
+    return ok(root).build();
+  }
+
+  @GET
+  @Path("top/ports")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getTopPortsByPowerDrawn(@QueryParam("count") @DefaultValue("20") int count) {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final ObjectNode root = mapper().createObjectNode();
+    root.set("top", codec(AggregateStatistics.class).encode(service.getTopPortsByPowerDrawn(count), this));
+
+    return ok(root).build();
+  }
+
+  @GET
+  @Path("top/devices")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getTopDevicesByPowerDrawn(@QueryParam("count") @DefaultValue("20") int count) {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final ObjectNode root = mapper().createObjectNode();
+    root.set("top", codec(AggregateStatistics.class).encode(service.getTopDevicesByPowerDrawn(count), this));
+
+    return ok(root).build();
+  }
+
+  @GET
+  @Path("rollup/global/{deviceId}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getGlobalRollupByDeviceId(@PathParam("deviceId") String deviceId,
+      @QueryParam("resolution") @DefaultValue("1m") String resolution) {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final RollupResolution rollupResolution = rollupResolution(resolution);
+    final List<StatisticsRollup> rollupEntries = service.getGlobalStatisticsRollup(DeviceId.deviceId(deviceId),
+        rollupResolution);
+    final ObjectNode root = mapper().createObjectNode();
+    final ArrayNode rootArrayNode = root.putArray("statistics");
+    final ObjectNode deviceStatsNode = mapper().createObjectNode();
+    deviceStatsNode.put("device", deviceId);
+    deviceStatsNode.put("resolution", rollupResolution.label());
+    final ArrayNode statisticsNode = deviceStatsNode.putArray("global");
+    for (final StatisticsRollup entry : rollupEntries) {
+      statisticsNode.add(codec(StatisticsRollup.class).encode(entry, this));
+    }
+    rootArrayNode.add(deviceStatsNode);
+
+    return ok(root).build();
+  }
+
+  @GET
+  @Path("rollup/ports/{deviceId}/{port}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getPortRollupByDeviceIdAndPort(@PathParam("deviceId") String deviceId,
+      @PathParam("port") String port, @QueryParam("resolution") @DefaultValue("1m") String resolution) {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final RollupResolution rollupResolution = rollupResolution(resolution);
+    final PortNumber portNumber = PortNumber.portNumber(port);
+    final List<StatisticsRollup> rollupEntries = service.getPortStatisticsRollup(DeviceId.deviceId(deviceId),
+        portNumber, rollupResolution);
+    final ObjectNode root = mapper().createObjectNode();
+    final ArrayNode rootArrayNode = root.putArray("statistics");
+    final ObjectNode deviceStatsNode = mapper().createObjectNode();
+    deviceStatsNode.put("device", deviceId);
+    deviceStatsNode.put("port", portNumber.toString());
+    deviceStatsNode.put("resolution", rollupResolution.label());
+    final ArrayNode statisticsNode = deviceStatsNode.putArray("rollup");
+    for (final StatisticsRollup entry : rollupEntries) {
+      statisticsNode.add(codec(StatisticsRollup.class).encode(entry, this));
+    }
+    rootArrayNode.add(deviceStatsNode);
+
+    return ok(root).build();
+  }
+
+  @GET
+  @Path("polling")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getPollingStatistics() {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    return streamDevices("polling", (generator, deviceId) -> {
+      final PollingStatistics pollingStatsEntry = service.getPollingStatistics(deviceId);
+      if (pollingStatsEntry != null) {
+        generator.writeTree(codec(PollingStatistics.class).encode(pollingStatsEntry, this));
+      }
+    });
+  }
+
+
+  @GET
+  @Path("polling/{deviceId}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getPollingStatisticsByDeviceId(@PathParam("deviceId") String deviceId) {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final PollingStatistics pollingStatsEntry = service.getPollingStatistics(DeviceId.deviceId(deviceId));
+    final ObjectNode root = mapper().createObjectNode();
+    final ArrayNode rootArrayNode = root.putArray("statistics");
+    final ObjectNode deviceStatsNode = mapper().createObjectNode();
+    deviceStatsNode.put("device", deviceId);
+    final ArrayNode statisticsNode = deviceStatsNode.putArray("polling");
+    if (pollingStatsEntry != null) {
+      statisticsNode.add(codec(PollingStatistics.class).encode(pollingStatsEntry, this));
+    }
+    rootArrayNode.add(deviceStatsNode);
+
+    return ok(root).build();
+  }
+
+  // versions and tags only mean something on the node that served them
+  private Response streamVersionedDevices(Long since, String statisticsField, DeviceStatisticsWriter writer) {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final long version = service.getStatisticsVersion();
+    final Iterable<Device> devices = get(DeviceService.class).getDevices();
+    final EntityTag tag = versionTag(Iterables.transform(devices, Device::id), since);
+    final Response notModified = notModified(tag);
+    if (notModified != null) {
+      return notModified;
+    }
+
+    final Iterable<Device> selected = since == null ? devices : Iterables.filter(devices, device -> {
+      final long deviceVersion = service.getStatisticsVersion(device.id());
+      return deviceVersion == FlexcommStatisticsService.UNKNOWN_VERSION || deviceVersion > since;
+    });
+    return streamDevices(version, selected, statisticsField, writer).tag(tag).build();
+  }
+
+  private Response streamDevices(String statisticsField, DeviceStatisticsWriter writer) {
+    return streamDevices(null, get(DeviceService.class).getDevices(), statisticsField, writer).build();
+  }
+
+  private Response.ResponseBuilder streamDevices(Long version, Iterable<Device> devices, String statisticsField,
+      DeviceStatisticsWriter writer) {
+    final StreamingOutput stream = new DeviceStatisticsStream(mapper().getFactory(), version,
+        Iterables.transform(devices, Device::id), statisticsField, writer);
+    return Response.ok(stream, MediaType.APPLICATION_JSON_TYPE);
+  }
+
+  // null when a device has no version on this node, such responses are always sent in full
+  private EntityTag versionTag(Iterable<DeviceId> deviceIds, Long since) {
+    final FlexcommStatisticsService service = get(FlexcommStatisticsService.class);
+    final Hasher hasher = Hashing.murmur3_128().newHasher()
+        .putUnencodedChars(get(ClusterService.class).getLocalNode().id().id())
+        .putLong(since != null ? since : -1);
+    for (final DeviceId deviceId : deviceIds) {
+      final long deviceVersion = service.getStatisticsVersion(deviceId);
+      if (deviceVersion == FlexcommStatisticsService.UNKNOWN_VERSION) {
+        return null;
+      }
+      hasher.putUnencodedChars(deviceId.toString()).putLong(deviceVersion);
+    }
+    return new EntityTag(hasher.hash().toString());
+  }
+
+  private Response notModified(EntityTag tag) {
+    if (tag == null) {
+      return null;
+    }
+    final Response.ResponseBuilder builder = request.evaluatePreconditions(tag);
+    return builder != null ? builder.build() : null;
+  }
+
+  private static RollupResolution rollupResolution(String resolution) {
+    final RollupResolution rollupResolution = RollupResolution.fromLabel(resolution);
+    if (rollupResolution == null) {
+      throw new IllegalArgumentException("Unknown rollup resolution " + resolution);
+    }
+    return rollupResolution;
+  }
+
 }
@@ -0,0 +1,35 @@
+package org.inesctec.flexcomm.statistics.rest;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.inesctec.flexcomm.statistics.api.PollingStatistics;
+import org.onosproject.codec.CodecContext;
+import org.onosproject.codec.JsonCodec;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public final class PollingStatisticsCodec extends JsonCodec<PollingStatistics> {
+
+  @Override
+  public ObjectNode encode(PollingStatistics entry, CodecContext context) {
+    checkNotNull(entry, "Polling statistics cannot be null");
+
+    final ObjectNode result = context.mapper().createObjectNode()
+        .put("requests", entry.requests())
+        .put("replies", entry.replies())
+        .put("timeouts", entry.timeouts())
+        .put("missedPolls", entry.missedPolls())
+        .put("outstanding", entry.outstanding())
+        .put("pushing", entry.pushing())
+        .put("pushedReports", entry.pushedReports());
+    result.putObject("latencyMicros")
+        .put("mean", entry.meanLatencyMicros())
+        .put("p50", entry.latencyPercentileMicros(50))
+        .put("p90", entry.latencyPercentileMicros(90))
+        .put("p99", entry.latencyPercentileMicros(99))
+        .put("max", entry.maxLatencyMicros());
+
+    return result;
+  }
+
+}
@@ -0,0 +1,36 @@
+package org.inesctec.flexcomm.statistics.rest;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.inesctec.flexcomm.statistics.api.StatisticsRollup;
+import org.onosproject.codec.CodecContext;
+import org.onosproject.codec.JsonCodec;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public final class StatisticsRollupCodec extends JsonCodec<StatisticsRollup> {
+
+  @Override
+  public ObjectNode encode(StatisticsRollup entry, CodecContext context) {
+    checkNotNull(entry, "Statistics rollup cannot be null");
+
+    final ObjectNode result = context.mapper().createObjectNode()
+        .put("startTime", entry.startTime())
+        .put("count", entry.count());
+    result.putObject("currentConsumption")
+        .put("sum", entry.currentConsumptionSum())
+        .put("min", entry.currentConsumptionMin())
+        .put("max", entry.currentConsumptionMax())
+        .put("avg", entry.currentConsumptionAverage())
+        .put("last", entry.currentConsumptionLast());
+    result.putObject("powerDrawn")
+        .put("sum", entry.powerDrawnSum())
+        .put("min", entry.powerDrawnMin())
+        .put("max", entry.powerDrawnMax())
+        .put("avg", entry.powerDrawnAverage())
+        .put("last", entry.powerDrawnLast());
+
+    return result;
+  }
+
+}
@@ -0,0 +1,330 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.inesctec.flexcomm.statistics.api.RollupResolution.ONE_MINUTE;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.ADAPTIVE_POLLING;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MASTER_LOCAL_STATS;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MAX_IN_FLIGHT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MAX_POLL_FREQ;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POLL_FREQ;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PORT_STATS_ROLLUPS;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PUSH_MODE;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.PUSH_TIMEOUT;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.STATS_EXPIRY_FACTOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.inesctec.flexcomm.statistics.api.DefaultGlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent;
+import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.HistoricalStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.inesctec.flexcomm.statistics.api.StatisticsRollup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.packet.IpAddress;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.cfg.ConfigProperty;
+import org.onosproject.cluster.ClusterServiceAdapter;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.mastership.MastershipServiceAdapter;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.config.NetworkConfigServiceAdapter;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationServiceAdapter;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.service.TestStorageService;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class DistributedFlexcommStatisticsStoreTest {
+
+  private static final DeviceId DID1 = DeviceId.deviceId("of:0000000000000001");
+  private static final DeviceId DID2 = DeviceId.deviceId("of:0000000000000002");
+  private static final NodeId NODE1 = NodeId.nodeId("node1");
+  private static final NodeId NODE2 = NodeId.nodeId("node2");
+
+  // message handlers registered by each node, keyed by subject
+  private final Map<NodeId, Map<String, Function<byte[], byte[]>>> cluster = Maps.newConcurrentMap();
+  // subjects of the requests sent between nodes, in order
+  private final List<String> requests = Lists.newCopyOnWriteArrayList();
+
+  private DistributedFlexcommStatisticsStore master;
+  private DistributedFlexcommStatisticsStore standby;
+
+  @Before
+  public void setUp() {
+    master = createStore(NODE1);
+    standby = createStore(NODE2);
+  }
+
+  @After
+  public void tearDown() {
+    master.deactivate();
+    standby.deactivate();
+  }
+
+  private DistributedFlexcommStatisticsStore createStore(NodeId nodeId) {
+    DistributedFlexcommStatisticsStore store = new DistributedFlexcommStatisticsStore();
+    store.storageService = new TestStorageService();
+    store.cfgService = new ComponentConfigAdapter();
+    store.mastershipService = new TestMastershipService();
+    store.clusterService = new TestClusterService(nodeId);
+    store.clusterCommunicator = new TestClusterCommunicator(nodeId);
+    store.metricsService = new MetricsManager();
+    store.netCfgService = new NetworkConfigServiceAdapter();
+    store.activate(TestUtils.componentContext(MASTER_LOCAL_STATS, true));
+    return store;
+  }
+
+  @Test
+  public void masterLocalHistoryIsReadFromTheMaster() {
+    master.updateGlobalStatistics(DID1, DefaultGlobalStatistics.builder()
+        .setCurrentConsumption(1).setPowerDrawn(10).setAnnotations(DefaultAnnotations.EMPTY).build());
+    master.updateGlobalStatistics(DID1, DefaultGlobalStatistics.builder()
+        .setCurrentConsumption(2).setPowerDrawn(20).setAnnotations(DefaultAnnotations.EMPTY).build());
+    master.updatePortStatistics(DID1, new long[] {1, 2}, new double[] {3, 4}, new double[] {30, 40}, 2);
+
+    List<HistoricalStatistics> global = standby.getGlobalStatisticsHistory(DID1, 0, Long.MAX_VALUE);
+    assertEquals(2, global.size());
+    assertEquals(1, global.get(0).currentConsumption(), 0);
+    assertEquals(20, global.get(1).powerDrawn(), 0);
+
+    List<HistoricalStatistics> port = standby.getPortStatisticsHistory(DID1, PortNumber.portNumber(2), 0,
+        Long.MAX_VALUE);
+    assertEquals(1, port.size());
+    assertEquals(40, port.get(0).powerDrawn(), 0);
+  }
+
+  @Test
+  public void masterLocalHistoryIsEmptyWhenTheMasterIsUnreachable() {
+    master.updateGlobalStatistics(DID1, DefaultGlobalStatistics.builder()
+        .setCurrentConsumption(1).setPowerDrawn(10).setAnnotations(DefaultAnnotations.EMPTY).build());
+    cluster.remove(NODE1);
+
+    assertTrue(standby.getGlobalStatisticsHistory(DID1, 0, Long.MAX_VALUE).isEmpty());
+  }
+
+  @Test
+  public void masterLocalRollupsAreReadFromTheMaster() {
+    master.modified(TestUtils.componentContext(PORT_STATS_ROLLUPS, true));
+    master.updateGlobalStatistics(DID1, DefaultGlobalStatistics.builder()
+        .setCurrentConsumption(1).setPowerDrawn(10).setAnnotations(DefaultAnnotations.EMPTY).build());
+    master.updateGlobalStatistics(DID1, DefaultGlobalStatistics.builder()
+        .setCurrentConsumption(3).setPowerDrawn(30).setAnnotations(DefaultAnnotations.EMPTY).build());
+    master.updatePortStatistics(DID1, new long[] {1, 2}, new double[] {3, 4}, new double[] {30, 40}, 2);
+
+    List<StatisticsRollup> global = standby.getGlobalStatisticsRollup(DID1, ONE_MINUTE);
+    assertEquals(2, global.stream().mapToLong(StatisticsRollup::count).sum());
+    assertEquals(40, global.stream().mapToDouble(StatisticsRollup::powerDrawnSum).sum(), 0);
+
+    List<StatisticsRollup> port = standby.getPortStatisticsRollup(DID1, PortNumber.portNumber(2), ONE_MINUTE);
+    assertEquals(40, port.stream().mapToDouble(StatisticsRollup::powerDrawnSum).sum(), 0);
+  }
+
+  @Test
+  public void purgedDevicesDropTheirRollups() {
+    master.updateGlobalStatistics(DID1, DefaultGlobalStatistics.builder()
+        .setCurrentConsumption(1).setPowerDrawn(10).setAnnotations(DefaultAnnotations.EMPTY).build());
+
+    master.purgeStatistics(DID1);
+
+    assertTrue(master.getGlobalStatisticsRollup(DID1, ONE_MINUTE).isEmpty());
+  }
+
+  @Test
+  public void masterLocalBulkLookupSendsOneRequestPerMaster() {
+    for (DeviceId deviceId : ImmutableList.of(DID1, DID2)) {
+      master.updateGlobalStatistics(deviceId, DefaultGlobalStatistics.builder()
+          .setCurrentConsumption(1).setPowerDrawn(10).setAnnotations(DefaultAnnotations.EMPTY).build());
+      master.updatePortStatistics(deviceId, new long[] {1, 2}, new double[] {3, 4}, new double[] {30, 40}, 2);
+    }
+
+    Map<DeviceId, GlobalStatistics> global = standby.getGlobalStatistics(ImmutableList.of(DID1, DID2), false);
+    Map<DeviceId, List<PortStatistics>> ports = standby.getPortStatistics(
+        ImmutableMap.of(DID1, ImmutableList.<PortNumber>of(), DID2, ImmutableList.of(PortNumber.portNumber(2))),
+        false);
+
+    assertEquals(10, global.get(DID2).powerDrawn(), 0);
+    assertEquals(2, ports.get(DID1).size());
+    assertEquals(40, ports.get(DID2).get(0).powerDrawn(), 0);
+    assertEquals(ImmutableList.of("flexcomm-bulk-stats-request"), requests);
+  }
+
+  @Test
+  public void mergeKeepsTheDeltasOfOtherPorts() {
+    master.updatePortStatistics(DID1, new long[] {1, 2}, new double[] {1, 2}, new double[] {10, 20}, 2);
+    master.updatePortStatistics(DID1, new long[] {1, 2}, new double[] {3, 5}, new double[] {30, 50}, 2);
+
+    master.mergePortStatistics(DID1, new long[] {1}, new double[] {10}, new double[] {100}, 1);
+
+    assertEquals(7, master.getDeltaStatisticsForPort(DID1, PortNumber.portNumber(1)).currentConsumption(), 0);
+    assertEquals(3, master.getDeltaStatisticsForPort(DID1, PortNumber.portNumber(2)).currentConsumption(), 0);
+    assertEquals(30, master.getDeltaStatisticsForPort(DID1, PortNumber.portNumber(2)).powerDrawn(), 0);
+
+    master.mergePortStatistics(DID1, new long[] {2}, new double[] {6}, new double[] {60}, 1);
+
+    assertEquals(7, master.getDeltaStatisticsForPort(DID1, PortNumber.portNumber(1)).currentConsumption(), 0);
+    assertEquals(1, master.getDeltaStatisticsForPort(DID1, PortNumber.portNumber(2)).currentConsumption(), 0);
+  }
+
+  @Test
+  public void mergeRecordsHistoryOfMergedPortsOnly() {
+    master.updatePortStatistics(DID1, new long[] {1, 2}, new double[] {1, 2}, new double[] {10, 20}, 2);
+
+    master.mergePortStatistics(DID1, new long[] {1}, new double[] {3}, new double[] {30}, 1);
+    master.mergePortStatistics(DID1, new long[] {1}, new double[] {4}, new double[] {40}, 1);
+
+    assertEquals(3, master.getPortStatisticsHistory(DID1, PortNumber.portNumber(1), 0, Long.MAX_VALUE).size());
+    assertEquals(1, master.getPortStatisticsHistory(DID1, PortNumber.portNumber(2), 0, Long.MAX_VALUE).size());
+  }
+
+  @Test
+  public void mergeEventNamesTheMergedPorts() {
+    FlexcommStatisticsEvent full = master.updatePortStatistics(DID1, new long[] {1, 2}, new double[] {1, 2},
+        new double[] {10, 20}, 2);
+    FlexcommStatisticsEvent merged = master.mergePortStatistics(DID1, new long[] {2}, new double[] {3},
+        new double[] {30}, 1);
+
+    assertTrue(full.ports().isEmpty());
+    assertEquals(ImmutableSet.of(PortNumber.portNumber(2)), merged.ports());
+  }
+
+  // provider settings as the store reads them from the component configuration
+  private void configureProvider(Object... properties) {
+    Map<String, ConfigProperty> settings = Maps.newHashMap();
+    for (int i = 0; i < properties.length; i += 2) {
+      ConfigProperty.Type type = properties[i + 1] instanceof Boolean ? ConfigProperty.Type.BOOLEAN
+          : ConfigProperty.Type.INTEGER;
+      settings.put((String) properties[i],
+          ConfigProperty.defineProperty((String) properties[i], type, properties[i + 1].toString(), ""));
+    }
+    master.cfgService = new ComponentConfigAdapter() {
+      @Override
+      public ConfigProperty getProperty(String componentName, String attribute) {
+        return componentName.equals(OpenFlowFlexcomStatisticsProvider.class.getName()) ? settings.get(attribute)
+            : null;
+      }
+    };
+    master.modified(TestUtils.componentContext(STATS_EXPIRY_FACTOR, "2"));
+  }
+
+  private long update() {
+    long now = System.currentTimeMillis();
+    master.updateGlobalStatistics(DID1, DefaultGlobalStatistics.builder()
+        .setCurrentConsumption(1).setPowerDrawn(10).setAnnotations(DefaultAnnotations.EMPTY).build());
+    return now;
+  }
+
+  @Test
+  public void devicesExpireAfterMissedPolls() {
+    configureProvider(POLL_FREQ, 5);
+    long updated = update();
+
+    master.sweepExpiredStatistics(updated + TimeUnit.SECONDS.toMillis(10));
+    assertNotNull(master.getGlobalStatistics(DID1));
+
+    master.sweepExpiredStatistics(updated + TimeUnit.SECONDS.toMillis(11));
+    assertNull(master.getGlobalStatistics(DID1));
+  }
+
+  @Test
+  public void adaptivePollingExpiresOnTheMaximumInterval() {
+    configureProvider(POLL_FREQ, 5, ADAPTIVE_POLLING, true, MAX_POLL_FREQ, 60);
+    long updated = update();
+
+    // a stable switch is backed off to one poll a minute
+    master.sweepExpiredStatistics(updated + TimeUnit.SECONDS.toMillis(120));
+    assertNotNull(master.getGlobalStatistics(DID1));
+
+    master.sweepExpiredStatistics(updated + TimeUnit.SECONDS.toMillis(121));
+    assertNull(master.getGlobalStatistics(DID1));
+  }
+
+  @Test
+  public void slowTierAndPushTimeoutDelayTheExpiry() {
+    configureProvider(POLL_FREQ, 5, MAX_IN_FLIGHT, 8, PUSH_MODE, true, PUSH_TIMEOUT, 30);
+    long updated = update();
+
+    // a switch that stops pushing is polled after the timeout, on the slow tier when polls are over budget
+    master.sweepExpiredStatistics(updated + TimeUnit.SECONDS.toMillis((5 * 4 + 30) * 2));
+    assertNotNull(master.getGlobalStatistics(DID1));
+
+    master.sweepExpiredStatistics(updated + TimeUnit.SECONDS.toMillis((5 * 4 + 30) * 2 + 1));
+    assertNull(master.getGlobalStatistics(DID1));
+  }
+
+  private static final class TestMastershipService extends MastershipServiceAdapter {
+    @Override
+    public NodeId getMasterFor(DeviceId deviceId) {
+      return NODE1;
+    }
+  }
+
+  private static final class TestClusterService extends ClusterServiceAdapter {
+    private final ControllerNode localNode;
+
+    private TestClusterService(NodeId nodeId) {
+      localNode = new DefaultControllerNode(nodeId, IpAddress.valueOf("127.0.0.1"));
+    }
+
+    @Override
+    public ControllerNode getLocalNode() {
+      return localNode;
+    }
+  }
+
+  // delivers requests synchronously to the handlers registered by the target node
+  private final class TestClusterCommunicator extends ClusterCommunicationServiceAdapter {
+    private final NodeId nodeId;
+
+    private TestClusterCommunicator(NodeId nodeId) {
+      this.nodeId = nodeId;
+    }
+
+    @Override
+    public <M, R> void addSubscriber(MessageSubject subject, Function<byte[], M> decoder, Function<M, R> handler,
+        Function<R, byte[]> encoder, Executor executor) {
+      cluster.computeIfAbsent(nodeId, k -> Maps.newConcurrentMap())
+          .put(subject.value(), bytes -> encoder.apply(handler.apply(decoder.apply(bytes))));
+    }
+
+    @Override
+    public void removeSubscriber(MessageSubject subject) {
+      Map<String, Function<byte[], byte[]>> handlers = cluster.get(nodeId);
+      if (handlers != null) {
+        handlers.remove(subject.value());
+      }
+    }
+
+    @Override
+    public <M, R> CompletableFuture<R> sendAndReceive(M message, MessageSubject subject, Function<M, byte[]> encoder,
+        Function<byte[], R> decoder, NodeId toNodeId) {
+      requests.add(subject.value());
+      Function<byte[], byte[]> handler = cluster.getOrDefault(toNodeId, ImmutableMap.of()).get(subject.value());
+      if (handler == null) {
+        CompletableFuture<R> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("No handler for " + subject.value()));
+        return failed;
+      }
+      return CompletableFuture.completedFuture(decoder.apply(handler.apply(encoder.apply(message))));
+    }
+  }
+}
@@ -0,0 +1,345 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.openflow.controller.OpenFlowSwitch;
+import org.onosproject.openflow.controller.RoleState;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlexcommGlobalEnergyRequest;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortEnergyRequest;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.U64;
+
+import com.codahale.metrics.Counter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+
+public class FlexcommStatisticsCollectorTest {
+
+  private static final long DPID = 0x42L;
+
+  // initial delay, period and wall clock time of every task scheduled, in milliseconds
+  private final List<long[]> schedules = Lists.newArrayList();
+  private final List<Runnable> tasks = Lists.newArrayList();
+  private final List<OFMessage> sent = Lists.newArrayList();
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicLong nanos = new AtomicLong();
+
+  private FlexcommStatisticsCollector collector;
+
+  @Before
+  public void setUp() {
+    collector = new FlexcommStatisticsCollector(executor(), sw(), 4, new Counter());
+    collector.wallClock = now::get;
+    collector.nanoClock = nanos::get;
+  }
+
+  private static long phase(long period) {
+    return Math.floorMod(Hashing.murmur3_32().hashLong(DPID).asInt(), period);
+  }
+
+  private void poll() {
+    sent.clear();
+    tasks.get(tasks.size() - 1).run();
+  }
+
+  // runs one poll and answers every request it sent, returning the ports requested
+  private List<OFPort> pollAndReply() {
+    poll();
+    List<OFPort> ports = Lists.newArrayList();
+    for (OFMessage request : sent) {
+      if (request instanceof OFFlexcommPortEnergyRequest) {
+        ports.add(((OFFlexcommPortEnergyRequest) request).getPortNo());
+      }
+      collector.replyReceived(request.getXid());
+    }
+    return ports;
+  }
+
+  @Test
+  public void startsAtThePhaseOfTheSwitch() {
+    collector.start();
+
+    assertEquals(1, schedules.size());
+    assertEquals(phase(4000), schedules.get(0)[0]);
+    assertEquals(4000, schedules.get(0)[1]);
+  }
+
+  @Test
+  public void adaptiveReschedulingKeepsThePhaseOfTheSwitch() {
+    collector.configureAdaptivePolling(true, 1, 8, 0.1);
+    collector.start();
+
+    collector.observeReading(1, 10);
+    collector.observeReading(5, 50);
+    collector.observeReading(5, 50);
+
+    assertEquals(3, schedules.size());
+    assertEquals(phase(2000), schedules.get(1)[0]);
+    assertEquals(2000, schedules.get(1)[1]);
+    assertEquals(phase(4000), schedules.get(2)[0]);
+    assertEquals(4000, schedules.get(2)[1]);
+  }
+
+  @Test
+  public void intervalChangesKeepTheAbsolutePhase() {
+    now.set(1_234_567);
+    collector.start();
+    now.addAndGet(2500);
+    collector.adjustPollInterval(2);
+    now.addAndGet(777);
+    collector.adjustPollInterval(8);
+
+    assertEquals(3, schedules.size());
+    for (long[] schedule : schedules) {
+      assertTrue(schedule[0] > 0 && schedule[0] <= schedule[1]);
+      assertEquals(phase(schedule[1]), (schedule[2] + schedule[0]) % schedule[1]);
+    }
+  }
+
+  @Test
+  public void roundTripsAreTimedOnTheCollectorClock() {
+    collector.start();
+    poll();
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(3));
+    sent.forEach(request -> collector.replyReceived(request.getXid()));
+
+    assertEquals(2, collector.pollingStatistics(null).replies());
+    assertEquals(3000, collector.pollingStatistics(null).maxLatencyMicros());
+  }
+
+  @Test
+  public void hotPortsWithinTheBudgetAreRequestedOneByOne() {
+    collector.setMaxInFlight(3);
+    collector.configureHotPortPolling(true, 2, ImmutableSet.of(1L, 2L));
+    collector.start();
+
+    assertEquals(ImmutableList.of(OFPort.ANY), pollAndReply());
+    assertEquals(ImmutableList.of(OFPort.of(1), OFPort.of(2)), pollAndReply());
+  }
+
+  @Test
+  public void hotPortsBeyondTheBudgetAreSwept() {
+    collector.setMaxInFlight(3);
+    collector.configureHotPortPolling(true, 2, ImmutableSet.of(1L, 2L, 3L, 4L));
+    collector.start();
+
+    assertEquals(ImmutableList.of(OFPort.ANY), pollAndReply());
+    assertEquals(ImmutableList.of(OFPort.ANY), pollAndReply());
+    assertEquals(2, sent.size());
+  }
+
+  @Test
+  public void pollsAreAdmittedAgainstTheirWholeTick() {
+    collector.setMaxInFlight(3);
+    collector.start();
+
+    poll();
+    assertEquals(2, sent.size());
+    poll();
+
+    assertTrue(sent.isEmpty());
+    assertEquals(1, collector.pollingStatistics(null).missedPolls());
+    assertEquals(2, collector.pollingStatistics(null).outstanding());
+  }
+
+  @Test
+  public void slowTierIsLeftAfterARunOfAnsweredPolls() {
+    collector.setMaxInFlight(3);
+    collector.start();
+    poll();
+    List<OFMessage> unanswered = Lists.newArrayList(sent);
+    for (int i = 0; i < 3; i++) {
+      poll();
+    }
+    assertEquals(16, collector.pollInterval());
+
+    unanswered.forEach(request -> collector.replyReceived(request.getXid()));
+    pollAndReply();
+    assertEquals(16, collector.pollInterval());
+    poll();
+    collector.expireRequests(-1);
+    pollAndReply();
+    pollAndReply();
+    assertEquals(16, collector.pollInterval());
+    pollAndReply();
+
+    assertEquals(4, collector.pollInterval());
+  }
+
+  @Test
+  public void hotPortRepliesOfATickAreCoalesced() {
+    collector.configureHotPortPolling(true, 2, ImmutableSet.of(1L, 2L));
+    collector.start();
+    pollAndReply();
+
+    sent.clear();
+    tasks.get(0).run();
+    long[] xids = sent.stream().filter(m -> m instanceof OFFlexcommPortEnergyRequest)
+        .mapToLong(OFMessage::getXid).toArray();
+
+    assertEquals(2, xids.length);
+    assertNull(collector.coalescePorts(xids[0], entries(1, 10)));
+    PortEnergyEntries tick = collector.coalescePorts(xids[1], entries(2, 20));
+    assertArrayEquals(new long[] {1, 2}, tick.portNumbers());
+    assertArrayEquals(new double[] {10, 20}, tick.currentConsumption(), 0);
+  }
+
+  @Test
+  public void heldRepliesAreReleasedOnceTheirTickExpires() {
+    collector.configureHotPortPolling(true, 2, ImmutableSet.of(1L, 2L));
+    collector.start();
+    pollAndReply();
+
+    sent.clear();
+    tasks.get(0).run();
+    long xid = sent.stream().filter(m -> m instanceof OFFlexcommPortEnergyRequest)
+        .mapToLong(OFMessage::getXid).findFirst().getAsLong();
+
+    assertNull(collector.coalescePorts(xid, entries(1, 10)));
+    assertNull(collector.releaseHeldPorts());
+    collector.expireRequests(-1);
+    assertArrayEquals(new long[] {1}, collector.releaseHeldPorts().portNumbers());
+    assertNull(collector.releaseHeldPorts());
+  }
+
+  @Test
+  public void pushedGlobalReportsStillLeavePortsPolled() {
+    collector.configurePushMode(true, 60);
+    collector.start();
+
+    collector.pushReceived();
+
+    assertEquals(ImmutableList.of(OFPort.ANY), pollAndReply());
+    assertEquals(1, sent.size());
+  }
+
+  @Test
+  public void pushedPortReportsStillLeaveTheGlobalReadingPolled() {
+    collector.configurePushMode(true, 60);
+    collector.start();
+
+    collector.portPushReceived();
+
+    assertEquals(ImmutableList.of(), pollAndReply());
+    assertEquals(1, sent.size());
+  }
+
+  @Test
+  public void nothingIsPolledWhileBothArePushed() {
+    collector.configurePushMode(true, 60);
+    collector.start();
+
+    collector.pushReceived();
+    collector.portPushReceived();
+
+    pollAndReply();
+    assertTrue(sent.isEmpty());
+  }
+
+  private static PortEnergyEntries entries(long port, double current) {
+    OFFlexcommPortStatsEntry entry = proxy(OFFlexcommPortStatsEntry.class, (method, args) -> {
+      switch (method) {
+        case "getPortNo":
+          return OFPort.of((int) port);
+        case "getCurrentConsumption":
+          return U64.of(Double.doubleToLongBits(current));
+        case "getPowerDrawn":
+          return U64.of(Double.doubleToLongBits(current * 10));
+        default:
+          return null;
+      }
+    });
+    return PortEnergyEntries.decode(ImmutableList.of(entry));
+  }
+
+  private ScheduledExecutorService executor() {
+    return proxy(ScheduledExecutorService.class, (method, args) -> {
+      if (!method.equals("scheduleAtFixedRate")) {
+        return null;
+      }
+      TimeUnit unit = (TimeUnit) args[3];
+      schedules.add(new long[] {unit.toMillis((Long) args[1]), unit.toMillis((Long) args[2]), now.get()});
+      tasks.add((Runnable) args[0]);
+      return proxy(ScheduledFuture.class, (m, a) -> m.equals("cancel") ? true : null);
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private OpenFlowSwitch sw() {
+    OFFactory factory = proxy(OFFactory.class, (method, args) -> {
+      switch (method) {
+        case "buildFlexcommGlobalEnergyRequest":
+          return builder(OFFlexcommGlobalEnergyRequest.Builder.class, OFFlexcommGlobalEnergyRequest.class);
+        case "buildFlexcommPortEnergyRequest":
+          return builder(OFFlexcommPortEnergyRequest.Builder.class, OFFlexcommPortEnergyRequest.class);
+        default:
+          return null;
+      }
+    });
+    return proxy(OpenFlowSwitch.class, (method, args) -> {
+      switch (method) {
+        case "getId":
+          return DPID;
+        case "getStringId":
+          return Long.toHexString(DPID);
+        case "getRole":
+          return RoleState.MASTER;
+        case "factory":
+          return factory;
+        case "sendMsg":
+          if (args[0] instanceof List) {
+            sent.addAll((List<OFMessage>) args[0]);
+          } else {
+            sent.add((OFMessage) args[0]);
+          }
+          return null;
+        default:
+          return null;
+      }
+    });
+  }
+
+  // builder keeping whatever is set on it and building a message that hands the values back
+  private static <B> B builder(Class<B> builderType, Class<?> messageType) {
+    Map<String, Object> values = Maps.newHashMap();
+    return proxy(builderType, new Handler() {
+      @Override
+      public Object invoke(String method, Object[] args) {
+        if (method.startsWith("set")) {
+          values.put(method.substring(3), args[0]);
+          return proxy(builderType, this);
+        }
+        return proxy(messageType, (m, a) -> m.startsWith("get") ? values.get(m.substring(3)) : null);
+      }
+    });
+  }
+
+  private interface Handler {
+    Object invoke(String method, Object[] args);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, Handler handler) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        (proxy, method, args) -> handler.invoke(method.getName(), args));
+  }
+}
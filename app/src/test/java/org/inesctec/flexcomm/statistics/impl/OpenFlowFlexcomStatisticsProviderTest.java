@@ -0,0 +1,90 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent;
+import org.junit.After;
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.openflow.controller.Dpid;
+
+// drives the provider, the manager and a master-local store end to end with simulated switches on virtual time
+public class OpenFlowFlexcomStatisticsProviderTest {
+
+  private static final int POLL_SECONDS = 1;
+  private static final int ENTRIES_PER_PART = 32;
+
+  // how far a switch's polls may stray from its interval
+  private static final double DRIFT_BOUND_MILLIS = 1;
+
+  private final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+
+  private SimulatedSwitchFleet fleet;
+  private SimulatedFleetPipeline pipeline;
+
+  private void start(SimulatedSwitchFleet simulated) {
+    fleet = simulated.withScheduler(scheduler);
+    pipeline = new SimulatedFleetPipeline(fleet, POLL_SECONDS, scheduler);
+  }
+
+  @After
+  public void tearDown() {
+    if (pipeline != null) {
+      pipeline.stop();
+    }
+  }
+
+  private void run(long seconds) {
+    scheduler.advance(TimeUnit.SECONDS.toMillis(seconds) + 500, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void everySwitchIsPolledIntoTheStore() {
+    start(new SimulatedSwitchFleet(100, 48, ENTRIES_PER_PART, POLL_SECONDS).withLatency(2, 3));
+
+    run(2 * POLL_SECONDS);
+
+    for (Dpid dpid : fleet.dpids()) {
+      DeviceId deviceId = DeviceId.deviceId(Dpid.uri(dpid));
+      assertNotNull(pipeline.manager().getGlobalStatistics(deviceId));
+      assertEquals(48, pipeline.manager().getPortStatistics(deviceId).size());
+    }
+    assertEquals(0, fleet.lost() + fleet.failed());
+    assertTrue(pipeline.events(FlexcommStatisticsEvent.Type.PORT_STATS_UPDATED) >= 100);
+  }
+
+  @Test
+  public void lostAndFailedRequestsTimeOut() {
+    start(new SimulatedSwitchFleet(50, 48, ENTRIES_PER_PART, POLL_SECONDS).withFaults(0.2, 0.1));
+
+    run(4 * POLL_SECONDS);
+
+    long timeouts = 0;
+    for (Dpid dpid : fleet.dpids()) {
+      timeouts += pipeline.polling(dpid).timeouts();
+    }
+    assertTrue("the fleet should have lost and failed requests", fleet.lost() > 0 && fleet.failed() > 0);
+    assertTrue("unanswered requests should time out", timeouts > 0);
+    assertTrue(pipeline.events(FlexcommStatisticsEvent.Type.GLOBAL_STATS_UPDATED) > 0);
+  }
+
+  @Test
+  public void fleetIsPolledWithinTheDriftBound() {
+    int switches = 1000;
+    start(new SimulatedSwitchFleet(switches, 64, ENTRIES_PER_PART, POLL_SECONDS).withLatency(5, 5));
+
+    run(3 * POLL_SECONDS);
+
+    assertTrue("every switch should have been polled again", fleet.drift().count() >= 2 * switches);
+    assertTrue("polls drifted up to " + fleet.drift().maxMillis() + "ms",
+        fleet.drift().maxMillis() <= DRIFT_BOUND_MILLIS);
+    assertEquals(0, fleet.lost() + fleet.failed());
+    for (Dpid dpid : fleet.dpids()) {
+      assertEquals(0, pipeline.polling(dpid).timeouts());
+    }
+  }
+}
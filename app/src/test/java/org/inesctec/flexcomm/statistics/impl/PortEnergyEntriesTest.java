@@ -0,0 +1,88 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.junit.Test;
+import org.onosproject.net.PortNumber;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortStatsEntry;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.U64;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class PortEnergyEntriesTest {
+
+  static OFFlexcommPortStatsEntry entry(OFPort port, double current, double power) {
+    U64 currentBits = U64.of(Double.doubleToLongBits(current));
+    U64 powerBits = U64.of(Double.doubleToLongBits(power));
+    return (OFFlexcommPortStatsEntry) Proxy.newProxyInstance(OFFlexcommPortStatsEntry.class.getClassLoader(),
+        new Class<?>[] {OFFlexcommPortStatsEntry.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getPortNo":
+              return port;
+            case "getCurrentConsumption":
+              return currentBits;
+            case "getPowerDrawn":
+              return powerBits;
+            default:
+              return null;
+          }
+        });
+  }
+
+  static List<OFFlexcommPortStatsEntry> reply(int ports) {
+    List<OFFlexcommPortStatsEntry> entries = Lists.newArrayList();
+    for (int i = 1; i <= ports; i++) {
+      entries.add(entry(OFPort.of(i), i * 0.5, i * 5));
+    }
+    return ImmutableList.copyOf(entries);
+  }
+
+  @Test
+  public void decodesReadingsFromTheirBits() {
+    PortEnergyEntries entries = PortEnergyEntries.decode(reply(3));
+
+    assertEquals(3, entries.size());
+    assertArrayEquals(new long[] {1, 2, 3}, entries.portNumbers());
+    assertArrayEquals(new double[] {0.5, 1, 1.5}, entries.currentConsumption(), 0);
+    assertArrayEquals(new double[] {5, 10, 15}, entries.powerDrawn(), 0);
+  }
+
+  @Test
+  public void skipsEntriesWithoutAValidPort() {
+    List<OFFlexcommPortStatsEntry> reply = Lists.newArrayList(entry(OFPort.of(2), 2, 20), null,
+        entry(null, 3, 30), entry(OFPort.ANY, 4, 40));
+
+    PortEnergyEntries entries = PortEnergyEntries.decode(reply);
+
+    assertEquals(1, entries.size());
+    assertEquals(2, entries.portNumbers()[0]);
+    assertEquals(20, entries.powerDrawn()[0], 0);
+  }
+
+  @Test
+  public void decodedRepliesMatchTheCollectionPath() {
+    PortEnergyEntries entries = PortEnergyEntries.decode(reply(3));
+
+    PortStatisticsSnapshot decoded = PortStatisticsSnapshot.of(entries.portNumbers(), entries.currentConsumption(),
+        entries.powerDrawn(), entries.size());
+
+    assertEquals(PortStatisticsSnapshot.of(ImmutableList.of(stats(1, 0.5, 5), stats(2, 1, 10), stats(3, 1.5, 15))),
+        decoded);
+  }
+
+  private static PortStatistics stats(long port, double current, double power) {
+    return DefaultPortStatistics.builder()
+        .setPortNumber(PortNumber.portNumber(port))
+        .setCurrentConsumption(current)
+        .setPowerDrawn(power)
+        .build();
+  }
+}
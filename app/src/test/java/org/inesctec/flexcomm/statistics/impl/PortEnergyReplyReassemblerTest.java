@@ -0,0 +1,111 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.onosproject.openflow.controller.Dpid;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortEnergyReply;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class PortEnergyReplyReassemblerTest {
+
+  private static final Dpid DPID1 = new Dpid(1);
+  private static final Dpid DPID2 = new Dpid(2);
+
+  private final PortEnergyReplyReassembler reassembler = new PortEnergyReplyReassembler();
+
+  private static OFFlexcommPortStatsEntry entry() {
+    return (OFFlexcommPortStatsEntry) Proxy.newProxyInstance(OFFlexcommPortStatsEntry.class.getClassLoader(),
+        new Class<?>[] {OFFlexcommPortStatsEntry.class}, (proxy, method, args) -> null);
+  }
+
+  private static OFFlexcommPortEnergyReply reply(long xid, boolean more, OFFlexcommPortStatsEntry... entries) {
+    Set<OFStatsReplyFlags> flags = more ? ImmutableSet.of(OFStatsReplyFlags.REPLY_MORE) : ImmutableSet.of();
+    List<OFFlexcommPortStatsEntry> list = ImmutableList.copyOf(entries);
+    return (OFFlexcommPortEnergyReply) Proxy.newProxyInstance(OFFlexcommPortEnergyReply.class.getClassLoader(),
+        new Class<?>[] {OFFlexcommPortEnergyReply.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getXid":
+              return xid;
+            case "getFlags":
+              return flags;
+            case "getEntries":
+              return list;
+            default:
+              return null;
+          }
+        });
+  }
+
+  @Test
+  public void singleReplyIsReturnedAsIs() {
+    OFFlexcommPortStatsEntry e1 = entry();
+
+    assertEquals(ImmutableList.of(e1), reassembler.add(DPID1, reply(1, false, e1)));
+  }
+
+  @Test
+  public void partsAreJoinedInOrder() {
+    OFFlexcommPortStatsEntry e1 = entry();
+    OFFlexcommPortStatsEntry e2 = entry();
+    OFFlexcommPortStatsEntry e3 = entry();
+
+    assertNull(reassembler.add(DPID1, reply(1, true, e1)));
+    assertNull(reassembler.add(DPID1, reply(1, true, e2)));
+
+    assertEquals(ImmutableList.of(e1, e2, e3), reassembler.add(DPID1, reply(1, false, e3)));
+  }
+
+  @Test
+  public void partsAreKeptApartPerSwitch() {
+    OFFlexcommPortStatsEntry e1 = entry();
+    OFFlexcommPortStatsEntry e2 = entry();
+
+    assertNull(reassembler.add(DPID1, reply(1, true, e1)));
+
+    assertEquals(ImmutableList.of(e2), reassembler.add(DPID2, reply(1, false, e2)));
+  }
+
+  @Test
+  public void removedSwitchDropsItsParts() {
+    OFFlexcommPortStatsEntry e1 = entry();
+    OFFlexcommPortStatsEntry e2 = entry();
+    OFFlexcommPortStatsEntry e3 = entry();
+    reassembler.add(DPID1, reply(1, true, e1));
+    reassembler.add(DPID2, reply(1, true, e2));
+
+    reassembler.remove(DPID1);
+
+    assertEquals(ImmutableList.of(e3), reassembler.add(DPID1, reply(1, false, e3)));
+    assertEquals(ImmutableList.of(e2, e3), reassembler.add(DPID2, reply(1, false, e3)));
+  }
+
+  @Test
+  public void stalePartsAreExpired() throws InterruptedException {
+    reassembler.add(DPID1, reply(1, true, entry()));
+
+    assertEquals(0, reassembler.expire(dpid -> Long.MAX_VALUE));
+    Thread.sleep(1);
+    assertEquals(1, reassembler.expire(dpid -> 0));
+    assertEquals(0, reassembler.expire(dpid -> 0));
+  }
+
+  @Test
+  public void eachSwitchExpiresOnItsOwnTimeout() throws InterruptedException {
+    reassembler.add(DPID1, reply(1, true, entry()));
+    reassembler.add(DPID2, reply(1, true, entry()));
+    Thread.sleep(1);
+
+    assertEquals(1, reassembler.expire(dpid -> dpid.equals(DPID1) ? 0 : Long.MAX_VALUE));
+    assertEquals(1, reassembler.expire(dpid -> 0));
+  }
+}
@@ -0,0 +1,37 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.onosproject.net.PortNumber;
+
+public class PortStatisticsSampleTest {
+
+  @Test
+  public void viewsAreBuiltOnce() {
+    PortStatisticsSample sample = new PortStatisticsSample(0,
+        PortStatisticsSnapshotTest.snapshot(new long[] {1, 2}, 3, 5),
+        PortStatisticsSnapshotTest.snapshot(new long[] {1}, 1));
+    sample.warm();
+
+    assertSame(sample.statistics(), sample.statistics());
+    assertSame(sample.deltaStatistics(), sample.deltaStatistics());
+    assertSame(sample.statistics().get(1), sample.statisticsForPort(PortNumber.portNumber(2)));
+    assertEquals(2, sample.deltaStatisticsForPort(PortNumber.portNumber(1)).currentConsumption(), 0);
+    // ports missing from the previous sample have no change yet
+    assertEquals(0, sample.deltaStatisticsForPort(PortNumber.portNumber(2)).currentConsumption(), 0);
+    assertNull(sample.statisticsForPort(PortNumber.portNumber(3)));
+  }
+
+  @Test
+  public void firstSampleHasNoDelta() {
+    PortStatisticsSample sample = new PortStatisticsSample(0,
+        PortStatisticsSnapshotTest.snapshot(new long[] {1}, 1), null);
+
+    assertTrue(sample.deltaStatistics().isEmpty());
+    assertNull(sample.deltaStatisticsForPort(PortNumber.portNumber(1)));
+  }
+}
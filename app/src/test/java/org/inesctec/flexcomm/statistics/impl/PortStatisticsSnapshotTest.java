@@ -0,0 +1,96 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.junit.Test;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.PortNumber;
+
+import com.google.common.collect.ImmutableList;
+
+public class PortStatisticsSnapshotTest {
+
+  static PortStatisticsSnapshot snapshot(long[] ports, double... values) {
+    double[] current = new double[ports.length];
+    double[] power = new double[ports.length];
+    for (int i = 0; i < ports.length; i++) {
+      current[i] = values[i];
+      power[i] = values[i] * 10;
+    }
+    return PortStatisticsSnapshot.of(ports, current, power, ports.length);
+  }
+
+  static PortStatistics stats(long port, double current) {
+    return DefaultPortStatistics.builder()
+        .setPortNumber(PortNumber.portNumber(port))
+        .setCurrentConsumption(current)
+        .setPowerDrawn(current * 10)
+        .setAnnotations(DefaultAnnotations.EMPTY)
+        .build();
+  }
+
+  @Test
+  public void sortsAndDeduplicatesPorts() {
+    PortStatisticsSnapshot snapshot = snapshot(new long[] {3, 1, 3, 2}, 30, 10, 31, 20);
+
+    assertEquals(3, snapshot.size());
+    assertEquals(1, snapshot.portNumber(0));
+    assertEquals(3, snapshot.portNumber(2));
+    assertEquals(31, snapshot.currentConsumption(2), 0);
+    assertEquals(310, snapshot.powerDrawn(2), 0);
+  }
+
+  @Test
+  public void buildsFromCollections() {
+    PortStatisticsSnapshot snapshot = PortStatisticsSnapshot.of(ImmutableList.of(stats(2, 2), stats(1, 1)));
+
+    assertEquals(snapshot(new long[] {1, 2}, 1, 2), snapshot);
+    assertEquals(2, snapshot.get(PortNumber.portNumber(2)).currentConsumption(), 0);
+    assertNull(snapshot.get(PortNumber.portNumber(5)));
+    assertSame(PortStatisticsSnapshot.EMPTY, PortStatisticsSnapshot.of(ImmutableList.of()));
+  }
+
+  @Test
+  public void mergeKeepsUnchangedPorts() {
+    PortStatisticsSnapshot base = snapshot(new long[] {1, 2, 4}, 1, 2, 4);
+
+    PortStatisticsSnapshot merged = base.merge(snapshot(new long[] {2, 3}, 20, 30));
+
+    assertEquals(snapshot(new long[] {1, 2, 3, 4}, 1, 20, 30, 4), merged);
+    assertTrue(base.merge(snapshot(new long[] {4}, 40)).hasSamePorts(base));
+    assertSame(base, base.merge(PortStatisticsSnapshot.EMPTY));
+  }
+
+  @Test
+  public void retainKeepsOwnValuesOfSharedPorts() {
+    PortStatisticsSnapshot base = snapshot(new long[] {1, 2, 4}, 1, 2, 4);
+
+    assertEquals(snapshot(new long[] {2, 4}, 2, 4), base.retain(snapshot(new long[] {2, 3, 4}, 20, 30, 40)));
+    assertSame(base, base.retain(snapshot(new long[] {1, 2, 4}, 0, 0, 0)));
+    assertSame(PortStatisticsSnapshot.EMPTY, base.retain(snapshot(new long[] {5}, 5)));
+  }
+
+  @Test
+  public void deltaIsZeroForNewPorts() {
+    PortStatisticsSnapshot previous = snapshot(new long[] {1, 2}, 1, 2);
+
+    PortStatisticsSnapshot delta = snapshot(new long[] {1, 2, 3}, 5, 2, 7).delta(previous);
+
+    assertEquals(snapshot(new long[] {1, 2, 3}, 4, 0, 0), delta);
+  }
+
+  @Test
+  public void statisticsAreSortedByPort() {
+    List<PortStatistics> statistics = snapshot(new long[] {7, 5}, 7, 5).statistics();
+
+    assertEquals(PortNumber.portNumber(5), statistics.get(0).portNumber());
+    assertEquals(PortNumber.portNumber(7), statistics.get(1).portNumber());
+  }
+}
@@ -0,0 +1,142 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.MASTER_LOCAL_STATS;
+import static org.inesctec.flexcomm.statistics.impl.OsgiPropertyConstants.POLL_FREQ;
+import static org.onosproject.net.NetTestTools.injectEventDispatcher;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent;
+import org.inesctec.flexcomm.statistics.api.PollingStatistics;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.packet.IpAddress;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.cluster.ClusterServiceAdapter;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.event.Event;
+import org.onosproject.event.EventDeliveryService;
+import org.onosproject.event.EventSink;
+import org.onosproject.mastership.MastershipServiceAdapter;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.config.NetworkConfigRegistryAdapter;
+import org.onosproject.net.config.NetworkConfigServiceAdapter;
+import org.onosproject.net.device.DeviceServiceAdapter;
+import org.onosproject.openflow.controller.Dpid;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationServiceAdapter;
+import org.onosproject.store.service.TestStorageService;
+
+import com.google.common.collect.Maps;
+
+// the provider, the manager and a master-local store wired end to end to a simulated fleet
+final class SimulatedFleetPipeline {
+
+  private final Map<FlexcommStatisticsEvent.Type, LongAdder> events = Maps.newConcurrentMap();
+
+  private final SimulatedSwitchFleet fleet;
+  private final DistributedFlexcommStatisticsStore store;
+  private final FlexcommStatisticsManager manager;
+  private final OpenFlowFlexcomStatisticsProvider provider;
+
+  // polls on real threads, or on the given scheduler's virtual time when there is one
+  SimulatedFleetPipeline(SimulatedSwitchFleet fleet, int pollSeconds, VirtualTimeScheduler scheduler) {
+    this.fleet = fleet;
+
+    store = new DistributedFlexcommStatisticsStore();
+    store.storageService = new TestStorageService();
+    store.cfgService = new ComponentConfigAdapter();
+    store.mastershipService = new MastershipServiceAdapter();
+    store.clusterService = new TestClusterService();
+    store.clusterCommunicator = new ClusterCommunicationServiceAdapter();
+    store.metricsService = new MetricsManager();
+    store.netCfgService = new NetworkConfigServiceAdapter();
+    store.activate(TestUtils.componentContext(MASTER_LOCAL_STATS, true));
+
+    manager = new FlexcommStatisticsManager();
+    manager.store = store;
+    manager.deviceService = new DeviceServiceAdapter();
+    manager.cfgService = new ComponentConfigAdapter();
+    manager.netCfgService = new NetworkConfigRegistryAdapter();
+    injectEventDispatcher(manager, dispatcher());
+    manager.activate(TestUtils.componentContext());
+    manager.addListener(event -> events.computeIfAbsent(event.type(), t -> new LongAdder()).increment());
+
+    provider = scheduler == null ? new OpenFlowFlexcomStatisticsProvider() : new OpenFlowFlexcomStatisticsProvider() {
+      @Override
+      ScheduledExecutorService newExecutor(int threads, String pattern) {
+        return scheduler;
+      }
+    };
+    if (scheduler != null) {
+      provider.wallClock = scheduler::currentTimeMillis;
+      provider.nanoClock = scheduler::nanoTime;
+    }
+    provider.cfgService = new ComponentConfigAdapter();
+    provider.openFlowController = fleet.controller();
+    provider.providerRegistry = manager;
+    provider.metricsService = new MetricsManager();
+    provider.netCfgService = new NetworkConfigServiceAdapter();
+    provider.activate(TestUtils.componentContext(POLL_FREQ, pollSeconds));
+
+    fleet.connect();
+  }
+
+  FlexcommStatisticsManager manager() {
+    return manager;
+  }
+
+  PollingStatistics polling(Dpid dpid) {
+    return provider.getPollingStatistics(DeviceId.deviceId(Dpid.uri(dpid)));
+  }
+
+  long events(FlexcommStatisticsEvent.Type type) {
+    LongAdder count = events.get(type);
+    return count != null ? count.sum() : 0;
+  }
+
+  void stop() {
+    provider.deactivate(TestUtils.componentContext());
+    manager.deactivate(TestUtils.componentContext());
+    store.deactivate();
+    fleet.shutdown();
+  }
+
+  // delivers events synchronously to the sink registered for their class
+  @SuppressWarnings("unchecked")
+  private static EventDeliveryService dispatcher() {
+    Map<Class<?>, EventSink<Event>> sinks = Maps.newConcurrentMap();
+    return (EventDeliveryService) Proxy.newProxyInstance(EventDeliveryService.class.getClassLoader(),
+        new Class<?>[] {EventDeliveryService.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "addSink":
+              sinks.put((Class<?>) args[0], (EventSink<Event>) args[1]);
+              return null;
+            case "removeSink":
+              sinks.remove(args[0]);
+              return null;
+            case "post":
+              EventSink<Event> sink = sinks.get(args[0].getClass());
+              if (sink != null) {
+                sink.process((Event) args[0]);
+              }
+              return null;
+            default:
+              return null;
+          }
+        });
+  }
+
+  private static final class TestClusterService extends ClusterServiceAdapter {
+    private final ControllerNode localNode =
+        new DefaultControllerNode(NodeId.nodeId("node1"), IpAddress.valueOf("127.0.0.1"));
+
+    @Override
+    public ControllerNode getLocalNode() {
+      return localNode;
+    }
+  }
+}
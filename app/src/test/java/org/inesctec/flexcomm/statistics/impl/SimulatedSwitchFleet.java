@@ -0,0 +1,437 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.inesctec.flexcomm.statistics.impl.OpenFlowFlexcomStatisticsProvider.FLEXCOMM_EXPERIMENTER;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.onosproject.openflow.controller.Dpid;
+import org.onosproject.openflow.controller.OpenFlowController;
+import org.onosproject.openflow.controller.OpenFlowEventListener;
+import org.onosproject.openflow.controller.OpenFlowSwitch;
+import org.onosproject.openflow.controller.OpenFlowSwitchListener;
+import org.onosproject.openflow.controller.RoleState;
+import org.projectfloodlight.openflow.protocol.OFBadRequestCode;
+import org.projectfloodlight.openflow.protocol.OFErrorType;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlexcommGlobalEnergyReply;
+import org.projectfloodlight.openflow.protocol.OFFlexcommGlobalEnergyRequest;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortEnergyReply;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortEnergyRequest;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFFlexcommSubtype;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+import org.projectfloodlight.openflow.protocol.OFStatsType;
+import org.projectfloodlight.openflow.protocol.OFType;
+import org.projectfloodlight.openflow.protocol.errormsg.OFBadRequestErrorMsg;
+import org.projectfloodlight.openflow.types.OFPort;
+import org.projectfloodlight.openflow.types.U64;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+// in-process Flexcomm switches answering energy requests through a fake controller, with simulated network faults
+final class SimulatedSwitchFleet {
+
+  private static final int NETWORK_THREADS = 4;
+
+  private final int ports;
+  private final int entriesPerPart;
+  private final long expectedIntervalNanos;
+  private long latencyMillis;
+  private long jitterMillis;
+  private double loss;
+  private double errors;
+
+  private final Map<Dpid, OpenFlowSwitch> switches = Maps.newConcurrentMap();
+  private final List<OpenFlowSwitchListener> switchListeners = new CopyOnWriteArrayList<>();
+  private final List<OpenFlowEventListener> eventListeners = new CopyOnWriteArrayList<>();
+  private final OpenFlowController controller;
+  private ScheduledExecutorService network = Executors.newScheduledThreadPool(NETWORK_THREADS);
+  private LongSupplier nanoClock = System::nanoTime;
+  private final Random random = new Random(19);
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder replies = new LongAdder();
+  private final LongAdder lost = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final Map<Dpid, Long> lastGlobalRequest = Maps.newConcurrentMap();
+  private final Stage drift = new Stage();
+  private final Stage handling = new Stage();
+
+  SimulatedSwitchFleet(int switchCount, int ports, int entriesPerPart, int pollIntervalSeconds) {
+    this.ports = ports;
+    this.entriesPerPart = entriesPerPart;
+    this.expectedIntervalNanos = TimeUnit.SECONDS.toNanos(pollIntervalSeconds);
+    for (long id = 1; id <= switchCount; id++) {
+      Dpid dpid = new Dpid(id);
+      switches.put(dpid, simulatedSwitch(dpid));
+    }
+    controller = proxy(OpenFlowController.class, (method, args) -> {
+      switch (method.getName()) {
+        case "getSwitch":
+          return switches.get(args[0]);
+        case "getSwitches":
+        case "getMasterSwitches":
+          return ImmutableList.copyOf(switches.values());
+        case "addListener":
+          return args[0] instanceof OpenFlowSwitchListener && switchListeners.add((OpenFlowSwitchListener) args[0]);
+        case "removeListener":
+          return switchListeners.remove(args[0]);
+        case "addEventListener":
+          return eventListeners.add((OpenFlowEventListener) args[0]);
+        case "removeEventListener":
+          return eventListeners.remove(args[0]);
+        default:
+          return defaultValue(method);
+      }
+    });
+  }
+
+  SimulatedSwitchFleet withLatency(long latencyMillis, long jitterMillis) {
+    this.latencyMillis = latencyMillis;
+    this.jitterMillis = jitterMillis;
+    return this;
+  }
+
+  // delivers replies on the given scheduler and times requests on its clock, for runs on virtual time
+  SimulatedSwitchFleet withScheduler(VirtualTimeScheduler scheduler) {
+    network.shutdownNow();
+    this.network = scheduler;
+    this.nanoClock = scheduler::nanoTime;
+    return this;
+  }
+
+  // fractions of requests that go unanswered or are answered with an error
+  SimulatedSwitchFleet withFaults(double loss, double errors) {
+    this.loss = loss;
+    this.errors = errors;
+    return this;
+  }
+
+  OpenFlowController controller() {
+    return controller;
+  }
+
+  Collection<Dpid> dpids() {
+    return switches.keySet();
+  }
+
+  void connect() {
+    switches.keySet().forEach(dpid -> switchListeners.forEach(listener -> listener.switchAdded(dpid)));
+  }
+
+  void shutdown() {
+    network.shutdownNow();
+  }
+
+  long requests() {
+    return requests.sum();
+  }
+
+  long replies() {
+    return replies.sum();
+  }
+
+  long lost() {
+    return lost.sum();
+  }
+
+  long failed() {
+    return failed.sum();
+  }
+
+  // how far each switch's global requests strayed from the poll interval
+  Stage drift() {
+    return drift;
+  }
+
+  // time the controller's listeners take to process one reply, store update included
+  Stage handling() {
+    return handling;
+  }
+
+  private OpenFlowSwitch simulatedSwitch(Dpid dpid) {
+    OFFactory factory = proxy(OFFactory.class, (method, args) -> {
+      switch (method.getName()) {
+        case "buildFlexcommGlobalEnergyRequest":
+          return requestBuilder(OFFlexcommGlobalEnergyRequest.Builder.class, OFFlexcommGlobalEnergyRequest.class,
+              OFFlexcommSubtype.GLOBAL_ENERGY);
+        case "buildFlexcommPortEnergyRequest":
+          return requestBuilder(OFFlexcommPortEnergyRequest.Builder.class, OFFlexcommPortEnergyRequest.class,
+              OFFlexcommSubtype.PORT_ENERGY);
+        default:
+          return defaultValue(method);
+      }
+    });
+    AtomicLong xids = new AtomicLong(1);
+    return proxy(OpenFlowSwitch.class, (method, args) -> {
+      switch (method.getName()) {
+        case "getId":
+          return dpid.value();
+        case "getStringId":
+          return dpid.toString();
+        case "getRole":
+          return RoleState.MASTER;
+        case "isConnected":
+          return true;
+        case "factory":
+          return factory;
+        case "sendMsg":
+          if (args[0] instanceof List) {
+            for (Object request : (List<?>) args[0]) {
+              received(dpid, (OFMessage) request);
+            }
+          } else {
+            received(dpid, (OFMessage) args[0]);
+          }
+          return null;
+        default:
+          return defaultValue(method);
+      }
+    });
+  }
+
+  private void received(Dpid dpid, OFMessage request) {
+    requests.increment();
+    long now = nanoClock.getAsLong();
+    if (request instanceof OFFlexcommGlobalEnergyRequest) {
+      Long last = lastGlobalRequest.put(dpid, now);
+      if (last != null) {
+        drift.record(Math.abs(now - last - expectedIntervalNanos));
+      }
+    }
+
+    if (random.nextDouble() < loss) {
+      lost.increment();
+      return;
+    }
+    List<OFMessage> answer;
+    if (random.nextDouble() < errors) {
+      failed.increment();
+      answer = ImmutableList.of(error(request.getXid()));
+    } else if (request instanceof OFFlexcommGlobalEnergyRequest) {
+      answer = ImmutableList.of(globalReply(request.getXid(), 1 + random.nextDouble()));
+    } else {
+      answer = portReplies(request.getXid(), ((OFFlexcommPortEnergyRequest) request).getPortNo());
+    }
+
+    long delay = latencyMillis + (jitterMillis > 0 ? random.nextInt((int) jitterMillis + 1) : 0);
+    network.schedule(() -> answer.forEach(reply -> deliver(dpid, reply)), delay, TimeUnit.MILLISECONDS);
+  }
+
+  private void deliver(Dpid dpid, OFMessage reply) {
+    long start = nanoClock.getAsLong();
+    for (OpenFlowEventListener listener : eventListeners) {
+      listener.handleMessage(dpid, reply);
+    }
+    handling.record(nanoClock.getAsLong() - start);
+    replies.increment();
+  }
+
+  private OFMessage globalReply(long xid, double current) {
+    U64 currentBits = U64.of(Double.doubleToLongBits(current));
+    U64 powerBits = U64.of(Double.doubleToLongBits(current * 230));
+    return reply(OFFlexcommGlobalEnergyReply.class, xid, OFFlexcommSubtype.GLOBAL_ENERGY, ImmutableSet.of(),
+        (method, args) -> {
+          switch (method.getName()) {
+            case "getCurrentConsumption":
+              return currentBits;
+            case "getPowerDrawn":
+              return powerBits;
+            default:
+              return defaultValue(method);
+          }
+        });
+  }
+
+  // a sweep is split into multipart replies, a single port is answered on its own
+  private List<OFMessage> portReplies(long xid, OFPort port) {
+    List<OFFlexcommPortStatsEntry> entries = Lists.newArrayList();
+    if (OFPort.ANY.equals(port)) {
+      for (int p = 1; p <= ports; p++) {
+        entries.add(entry(OFPort.of(p), random.nextDouble()));
+      }
+    } else {
+      entries.add(entry(port, random.nextDouble()));
+    }
+
+    List<OFMessage> parts = Lists.newArrayList();
+    List<List<OFFlexcommPortStatsEntry>> partitions = Lists.partition(entries, entriesPerPart);
+    for (int i = 0; i < partitions.size(); i++) {
+      List<OFFlexcommPortStatsEntry> part = ImmutableList.copyOf(partitions.get(i));
+      Set<OFStatsReplyFlags> flags = i < partitions.size() - 1 ? ImmutableSet.of(OFStatsReplyFlags.REPLY_MORE)
+          : ImmutableSet.of();
+      parts.add(reply(OFFlexcommPortEnergyReply.class, xid, OFFlexcommSubtype.PORT_ENERGY, flags,
+          (method, args) -> method.getName().equals("getEntries") ? part : defaultValue(method)));
+    }
+    return parts;
+  }
+
+  private static OFFlexcommPortStatsEntry entry(OFPort port, double current) {
+    U64 currentBits = U64.of(Double.doubleToLongBits(current));
+    U64 powerBits = U64.of(Double.doubleToLongBits(current * 230));
+    return proxy(OFFlexcommPortStatsEntry.class, (method, args) -> {
+      switch (method.getName()) {
+        case "getPortNo":
+          return port;
+        case "getCurrentConsumption":
+          return currentBits;
+        case "getPowerDrawn":
+          return powerBits;
+        default:
+          return defaultValue(method);
+      }
+    });
+  }
+
+  private static <T extends OFMessage> T reply(Class<T> type, long xid, OFFlexcommSubtype subtype,
+      Set<OFStatsReplyFlags> flags, Handler body) {
+    return proxy(type, (method, args) -> {
+      switch (method.getName()) {
+        case "getType":
+          return OFType.STATS_REPLY;
+        case "getStatsType":
+          return OFStatsType.EXPERIMENTER;
+        case "getExperimenter":
+          return FLEXCOMM_EXPERIMENTER;
+        case "getSubtype":
+          return (long) subtype.ordinal();
+        case "getXid":
+          return xid;
+        case "getFlags":
+          return flags;
+        default:
+          return body.invoke(method, args);
+      }
+    });
+  }
+
+  // an error the provider does not act on, so the request is left to time out
+  private static OFMessage error(long xid) {
+    return proxy(OFBadRequestErrorMsg.class, (method, args) -> {
+      switch (method.getName()) {
+        case "getType":
+          return OFType.ERROR;
+        case "getErrType":
+          return OFErrorType.BAD_REQUEST;
+        case "getCode":
+          return OFBadRequestCode.BAD_MULTIPART;
+        case "getXid":
+          return xid;
+        default:
+          return defaultValue(method);
+      }
+    });
+  }
+
+  // builder keeping the xid and port set on it, building a request that hands them back
+  private static <B> B requestBuilder(Class<B> builderType, Class<? extends OFMessage> requestType,
+      OFFlexcommSubtype subtype) {
+    Map<String, Object> values = Maps.newHashMap();
+    return proxy(builderType, new Handler() {
+      @Override
+      public Object invoke(Method method, Object[] args) {
+        if (method.getName().startsWith("set")) {
+          values.put(method.getName().substring(3), args[0]);
+          return proxy(builderType, this);
+        }
+        return proxy(requestType, (m, a) -> {
+          switch (m.getName()) {
+            case "getType":
+              return OFType.STATS_REQUEST;
+            case "getStatsType":
+              return OFStatsType.EXPERIMENTER;
+            case "getExperimenter":
+              return FLEXCOMM_EXPERIMENTER;
+            case "getSubtype":
+              return (long) subtype.ordinal();
+            case "getXid":
+            case "getPortNo":
+              return values.get(m.getName().substring(3));
+            default:
+              return defaultValue(m);
+          }
+        });
+      }
+    });
+  }
+
+  private static Object defaultValue(Method method) {
+    Class<?> type = method.getReturnType();
+    if (type == boolean.class) {
+      return false;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    } else if (type == double.class) {
+      return 0.0;
+    }
+    return null;
+  }
+
+  private interface Handler {
+    Object invoke(Method method, Object[] args);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, Handler handler) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        (proxy, method, args) -> {
+          if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+              case "equals":
+                return proxy == args[0];
+              case "hashCode":
+                return System.identityHashCode(proxy);
+              default:
+                return type.getSimpleName();
+            }
+          }
+          return handler.invoke(method, args);
+        });
+  }
+
+  // count, mean and max of a duration in nanoseconds
+  static final class Stage {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    private void record(long nanos) {
+      count.increment();
+      total.add(nanos);
+      max.accumulateAndGet(nanos, Math::max);
+    }
+
+    long count() {
+      return count.sum();
+    }
+
+    double meanMillis() {
+      long n = count.sum();
+      return n == 0 ? 0 : total.sum() / (double) n / 1e6;
+    }
+
+    double maxMillis() {
+      return max.get() / 1e6;
+    }
+  }
+}
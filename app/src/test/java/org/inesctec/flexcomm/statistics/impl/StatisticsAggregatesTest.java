@@ -0,0 +1,124 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.inesctec.flexcomm.statistics.api.AggregateStatistics;
+import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.junit.Test;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class StatisticsAggregatesTest {
+
+  private static final DeviceId DID1 = DeviceId.deviceId("of:0000000000000001");
+  private static final DeviceId DID2 = DeviceId.deviceId("of:0000000000000002");
+
+  static PortStatistics port(long port, double currentConsumption, double powerDrawn) {
+    return DefaultPortStatistics.builder()
+        .setPortNumber(PortNumber.portNumber(port))
+        .setCurrentConsumption(currentConsumption)
+        .setPowerDrawn(powerDrawn)
+        .setAnnotations(DefaultAnnotations.EMPTY)
+        .build();
+  }
+
+  @Test
+  public void fullUpdateReplacesTheDevicePorts() {
+    StatisticsAggregates aggregates = new StatisticsAggregates();
+    aggregates.update(DID1, ImmutableList.of(port(1, 1, 10), port(2, 2, 20), port(3, 3, 30)));
+    aggregates.update(DID2, ImmutableList.of(port(1, 5, 50)));
+
+    aggregates.update(DID1, ImmutableList.of(port(1, 1, 10), port(3, 4, 40)));
+
+    assertEquals(2, aggregates.device(DID1).ports());
+    assertEquals(50, aggregates.device(DID1).powerDrawn(), 0);
+    assertEquals(3, aggregates.total().ports());
+    assertEquals(10, aggregates.total().currentConsumption(), 0);
+    assertEquals(100, aggregates.total().powerDrawn(), 0);
+  }
+
+  @Test
+  public void mergeOnlyMovesTheGivenPorts() {
+    StatisticsAggregates aggregates = new StatisticsAggregates();
+    aggregates.update(DID1, ImmutableList.of(port(1, 1, 10), port(2, 2, 20)));
+    aggregates.update(DID2, ImmutableList.of(port(1, 5, 50)));
+
+    aggregates.merge(DID1, ImmutableList.of(port(2, 7, 70), port(4, 1, 5)));
+
+    AggregateStatistics device = aggregates.device(DID1);
+    assertEquals(3, device.ports());
+    assertEquals(9, device.currentConsumption(), 0);
+    assertEquals(85, device.powerDrawn(), 0);
+    assertEquals(135, aggregates.total().powerDrawn(), 0);
+    List<AggregateStatistics> top = aggregates.topPorts(2);
+    assertEquals(PortNumber.portNumber(2), top.get(0).portNumber());
+    assertEquals(DID2, top.get(1).deviceId());
+    assertEquals(DID1, aggregates.topDevices(1).get(0).deviceId());
+  }
+
+  @Test
+  public void emptyFullUpdateRemovesTheDevice() {
+    StatisticsAggregates aggregates = new StatisticsAggregates();
+    aggregates.update(DID1, ImmutableList.of(port(1, 1, 10)));
+    aggregates.merge(DID2, ImmutableList.of(port(1, 5, 50)));
+
+    aggregates.update(DID1, ImmutableList.of());
+
+    assertNull(aggregates.device(DID1));
+    assertEquals(1, aggregates.total().ports());
+    assertEquals(50, aggregates.total().powerDrawn(), 0);
+    assertEquals(1, aggregates.topPorts(10).size());
+  }
+
+  @Test
+  public void deltasMatchARescan() {
+    StatisticsAggregates aggregates = new StatisticsAggregates();
+    Map<DeviceId, Map<Long, PortStatistics>> reference = Maps.newHashMap();
+    Random random = new Random(7);
+    for (int i = 0; i < 2000; i++) {
+      DeviceId deviceId = DeviceId.deviceId("of:" + random.nextInt(5));
+      List<PortStatistics> statistics = Lists.newArrayList();
+      for (int port = 1; port <= 8; port++) {
+        if (random.nextInt(3) == 0) {
+          statistics.add(port(port, random.nextInt(100), random.nextInt(1000)));
+        }
+      }
+      Map<Long, PortStatistics> ports = reference.computeIfAbsent(deviceId, d -> Maps.newHashMap());
+      if (random.nextBoolean()) {
+        aggregates.merge(deviceId, statistics);
+      } else {
+        aggregates.update(deviceId, statistics);
+        ports.clear();
+      }
+      statistics.forEach(stats -> ports.put(stats.portNumber().toLong(), stats));
+    }
+
+    double powerDrawn = 0;
+    int ports = 0;
+    for (Map.Entry<DeviceId, Map<Long, PortStatistics>> device : reference.entrySet()) {
+      double devicePower = device.getValue().values().stream().mapToDouble(PortStatistics::powerDrawn).sum();
+      if (device.getValue().isEmpty()) {
+        assertNull(aggregates.device(device.getKey()));
+      } else {
+        assertEquals(devicePower, aggregates.device(device.getKey()).powerDrawn(), 1e-6);
+        assertEquals(device.getValue().size(), aggregates.device(device.getKey()).ports());
+      }
+      powerDrawn += devicePower;
+      ports += device.getValue().size();
+    }
+    assertEquals(powerDrawn, aggregates.total().powerDrawn(), 1e-6);
+    assertEquals(ports, aggregates.total().ports());
+    assertEquals(ports, aggregates.topPorts(Integer.MAX_VALUE).size());
+  }
+}
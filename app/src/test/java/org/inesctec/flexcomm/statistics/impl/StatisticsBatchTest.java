@@ -0,0 +1,71 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.inesctec.flexcomm.statistics.impl.PortEnergyEntriesTest.entry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortStatsEntry;
+import org.projectfloodlight.openflow.types.OFPort;
+
+import com.google.common.collect.ImmutableList;
+
+public class StatisticsBatchTest {
+
+  private static final DeviceId DID1 = DeviceId.deviceId("of:0000000000000001");
+  private static final DeviceId DID2 = DeviceId.deviceId("of:0000000000000002");
+
+  // a reply for the given ports, each reading the given power
+  private static PortEnergyEntries ports(double power, long... ports) {
+    ImmutableList.Builder<OFFlexcommPortStatsEntry> reply = ImmutableList.builder();
+    for (long port : ports) {
+      reply.add(entry(OFPort.of((int) port), power / 10, power));
+    }
+    return PortEnergyEntries.decode(reply.build());
+  }
+
+  // the port as the store would keep it from the batch
+  private static double powerDrawn(StatisticsBatch batch, DeviceId deviceId, long port) {
+    return PortStatisticsSnapshot.of(batch.portStatistics().get(deviceId)).get(PortNumber.portNumber(port))
+        .powerDrawn();
+  }
+
+  @Test
+  public void mergeAfterAFullUpdateIsFoldedIntoIt() {
+    StatisticsBatch batch = new StatisticsBatch();
+    batch.addPorts(DID1, ports(10, 1, 2, 3));
+    batch.mergePorts(DID1, ports(20, 2));
+    batch.mergePorts(DID1, ports(30, 2, 3));
+
+    assertEquals(10, powerDrawn(batch, DID1, 1), 0);
+    assertEquals(30, powerDrawn(batch, DID1, 2), 0);
+    assertEquals(30, powerDrawn(batch, DID1, 3), 0);
+    assertTrue(batch.mergedPortStatistics().isEmpty());
+  }
+
+  @Test
+  public void fullUpdateReplacesEarlierMerges() {
+    StatisticsBatch batch = new StatisticsBatch();
+    batch.mergePorts(DID1, ports(20, 2));
+    batch.addPorts(DID1, ports(10, 1, 2));
+
+    assertEquals(10, powerDrawn(batch, DID1, 2), 0);
+    assertFalse(batch.mergedPortStatistics().containsKey(DID1));
+  }
+
+  @Test
+  public void mergesWithoutAFullUpdateAreKeptApart() {
+    StatisticsBatch batch = new StatisticsBatch();
+    batch.addPorts(DID1, ports(10, 1));
+    batch.mergePorts(DID2, ports(20, 4));
+    batch.mergePorts(DID2, ports(40, 4, 5));
+
+    assertFalse(batch.portStatistics().containsKey(DID2));
+    PortStatisticsSnapshot merged = PortStatisticsSnapshot.of(batch.mergedPortStatistics().get(DID2));
+    assertEquals(40, merged.get(PortNumber.portNumber(4)).powerDrawn(), 0);
+    assertEquals(2, merged.statistics().size());
+  }
+}
@@ -0,0 +1,69 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.inesctec.flexcomm.statistics.api.DefaultGlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+import org.junit.Test;
+import org.onosproject.net.DefaultAnnotations;
+
+public class StatisticsDeadbandTest {
+
+  private static GlobalStatisticsSample sample(double current, double power) {
+    return new GlobalStatisticsSample(0, current, power, false, 0, 0);
+  }
+
+  private static GlobalStatistics stats(double current, double power) {
+    return DefaultGlobalStatistics.builder()
+        .setCurrentConsumption(current)
+        .setPowerDrawn(power)
+        .setAnnotations(DefaultAnnotations.EMPTY)
+        .build();
+  }
+
+  private static PortStatisticsSample portSample(long[] ports, double... values) {
+    return new PortStatisticsSample(0, PortStatisticsSnapshotTest.snapshot(ports, values), null);
+  }
+
+  @Test
+  public void disabledDeadbandSuppressesNothing() {
+    assertFalse(StatisticsDeadband.NONE.suppresses(sample(1, 10), stats(1, 10)));
+  }
+
+  @Test
+  public void unchangedZeroIsWithinRelativeDeadband() {
+    StatisticsDeadband deadband = new StatisticsDeadband(0, 0.1, 0, 0.1);
+
+    assertTrue(deadband.suppresses(sample(0, 0), stats(0, 0)));
+    assertFalse(deadband.suppresses(sample(0, 0), stats(0.001, 0)));
+  }
+
+  @Test
+  public void fieldWithoutDeadbandOnlyAcceptsUnchangedReadings() {
+    StatisticsDeadband deadband = new StatisticsDeadband(0, 0, 1, 0);
+
+    assertTrue(deadband.suppresses(sample(2, 10), stats(2, 10.5)));
+    assertFalse(deadband.suppresses(sample(2, 10), stats(2.5, 10.5)));
+  }
+
+  @Test
+  public void thresholdsAreExclusive() {
+    StatisticsDeadband deadband = new StatisticsDeadband(0.5, 0, 0, 0.1);
+
+    assertTrue(deadband.suppresses(sample(2, 10), stats(2.25, 10.5)));
+    assertFalse(deadband.suppresses(sample(2, 10), stats(2.5, 10)));
+    assertFalse(deadband.suppresses(sample(2, 10), stats(2, 11)));
+  }
+
+  @Test
+  public void portsMustAllBeWithin() {
+    StatisticsDeadband deadband = new StatisticsDeadband(1, 0, 1, 0);
+    PortStatisticsSample stored = portSample(new long[] {1, 2}, 1, 2);
+
+    assertTrue(deadband.suppresses(stored, PortStatisticsSnapshotTest.snapshot(new long[] {1, 2}, 1, 2)));
+    assertFalse(deadband.suppresses(stored, PortStatisticsSnapshotTest.snapshot(new long[] {1, 2}, 1, 4)));
+    assertFalse(deadband.suppresses(stored, PortStatisticsSnapshotTest.snapshot(new long[] {1, 2, 3}, 1, 2, 3)));
+    assertFalse(deadband.suppresses(null, PortStatisticsSnapshotTest.snapshot(new long[] {1}, 1)));
+  }
+}
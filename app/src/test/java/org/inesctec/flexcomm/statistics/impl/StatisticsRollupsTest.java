@@ -0,0 +1,77 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.inesctec.flexcomm.statistics.api.RollupResolution.FIFTEEN_MINUTES;
+import static org.inesctec.flexcomm.statistics.api.RollupResolution.ONE_MINUTE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.inesctec.flexcomm.statistics.api.StatisticsRollup;
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+public class StatisticsRollupsTest {
+
+  private static final DeviceId DID1 = DeviceId.deviceId("of:0000000000000001");
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+  private static final long START = 1_000 * MINUTE;
+
+  @Test
+  public void globalReadingsAreRolledUpPerBucket() {
+    StatisticsRollups rollups = new StatisticsRollups(false);
+    rollups.addGlobal(DID1, START, 1, 10);
+    rollups.addGlobal(DID1, START + 20_000, 3, 5);
+    rollups.addGlobal(DID1, START + MINUTE, 2, 20);
+
+    List<StatisticsRollup> minutes = rollups.globalRollup(DID1, ONE_MINUTE, START + MINUTE);
+
+    assertEquals(2, minutes.size());
+    StatisticsRollup first = minutes.get(0);
+    assertEquals(START, first.startTime());
+    assertEquals(2, first.count());
+    assertEquals(4, first.currentConsumptionSum(), 0);
+    assertEquals(1, first.currentConsumptionMin(), 0);
+    assertEquals(10, first.powerDrawnMax(), 0);
+    assertEquals(5, first.powerDrawnLast(), 0);
+    assertEquals(START + MINUTE, minutes.get(1).startTime());
+
+    List<StatisticsRollup> quarters = rollups.globalRollup(DID1, FIFTEEN_MINUTES, START + MINUTE);
+    assertEquals(1, quarters.size());
+    assertEquals(3, quarters.get(0).count());
+  }
+
+  @Test
+  public void bucketsOutsideTheWindowAreDropped() {
+    StatisticsRollups rollups = new StatisticsRollups(false);
+    rollups.addGlobal(DID1, START, 1, 10);
+    long later = START + ONE_MINUTE.buckets() * MINUTE;
+    rollups.addGlobal(DID1, later, 2, 20);
+    // the bucket this late reading belongs to has been reused
+    rollups.addGlobal(DID1, START + 1_000, 5, 50);
+
+    List<StatisticsRollup> minutes = rollups.globalRollup(DID1, ONE_MINUTE, later);
+
+    assertEquals(1, minutes.size());
+    assertEquals(later, minutes.get(0).startTime());
+    assertEquals(1, minutes.get(0).count());
+  }
+
+  @Test
+  public void portRollupsAreOptIn() {
+    StatisticsRollups rollups = new StatisticsRollups(OsgiPropertyConstants.PORT_STATS_ROLLUPS_DEFAULT);
+    rollups.addPorts(DID1, START, PortStatisticsSnapshotTest.snapshot(new long[] {1, 2}, 1, 2));
+    assertTrue(rollups.portRollup(DID1, PortNumber.portNumber(1), ONE_MINUTE, START).isEmpty());
+
+    rollups.setPortRollups(true);
+    rollups.addPorts(DID1, START, PortStatisticsSnapshotTest.snapshot(new long[] {1, 2}, 1, 2));
+    List<StatisticsRollup> port = rollups.portRollup(DID1, PortNumber.portNumber(2), ONE_MINUTE, START);
+    assertEquals(1, port.size());
+    assertEquals(20, port.get(0).powerDrawnSum(), 0);
+
+    rollups.setPortRollups(false);
+    assertTrue(rollups.portRollup(DID1, PortNumber.portNumber(2), ONE_MINUTE, START).isEmpty());
+  }
+}
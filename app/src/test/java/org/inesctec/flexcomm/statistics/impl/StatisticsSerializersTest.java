@@ -0,0 +1,119 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.inesctec.flexcomm.statistics.api.DefaultGlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.junit.Test;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.Serializer;
+
+import com.esotericsoftware.kryo.io.Input;
+
+public class StatisticsSerializersTest {
+
+  private static final Serializer SERIALIZER =
+      Serializer.using(DistributedFlexcommStatisticsStore.SERIALIZER_BUILDER.build());
+
+  private static final DeviceId DID1 = DeviceId.deviceId("of:0000000000000001");
+
+  private static <T> T roundTrip(T object) {
+    return SERIALIZER.decode(SERIALIZER.encode(object));
+  }
+
+  @Test
+  public void portStatisticsRoundTrip() {
+    DefaultPortStatistics.Builder builder = (DefaultPortStatistics.Builder) DefaultPortStatistics.builder();
+    builder.setDeviceId(DID1);
+    DefaultPortStatistics stats = (DefaultPortStatistics) builder
+        .setPortNumber(PortNumber.portNumber(7, "eth7"))
+        .setCurrentConsumption(1.5)
+        .setPowerDrawn(15)
+        .setAnnotations(DefaultAnnotations.builder().set("unit", "W").build())
+        .build();
+
+    DefaultPortStatistics decoded = roundTrip(stats);
+
+    assertEquals(DID1, decoded.deviceId());
+    assertEquals("eth7", decoded.portNumber().name());
+    assertEquals(1.5, decoded.currentConsumption(), 0);
+    assertEquals(15, decoded.powerDrawn(), 0);
+    assertEquals("W", decoded.annotations().value("unit"));
+  }
+
+  @Test
+  public void portStatisticsWithoutPortRoundTrip() {
+    DefaultPortStatistics decoded = roundTrip((DefaultPortStatistics) DefaultPortStatistics.builder()
+        .setCurrentConsumption(3).setPowerDrawn(30).setAnnotations(DefaultAnnotations.EMPTY).build());
+
+    assertNull(decoded.portNumber());
+    assertEquals(3, decoded.currentConsumption(), 0);
+    assertEquals(30, decoded.powerDrawn(), 0);
+  }
+
+  @Test
+  public void globalStatisticsRoundTrip() {
+    DefaultGlobalStatistics decoded = roundTrip((DefaultGlobalStatistics) DefaultGlobalStatistics.builder()
+        .setCurrentConsumption(2).setPowerDrawn(20).setAnnotations(DefaultAnnotations.EMPTY).build());
+
+    assertNull(decoded.deviceId());
+    assertEquals(2, decoded.currentConsumption(), 0);
+    assertEquals(20, decoded.powerDrawn(), 0);
+    assertTrue(decoded.annotations().keys().isEmpty());
+  }
+
+  @Test
+  public void portSampleRoundTrip() {
+    PortStatisticsSnapshot previous = PortStatisticsSnapshotTest.snapshot(new long[] {1, 2}, 1, 2);
+    PortStatisticsSnapshot current = PortStatisticsSnapshotTest.snapshot(new long[] {1, 2}, 3, 4);
+    PortStatisticsSnapshot grown = PortStatisticsSnapshotTest.snapshot(new long[] {1, 2, 300}, 5, 6, 7);
+
+    PortStatisticsSample samePorts = roundTrip(new PortStatisticsSample(10, current, previous));
+    PortStatisticsSample otherPorts = roundTrip(new PortStatisticsSample(11, grown, current));
+    PortStatisticsSample first = roundTrip(new PortStatisticsSample(12, current, null));
+
+    assertEquals(10, samePorts.timestamp());
+    assertEquals(current, samePorts.current());
+    assertEquals(previous, samePorts.previous());
+    assertEquals(grown, otherPorts.current());
+    assertEquals(current, otherPorts.previous());
+    assertNull(first.previous());
+  }
+
+  @Test
+  public void mergedPortSampleRoundTrip() {
+    PortStatisticsSample stored = new PortStatisticsSample(10,
+        PortStatisticsSnapshotTest.snapshot(new long[] {1, 2, 300}, 3, 4, 5),
+        PortStatisticsSnapshotTest.snapshot(new long[] {1, 2, 300}, 1, 2, 3));
+
+    PortStatisticsSample merged = PortStatisticsSample.merge(stored,
+        PortStatisticsSnapshotTest.snapshot(new long[] {2, 300}, 6, 7));
+    PortStatisticsSample decoded = roundTrip(merged);
+
+    assertEquals(merged.current(), decoded.current());
+    assertEquals(merged.previous(), decoded.previous());
+    assertEquals(PortStatisticsSnapshotTest.snapshot(new long[] {2, 300}, 6, 7), decoded.updated());
+    assertEquals(stored.current(), roundTrip(stored).updated());
+  }
+
+  @Test
+  public void replicatedTypesKeepTheirIds() {
+    PortStatisticsSample port =
+        new PortStatisticsSample(1, PortStatisticsSnapshotTest.snapshot(new long[] {1}, 1), null);
+    GlobalStatisticsSample global = GlobalStatisticsSample.of(DefaultGlobalStatistics.builder()
+        .setCurrentConsumption(1).setPowerDrawn(1).setAnnotations(DefaultAnnotations.EMPTY).build(), null);
+
+    assertEquals(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 5, classId(SERIALIZER.encode(global)));
+    assertEquals(KryoNamespaces.BEGIN_USER_CUSTOM_ID + 6, classId(SERIALIZER.encode(port)));
+  }
+
+  // kryo writes the registration id shifted by two ahead of every object
+  private static int classId(byte[] bytes) {
+    return new Input(bytes).readVarInt(true) - 2;
+  }
+}
@@ -0,0 +1,24 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.lang.reflect.Proxy;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.osgi.service.component.ComponentContext;
+
+final class TestUtils {
+
+  private TestUtils() {
+  }
+
+  // component context handing out the given name/value property pairs
+  static ComponentContext componentContext(Object... properties) {
+    Dictionary<String, Object> dictionary = new Hashtable<>();
+    for (int i = 0; i < properties.length; i += 2) {
+      dictionary.put((String) properties[i], properties[i + 1]);
+    }
+    return (ComponentContext) Proxy.newProxyInstance(ComponentContext.class.getClassLoader(),
+        new Class<?>[] {ComponentContext.class},
+        (proxy, method, args) -> method.getName().equals("getProperties") ? dictionary : null);
+  }
+}
@@ -0,0 +1,143 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// runs scheduled tasks on the calling thread as the test advances virtual time, so runs are fast and repeatable
+final class VirtualTimeScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+  private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+  private long nanos;
+  private long sequence;
+  private boolean shutdown;
+
+  long nanoTime() {
+    return nanos;
+  }
+
+  long currentTimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  // runs every task falling due within the given time, in the order they fall due
+  void advance(long time, TimeUnit unit) {
+    long until = nanos + unit.toNanos(time);
+    Task<?> task;
+    while ((task = queue.peek()) != null && task.due <= until) {
+      queue.poll();
+      nanos = Math.max(nanos, task.due);
+      task.run();
+    }
+    nanos = until;
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    schedule(command, 0, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    return enqueue(new Task<>(Executors.callable(command, null), unit.toNanos(delay), 0));
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+    return enqueue(new Task<>(callable, unit.toNanos(delay), 0));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+    return enqueue(new Task<>(Executors.callable(command, null), unit.toNanos(initialDelay), unit.toNanos(period)));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+    return enqueue(new Task<>(Executors.callable(command, null), unit.toNanos(initialDelay), -unit.toNanos(delay)));
+  }
+
+  @Override
+  public void shutdown() {
+    shutdown = true;
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    shutdown = true;
+    queue.clear();
+    return Collections.emptyList();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return shutdown;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) {
+    return true;
+  }
+
+  private <V> Task<V> enqueue(Task<V> task) {
+    if (!shutdown) {
+      queue.add(task);
+    }
+    return task;
+  }
+
+  // a positive period repeats at a fixed rate, a negative one with a fixed delay
+  private final class Task<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+    private final long period;
+    private final long order = sequence++;
+    private long due;
+
+    private Task(Callable<V> callable, long delay, long period) {
+      super(callable);
+      this.due = nanos + Math.max(0, delay);
+      this.period = period;
+    }
+
+    @Override
+    public void run() {
+      if (period == 0) {
+        super.run();
+      } else if (runAndReset()) {
+        due = period > 0 ? due + period : nanos - period;
+        enqueue(this);
+      }
+    }
+
+    @Override
+    public boolean isPeriodic() {
+      return period != 0;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(due - nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      Task<?> task = (Task<?>) other;
+      int byDue = Long.compare(due, task.due);
+      return byDue != 0 ? byDue : Long.compare(order, task.order);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package org.inesctec.flexcomm.statistics.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class DeviceStatisticsStreamTest {
+
+  private static final int DEVICES = 200;
+  static final int PORTS = 48;
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  static List<DeviceId> deviceIds(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(i -> DeviceId.deviceId(String.format("of:%016x", i + 1)))
+        .collect(Collectors.toList());
+  }
+
+  // the fields PortStatisticsCodec writes
+  static ObjectNode portEntry(DeviceId deviceId, int port) {
+    return MAPPER.createObjectNode()
+        .put("port", port)
+        .put("currentConsumption", deviceId.hashCode() % 100 + port / 10.0)
+        .put("powerDrawn", port * 2.5);
+  }
+
+  static DeviceStatisticsStream stream(Long version, List<DeviceId> deviceIds, DeviceStatisticsStream
+      .DeviceStatisticsWriter writer) {
+    return new DeviceStatisticsStream(MAPPER.getFactory(), version, deviceIds, "ports", writer);
+  }
+
+  static DeviceStatisticsStream portStream(Long version, List<DeviceId> deviceIds) {
+    return stream(version, deviceIds, (generator, deviceId) -> {
+      for (int port = 1; port <= PORTS; port++) {
+        generator.writeTree(portEntry(deviceId, port));
+      }
+    });
+  }
+
+  // the response the endpoints built before they streamed
+  static ObjectNode portTree(Long version, List<DeviceId> deviceIds) {
+    final ObjectNode root = MAPPER.createObjectNode();
+    if (version != null) {
+      root.put("version", version);
+    }
+    final ArrayNode rootArrayNode = root.putArray("statistics");
+    for (DeviceId deviceId : deviceIds) {
+      final ObjectNode deviceStatsNode = MAPPER.createObjectNode();
+      deviceStatsNode.put("device", deviceId.toString());
+      final ArrayNode statisticsNode = deviceStatsNode.putArray("ports");
+      for (int port = 1; port <= PORTS; port++) {
+        statisticsNode.add(portEntry(deviceId, port));
+      }
+      rootArrayNode.add(deviceStatsNode);
+    }
+    return root;
+  }
+
+  @Test
+  public void streamedResponseHasTheTreeShape() throws IOException {
+    List<DeviceId> deviceIds = deviceIds(3);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    portStream(42L, deviceIds).write(output);
+
+    assertEquals(MAPPER.writeValueAsString(portTree(42L, deviceIds)), output.toString("UTF-8"));
+  }
+
+  @Test
+  public void devicesWithoutStatisticsKeepAnEmptyBlock() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    stream(null, deviceIds(1), (generator, deviceId) -> { }).write(output);
+
+    assertEquals("{\"statistics\":[{\"device\":\"of:0000000000000001\",\"ports\":[]}]}", output.toString("UTF-8"));
+  }
+
+  @Test
+  public void firstDevicesAreWrittenBeforeTheLastIsRead() throws IOException {
+    List<DeviceId> deviceIds = deviceIds(DEVICES);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    int[] writtenBeforeLast = new int[1];
+
+    stream(null, deviceIds, (generator, deviceId) -> {
+      if (deviceId.equals(deviceIds.get(DEVICES - 1))) {
+        writtenBeforeLast[0] = output.size();
+      }
+      for (int port = 1; port <= PORTS; port++) {
+        generator.writeTree(portEntry(deviceId, port));
+      }
+    }).write(output);
+
+    assertTrue(writtenBeforeLast[0] > 0);
+    assertEquals(MAPPER.writeValueAsString(portTree(null, deviceIds)), output.toString("UTF-8"));
+  }
+}
@@ -0,0 +1,215 @@
+package org.inesctec.flexcomm.statistics.rest;
+
+import static org.inesctec.flexcomm.statistics.rest.FlexcommStatisticsEventBroadcaster.SEND_TIMEOUT_MILLIS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent;
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsListener;
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsService;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.codec.CodecService;
+import org.onosproject.codec.JsonCodec;
+import org.onosproject.net.DeviceId;
+
+import com.google.common.collect.ImmutableSet;
+
+public class FlexcommStatisticsEventBroadcasterTest {
+
+  private static final FlexcommStatisticsEvent.Type PORTS = FlexcommStatisticsEvent.Type.PORT_STATS_UPDATED;
+
+  private final FlexcommStatisticsEventBroadcaster broadcaster = new FlexcommStatisticsEventBroadcaster();
+  private final AtomicLong now = new AtomicLong();
+  private FlexcommStatisticsListener listener;
+
+  @Before
+  public void setUp() {
+    broadcaster.statisticsService = proxy(FlexcommStatisticsService.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "addListener":
+          listener = (FlexcommStatisticsListener) args[0];
+          return null;
+        case "getPortStatistics":
+          return Collections.emptyList();
+        case "getStatisticsVersion":
+          return FlexcommStatisticsService.UNKNOWN_VERSION;
+        default:
+          return null;
+      }
+    });
+    JsonCodec<PortStatistics> codec = new JsonCodec<PortStatistics>() { };
+    broadcaster.codecService = proxy(CodecService.class, (proxy, method, args) -> codec);
+    broadcaster.nanoClock = now::get;
+    broadcaster.activate();
+  }
+
+  @After
+  public void tearDown() {
+    broadcaster.deactivate();
+  }
+
+  private void subscribe(TestSink sink) {
+    broadcaster.subscribe(sink, new TestSse(), Collections.emptySet(), EnumSet.of(PORTS));
+  }
+
+  private void post(int device) {
+    listener.event(new FlexcommStatisticsEvent(PORTS, DeviceId.deviceId("of:" + device)));
+  }
+
+  @Test
+  public void stalledSubscribersDoNotHoldBackOthers() throws InterruptedException {
+    TestSink slow = new TestSink(true);
+    TestSink slower = new TestSink(true);
+    TestSink fast = new TestSink(false);
+    subscribe(slow);
+    subscribe(slower);
+    subscribe(fast);
+
+    for (int device = 1; device <= 3; device++) {
+      post(device);
+    }
+
+    assertTrue(fast.await(3));
+    assertTrue(slow.await(1) && slower.await(1));
+    assertEquals(1, slow.sent.size());
+    assertFalse(slow.isClosed());
+  }
+
+  @Test
+  public void stalledSubscriberIsEvictedByTheWatchdog() throws InterruptedException {
+    TestSink slow = new TestSink(true);
+    TestSink idle = new TestSink(false);
+    subscribe(slow);
+    broadcaster.subscribe(idle, new TestSse(), ImmutableSet.of(DeviceId.deviceId("of:2")), EnumSet.of(PORTS));
+
+    post(1);
+    assertTrue(slow.await(1));
+    broadcaster.evictStalled();
+    assertFalse(slow.isClosed());
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(SEND_TIMEOUT_MILLIS) + 1);
+    broadcaster.evictStalled();
+
+    assertTrue(slow.isClosed());
+    assertFalse(idle.isClosed());
+  }
+
+  @Test
+  public void departedClientIsPrunedOnTheNextEvent() throws InterruptedException {
+    TestSink gone = new TestSink(false);
+    TestSink other = new TestSink(false);
+    subscribe(gone);
+    subscribe(other);
+    gone.closed.countDown();
+
+    post(1);
+    post(2);
+
+    assertTrue(other.await(2));
+    assertTrue(gone.sent.isEmpty());
+    assertEquals(1, gone.closes.get());
+  }
+
+  @Test
+  public void failedSendDisconnects() throws InterruptedException {
+    TestSink failing = new TestSink(false);
+    failing.failure = new IllegalStateException("connection reset");
+    subscribe(failing);
+
+    post(1);
+
+    assertTrue(failing.await(1));
+    assertTrue(failing.closed.await(1, TimeUnit.SECONDS));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+  }
+
+  private static final class TestSink implements SseEventSink {
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final CountDownLatch[] received = new CountDownLatch[4];
+    private final boolean stalled;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final AtomicInteger closes = new AtomicInteger();
+    private volatile RuntimeException failure;
+
+    private TestSink(boolean stalled) {
+      this.stalled = stalled;
+      for (int i = 0; i < received.length; i++) {
+        received[i] = new CountDownLatch(i);
+      }
+    }
+
+    // whether the given number of events was sent within a second
+    private boolean await(int count) throws InterruptedException {
+      return received[count].await(1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public boolean isClosed() {
+      return closed.getCount() == 0;
+    }
+
+    // a stalled client never completes a send, like a connection whose client stopped reading
+    @Override
+    public CompletionStage<?> send(OutboundSseEvent event) {
+      sent.add(event.getName());
+      for (CountDownLatch latch : received) {
+        latch.countDown();
+      }
+      CompletableFuture<Void> result = new CompletableFuture<>();
+      if (failure != null) {
+        result.completeExceptionally(failure);
+      } else if (!stalled) {
+        result.complete(null);
+      }
+      return result;
+    }
+
+    @Override
+    public void close() {
+      closes.incrementAndGet();
+      closed.countDown();
+    }
+  }
+
+  private static final class TestSse implements Sse {
+    @Override
+    public OutboundSseEvent.Builder newEventBuilder() {
+      String[] name = new String[1];
+      return proxy(OutboundSseEvent.Builder.class, (builder, method, args) -> {
+        if (method.getName().equals("name")) {
+          name[0] = (String) args[0];
+        }
+        if (method.getName().equals("build")) {
+          return proxy(OutboundSseEvent.class, (event, getter, none) ->
+              getter.getName().equals("getName") ? name[0] : MediaType.APPLICATION_JSON_TYPE.toString());
+        }
+        return builder;
+      });
+    }
+  }
+}
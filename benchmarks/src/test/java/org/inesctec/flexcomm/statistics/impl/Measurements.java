@@ -0,0 +1,66 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.function.IntFunction;
+
+// heap, allocation and timing measurements for the benchmarks
+final class Measurements {
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+  private Measurements() {
+  }
+
+  // bytes allocated by the calling thread per run, after a warm up
+  static long allocatedBytes(Runnable task, int runs) {
+    for (int i = 0; i < runs; i++) {
+      task.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long start = THREADS.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < runs; i++) {
+      task.run();
+    }
+    return (THREADS.getThreadAllocatedBytes(threadId) - start) / runs;
+  }
+
+  // heap retained per instance while count instances are reachable
+  static long retainedBytes(IntFunction<Object> factory, int count) {
+    Object[] instances = new Object[count];
+    long before = usedHeap();
+    for (int i = 0; i < count; i++) {
+      instances[i] = factory.apply(i);
+    }
+    long after = usedHeap();
+    long perInstance = (after - before) / count;
+    if (instances[count - 1] == null) {
+      throw new IllegalStateException("Factory returned null");
+    }
+    return perInstance;
+  }
+
+  static long nanosPerRun(Runnable task, int runs) {
+    for (int i = 0; i < runs; i++) {
+      task.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < runs; i++) {
+      task.run();
+    }
+    return (System.nanoTime() - start) / runs;
+  }
+
+  static void report(String benchmark, String format, Object... args) {
+    System.out.println(String.format("[benchmark] %s: ", benchmark) + String.format(format, args));
+  }
+
+  static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return MEMORY.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,58 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.inesctec.flexcomm.statistics.api.FlexcommStatisticsEvent;
+import org.inesctec.flexcomm.statistics.api.PollingStatistics;
+import org.junit.Test;
+import org.onosproject.openflow.controller.Dpid;
+
+import com.google.common.base.Splitter;
+
+// the simulated fleet on real threads and real time, at the sizes given on the command line
+public class OpenFlowFlexcomStatisticsProviderBenchmark {
+
+  private static final int POLL_SECONDS = 1;
+  private static final int ENTRIES_PER_PART = 32;
+
+  // fleet sizes and seconds each one runs for, e.g. -Dflexcomm.fleet.switches=1000,10000,50000
+  private static final String FLEET_SWITCHES = System.getProperty("flexcomm.fleet.switches", "1000");
+  private static final int FLEET_SECONDS = Integer.getInteger("flexcomm.fleet.seconds", 3);
+
+  @Test
+  public void fleetScale() throws InterruptedException {
+    for (String size : Splitter.on(',').trimResults().omitEmptyStrings().split(FLEET_SWITCHES)) {
+      int switches = Integer.parseInt(size);
+      long heapBefore = Measurements.usedHeap();
+      SimulatedSwitchFleet fleet = new SimulatedSwitchFleet(switches, 64, ENTRIES_PER_PART, POLL_SECONDS)
+          .withLatency(5, 5);
+      SimulatedFleetPipeline pipeline = new SimulatedFleetPipeline(fleet, POLL_SECONDS, null);
+      long startNanos = System.nanoTime();
+
+      TimeUnit.MILLISECONDS.sleep(TimeUnit.SECONDS.toMillis(FLEET_SECONDS) + 500);
+
+      double seconds = (System.nanoTime() - startNanos) / 1e9;
+      long samples = pipeline.events(FlexcommStatisticsEvent.Type.GLOBAL_STATS_UPDATED)
+          + pipeline.events(FlexcommStatisticsEvent.Type.PORT_STATS_UPDATED);
+      long heap = Measurements.usedHeap() - heapBefore;
+      double roundTrip = 0;
+      long timeouts = 0;
+      for (Dpid dpid : fleet.dpids()) {
+        PollingStatistics polling = pipeline.polling(dpid);
+        roundTrip += polling.meanLatencyMicros() / 1000.0 / switches;
+        timeouts += polling.timeouts();
+      }
+
+      Measurements.report("simulated fleet", "%d switches x 64 ports for %.1fs: %.0f samples/s, "
+          + "%d requests, %d replies, %d timeouts, scheduler drift mean %.1fms max %.1fms, "
+          + "request round trip mean %.1fms, reply handling mean %.3fms max %.1fms, heap %d MB", switches,
+          seconds, samples / seconds, fleet.requests(), fleet.replies(), timeouts, fleet.drift().meanMillis(),
+          fleet.drift().maxMillis(), roundTrip, fleet.handling().meanMillis(), fleet.handling().maxMillis(),
+          heap >> 20);
+      pipeline.stop();
+      assertTrue("every switch should have been sampled", samples >= switches);
+    }
+  }
+}
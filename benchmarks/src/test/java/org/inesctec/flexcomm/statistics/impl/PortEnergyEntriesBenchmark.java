@@ -0,0 +1,68 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.junit.Test;
+import org.onosproject.net.PortNumber;
+import org.projectfloodlight.openflow.protocol.OFFlexcommPortStatsEntry;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class PortEnergyEntriesBenchmark {
+
+  private static final int SWITCHES = 10000;
+  private static final int PORTS = 64;
+
+  // the reply into a stored sample, against the set of port statistics and the two maps it replaced
+  @Test
+  public void decodeAllocation() {
+    List<OFFlexcommPortStatsEntry> reply = PortEnergyEntriesTest.reply(PORTS);
+    PortStatisticsSample previous = new PortStatisticsSample(0, PortStatisticsSnapshot.EMPTY, null);
+
+    long arrays = Measurements.allocatedBytes(() -> {
+      PortEnergyEntries entries = PortEnergyEntries.decode(reply);
+      PortStatisticsSample.of(PortStatisticsSnapshot.of(entries.portNumbers(), entries.currentConsumption(),
+          entries.powerDrawn(), entries.size()), previous);
+    }, SWITCHES);
+    long collections = Measurements.allocatedBytes(() -> {
+      Collection<PortStatistics> stats = buildPortStatistics(ImmutableList.copyOf(reply));
+      Map<PortNumber, PortStatistics> current = Maps.newHashMap();
+      Map<PortNumber, PortStatistics> delta = Maps.newHashMap();
+      for (PortStatistics newStats : stats) {
+        current.put(newStats.portNumber(), newStats);
+        delta.put(newStats.portNumber(), DefaultPortStatistics.builder().setPortNumber(newStats.portNumber())
+            .setCurrentConsumption(0).setPowerDrawn(0).build());
+      }
+    }, SWITCHES);
+
+    Measurements.report("reply decoding", "%d-port reply %d bytes through arrays, %d bytes through collections, "
+        + "%d MB and %d MB per poll of %d switches", PORTS, arrays, collections, arrays * SWITCHES >> 20,
+        collections * SWITCHES >> 20, SWITCHES);
+    assertTrue("decoding into arrays should allocate less than into collections", arrays < collections);
+  }
+
+  private static Collection<PortStatistics> buildPortStatistics(List<OFFlexcommPortStatsEntry> entries) {
+    Set<PortStatistics> stats = Sets.newHashSet();
+    for (OFFlexcommPortStatsEntry entry : entries) {
+      if (entry == null || entry.getPortNo() == null || entry.getPortNo().getPortNumber() < 0) {
+        continue;
+      }
+      stats.add(DefaultPortStatistics.builder()
+          .setPortNumber(PortNumber.portNumber(entry.getPortNo().getPortNumber()))
+          .setCurrentConsumption(Double.longBitsToDouble(entry.getCurrentConsumption().getValue()))
+          .setPowerDrawn(Double.longBitsToDouble(entry.getPowerDrawn().getValue()))
+          .build());
+    }
+    return Collections.unmodifiableSet(stats);
+  }
+}
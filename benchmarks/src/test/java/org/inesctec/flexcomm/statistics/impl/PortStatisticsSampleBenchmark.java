@@ -0,0 +1,44 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.onosproject.net.PortNumber;
+
+public class PortStatisticsSampleBenchmark {
+
+  private static final int PORTS = 48;
+
+  @Test
+  public void readAllocation() {
+    long[] ports = new long[PORTS];
+    double[] values = new double[PORTS];
+    for (int i = 0; i < PORTS; i++) {
+      ports[i] = i + 1;
+      values[i] = i;
+    }
+    PortStatisticsSnapshot current = PortStatisticsSnapshotTest.snapshot(ports, values);
+    PortStatisticsSnapshot previous = PortStatisticsSnapshotTest.snapshot(ports.clone(), values);
+    PortStatisticsSample sample = new PortStatisticsSample(0, current, previous);
+    sample.warm();
+    PortNumber port = PortNumber.portNumber(PORTS / 2);
+
+    long warm = Measurements.allocatedBytes(() -> {
+      sample.statistics();
+      sample.deltaStatistics();
+      sample.statisticsForPort(port);
+      sample.deltaStatisticsForPort(port);
+    }, 10_000);
+    // what every read used to do: build the views again
+    long cold = Measurements.allocatedBytes(() -> {
+      current.statistics();
+      current.delta(previous).statistics();
+      current.get(port);
+      current.delta(previous).get(port);
+    }, 10_000);
+
+    Measurements.report("read path", "%d ports: %d bytes per read with cached views, %d bytes rebuilding them",
+        PORTS, warm, cold);
+    assertTrue("cached reads should not allocate like rebuilt views", warm * 10 < cold);
+  }
+}
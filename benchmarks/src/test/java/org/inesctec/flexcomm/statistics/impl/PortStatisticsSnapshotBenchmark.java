@@ -0,0 +1,37 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.junit.Test;
+import org.onosproject.net.PortNumber;
+
+public class PortStatisticsSnapshotBenchmark {
+
+  private static final int PORTS = 48;
+
+  @Test
+  public void footprint() {
+    long[] ports = new long[PORTS];
+    double[] values = new double[PORTS];
+    for (int i = 0; i < PORTS; i++) {
+      ports[i] = i + 1;
+      values[i] = i;
+    }
+
+    long packed = Measurements.retainedBytes(i -> PortStatisticsSnapshotTest.snapshot(ports.clone(), values), 2000);
+    long boxed = Measurements.retainedBytes(i -> {
+      Map<PortNumber, PortStatistics> map = new HashMap<>();
+      for (int p = 0; p < PORTS; p++) {
+        map.put(PortNumber.portNumber(ports[p]), PortStatisticsSnapshotTest.stats(ports[p], values[p]));
+      }
+      return map;
+    }, 2000);
+
+    Measurements.report("snapshot footprint", "%d ports: %d bytes packed, %d bytes as a map", PORTS, packed, boxed);
+    assertTrue("packed snapshot should be smaller than the map it replaced", packed < boxed);
+  }
+}
@@ -0,0 +1,72 @@
+package org.inesctec.flexcomm.statistics.impl;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.inesctec.flexcomm.statistics.api.DefaultGlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.DefaultPortStatistics;
+import org.inesctec.flexcomm.statistics.api.GlobalStatistics;
+import org.inesctec.flexcomm.statistics.api.PortStatistics;
+import org.junit.Test;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.PortNumber;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.Serializer;
+
+public class StatisticsSerializersBenchmark {
+
+  private static final int PORTS = 48;
+
+  private static final Serializer SERIALIZER =
+      Serializer.using(DistributedFlexcommStatisticsStore.SERIALIZER_BUILDER.build());
+
+  // the value types without their serializers, as the current and delta maps replicated them before
+  private static final Serializer FIELD_SERIALIZER = Serializer.using(KryoNamespace.newBuilder()
+      .register(KryoNamespaces.API)
+      .nextId(KryoNamespaces.BEGIN_USER_CUSTOM_ID)
+      .register(DefaultGlobalStatistics.class, DefaultPortStatistics.class)
+      .build());
+
+  private static GlobalStatistics global(double currentConsumption, double powerDrawn) {
+    return DefaultGlobalStatistics.builder().setCurrentConsumption(currentConsumption).setPowerDrawn(powerDrawn)
+        .setAnnotations(DefaultAnnotations.EMPTY).build();
+  }
+
+  private static PortStatistics port(long port, double currentConsumption, double powerDrawn) {
+    return DefaultPortStatistics.builder().setPortNumber(PortNumber.portNumber(port))
+        .setCurrentConsumption(currentConsumption).setPowerDrawn(powerDrawn)
+        .setAnnotations(DefaultAnnotations.EMPTY).build();
+  }
+
+  @Test
+  public void replicatedSize() {
+    long[] ports = new long[PORTS];
+    double[] values = new double[PORTS];
+    Map<PortNumber, PortStatistics> current = new HashMap<>();
+    Map<PortNumber, PortStatistics> delta = new HashMap<>();
+    for (int i = 0; i < PORTS; i++) {
+      ports[i] = i + 1;
+      values[i] = i * 0.25;
+      current.put(PortNumber.portNumber(ports[i]), port(ports[i], values[i], values[i] * 10));
+      delta.put(PortNumber.portNumber(ports[i]), port(ports[i], 0, 0));
+    }
+    PortStatisticsSample portSample = new PortStatisticsSample(System.currentTimeMillis(),
+        PortStatisticsSnapshotTest.snapshot(ports, values), PortStatisticsSnapshotTest.snapshot(ports, values));
+    GlobalStatisticsSample globalSample = GlobalStatisticsSample.of(global(2, 20),
+        GlobalStatisticsSample.of(global(1, 10), null));
+
+    int portBytes = SERIALIZER.encode(portSample).length;
+    int portMapBytes = FIELD_SERIALIZER.encode(current).length + FIELD_SERIALIZER.encode(delta).length;
+    int globalBytes = SERIALIZER.encode(globalSample).length;
+    int globalFieldBytes =
+        FIELD_SERIALIZER.encode(global(2, 20)).length + FIELD_SERIALIZER.encode(global(1, 10)).length;
+
+    Measurements.report("replicated size", "%d-port sample %d bytes instead of %d for the port maps, "
+        + "global sample %d bytes instead of %d", PORTS, portBytes, portMapBytes, globalBytes, globalFieldBytes);
+    assertTrue("port sample should be smaller than the maps it replaced", portBytes < portMapBytes);
+    assertTrue("global sample should be smaller than the entries it replaced", globalBytes < globalFieldBytes);
+  }
+}
@@ -0,0 +1,102 @@
+package org.inesctec.flexcomm.statistics.rest;
+
+import static org.inesctec.flexcomm.statistics.rest.DeviceStatisticsStreamTest.PORTS;
+import static org.inesctec.flexcomm.statistics.rest.DeviceStatisticsStreamTest.deviceIds;
+import static org.inesctec.flexcomm.statistics.rest.DeviceStatisticsStreamTest.portEntry;
+import static org.inesctec.flexcomm.statistics.rest.DeviceStatisticsStreamTest.portStream;
+import static org.inesctec.flexcomm.statistics.rest.DeviceStatisticsStreamTest.portTree;
+import static org.inesctec.flexcomm.statistics.rest.DeviceStatisticsStreamTest.stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class DeviceStatisticsStreamBenchmark {
+
+  private static final int DEVICES = 2000;
+
+  private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+  @Test
+  public void firstByteAndPeakHeap() throws IOException {
+    List<DeviceId> deviceIds = deviceIds(DEVICES);
+    for (int i = 0; i < 3; i++) {
+      portTree(null, deviceIds);
+      portStream(null, deviceIds).write(new FirstByteOutput(System.nanoTime()));
+    }
+
+    FirstByteOutput treeOutput = new FirstByteOutput(System.nanoTime());
+    new ObjectMapper().writeValue(treeOutput, portTree(null, deviceIds));
+    long treeBaseline = usedHeap();
+    ObjectNode tree = portTree(null, deviceIds);
+    long treePeak = usedHeap() - treeBaseline;
+    assertEquals(DEVICES, tree.get("statistics").size());
+    tree = null;
+
+    // sampled halfway through the devices, where the tree held everything
+    long[] streamPeak = new long[1];
+    long baseline = usedHeap();
+    FirstByteOutput streamOutput = new FirstByteOutput(System.nanoTime());
+    stream(null, deviceIds, (generator, deviceId) -> {
+      if (deviceId.equals(deviceIds.get(DEVICES / 2))) {
+        streamPeak[0] = usedHeap() - baseline;
+      }
+      for (int port = 1; port <= PORTS; port++) {
+        generator.writeTree(portEntry(deviceId, port));
+      }
+    }).write(streamOutput);
+
+    System.out.println(String.format("[benchmark] all-devices response: %d devices x %d ports, %d KB: "
+        + "first byte after %.2fms streamed, %.2fms through a tree; peak heap %d KB streamed, %d KB as a tree",
+        DEVICES, PORTS, streamOutput.bytes >> 10, streamOutput.firstByteMillis(), treeOutput.firstByteMillis(),
+        Math.max(streamPeak[0], 0) >> 10, treePeak >> 10));
+    assertEquals(treeOutput.bytes, streamOutput.bytes);
+    assertTrue(streamOutput.firstByteMillis() < treeOutput.firstByteMillis());
+    assertTrue(streamPeak[0] < treePeak);
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return MEMORY.getHeapMemoryUsage().getUsed();
+  }
+
+  // discards the response and remembers when its first byte was written
+  private static final class FirstByteOutput extends OutputStream {
+    private final long startNanos;
+    private long firstByteNanos;
+    private long bytes;
+
+    private FirstByteOutput(long startNanos) {
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void write(int b) {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      if (bytes == 0 && len > 0) {
+        firstByteNanos = System.nanoTime();
+      }
+      bytes += len;
+    }
+
+    private double firstByteMillis() {
+      return (firstByteNanos - startNanos) / 1e6;
+    }
+  }
+}